@@ -0,0 +1,23 @@
+package com.qwerty0121.poi.sample;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークを実行するクラス<br>
+ * <br>
+ * JMHのコマンドラインオプションをそのまま受け付け、スループットに加えてGCプロファイラによるアロケーションレートを出力する。
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws Exception {
+    var options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+}
@@ -0,0 +1,119 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * シートの複製(xls形式)のベンチマーク<br>
+ * <br>
+ * {@link SheetCopySample#cloneSheet(HSSFWorkbook, int, int, java.util.function.IntFunction)}による一括の複製と、
+ * {@link HSSFWorkbook#cloneSheet(int)}の繰り返しによる複製を比較する。
+ * 複製時間に加えて、複製したシートを保持している間のヒープの使用量(GC後)を比較する。<br>
+ * NOTE: retainedHeapのretainedBytesとpeakBytesは計測の反復回数分の合計となる
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HSSFSheetCloneBenchmark {
+
+  @Param({ "200" })
+  public int rows;
+
+  @Param({ "10" })
+  public int columns;
+
+  @Param({ "200" })
+  public int count;
+
+  /** 複製方法(bulk: 一括で複製する、loop: cloneSheetを繰り返す) */
+  @Param({ "bulk", "loop" })
+  public String mode;
+
+  /** 複製元のワークブック(xls形式) */
+  private byte[] template;
+
+  /** 複製を行うワークブック(反復ごとに読み込み直す。SingleShotTimeのため反復ごとに1回だけ複製する) */
+  private HSSFWorkbook workbook;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    try (var workbook = new HSSFWorkbook(); var os = new ByteArrayOutputStream()) {
+      var sheet = workbook.createSheet(SyntheticWorkbooks.SHEET_NAME);
+      for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+        var row = sheet.createRow(rowIndex);
+        for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+          var cell = row.createCell(columnIndex);
+          if (columnIndex % 2 == 0) {
+            cell.setCellValue("文字列" + rowIndex % 50);
+          } else {
+            cell.setCellValue(rowIndex * columnIndex);
+          }
+        }
+      }
+      workbook.write(os);
+      template = os.toByteArray();
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    workbook = new HSSFWorkbook(new ByteArrayInputStream(template));
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    workbook.close();
+  }
+
+  @Benchmark
+  public int cloneSheet() {
+    cloneSheets();
+    return workbook.getNumberOfSheets();
+  }
+
+  @Benchmark
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 3)
+  public int retainedHeap(HeapCounters counters) {
+    var before = HeapCounters.resetPeakHeap();
+    cloneSheets();
+    counters.peakBytes = HeapCounters.peakHeap() - before;
+    counters.retainedBytes = HeapCounters.usedHeapAfterGc() - before;
+    return workbook.getNumberOfSheets();
+  }
+
+  /**
+   * 複製方法に応じてシートを複製する
+   */
+  private void cloneSheets() {
+    if ("bulk".equals(mode)) {
+      SheetCopySample.cloneSheet(workbook, 0, count, i -> "支店" + i);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      var clonedSheet = workbook.cloneSheet(0);
+      workbook.setSheetName(workbook.getSheetIndex(clonedSheet), "支店" + i);
+    }
+  }
+
+}
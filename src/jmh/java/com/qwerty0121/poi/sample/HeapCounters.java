@@ -0,0 +1,80 @@
+package com.qwerty0121.poi.sample;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ベンチマークで作成したオブジェクトを保持している間のヒープの使用量<br>
+ * <br>
+ * ベンチマークメソッドの引数に指定し、{@link #usedHeapAfterGc()}で計測した処理前後の差を{@link #retainedBytes}に設定する。
+ * また、{@link #resetPeakHeap()}から{@link #peakHeap()}までの間のヒープの使用量の最大値と処理前の差を{@link #peakBytes}に設定する。<br>
+ * NOTE: retainedBytesとpeakBytesは計測の反復回数分の合計となる
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class HeapCounters {
+
+  /** 処理前からのヒープの使用量の増加分(バイト) */
+  public long retainedBytes;
+
+  /** 処理中のヒープの使用量の最大値の、処理前からの増加分(バイト) */
+  public long peakBytes;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    retainedBytes = 0;
+    peakBytes = 0;
+  }
+
+  /**
+   * GCを実行してからヒープの使用量を取得する
+   *
+   * @return ヒープの使用量(バイト)
+   */
+  static long usedHeapAfterGc() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * GCを実行してからヒープのメモリプールの使用量の最大値をリセットする
+   *
+   * @return リセット時のヒープの使用量(バイト)
+   */
+  static long resetPeakHeap() {
+    var usedHeap = usedHeapAfterGc();
+    for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+    return usedHeap;
+  }
+
+  /**
+   * {@link #resetPeakHeap()}からのヒープの使用量の最大値を取得する<br>
+   * <br>
+   * NOTE: ヒープのメモリプール(Eden、Old領域など)ごとの最大値の合計のため、プールごとに最大となった時点が異なる場合は実際の最大値より大きくなる。
+   * また、GCで回収される前の不要なオブジェクトも含む
+   *
+   * @return ヒープの使用量の最大値(バイト)
+   */
+  static long peakHeap() {
+    var peak = 0L;
+    for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+}
@@ -0,0 +1,92 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qwerty0121.poi.utils.MergedRegionWriter;
+
+/**
+ * セル結合の追加のベンチマーク<br>
+ * <br>
+ * {@link MergedRegionWriter#addAll(org.apache.poi.ss.usermodel.Sheet, java.util.Collection)}による一括の追加と、
+ * addMergedRegion(追加ごとに重なりを検証する)・addMergedRegionUnsafe(検証しない)の繰り返しによる追加を比較する。<br>
+ * NOTE: addMergedRegionはセル結合の数に対して2乗の時間がかかるため、件数を増やす場合は注意
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergedRegionBenchmark {
+
+  @Param({ "5000" })
+  public int regions;
+
+  /** 追加方法(bulk: 一括で追加する、safe: addMergedRegionを繰り返す、unsafe: addMergedRegionUnsafeを繰り返す) */
+  @Param({ "bulk", "safe", "unsafe" })
+  public String mode;
+
+  /** 追加するセル結合(2行×2列の範囲を縦横に並べる) */
+  private List<CellRangeAddress> mergedRegions;
+
+  /** セル結合を追加するワークブック(反復ごとに作成し直す。SingleShotTimeのため反復ごとに1回だけ追加する) */
+  private XSSFWorkbook workbook;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    mergedRegions = new ArrayList<>(regions);
+    for (int i = 0; i < regions; i++) {
+      var rowIndex = i / 10 * 2;
+      var columnIndex = i % 10 * 2;
+      mergedRegions.add(new CellRangeAddress(rowIndex, rowIndex + 1, columnIndex, columnIndex + 1));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    workbook = new XSSFWorkbook();
+    workbook.createSheet(SyntheticWorkbooks.SHEET_NAME);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    workbook.close();
+  }
+
+  @Benchmark
+  public int addMergedRegions() {
+    var sheet = workbook.getSheetAt(0);
+    switch (mode) {
+      case "bulk":
+        MergedRegionWriter.addAll(sheet, mergedRegions);
+        break;
+      case "safe":
+        mergedRegions.forEach(sheet::addMergedRegion);
+        break;
+      default:
+        mergedRegions.forEach(sheet::addMergedRegionUnsafe);
+        break;
+    }
+    return sheet.getNumMergedRegions();
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.qwerty0121.poi.sample;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qwerty0121.poi.utils.PictureResizer;
+
+/**
+ * 画像の縮小・変換のベンチマーク<br>
+ * <br>
+ * 写真相当の大きさのJPEG画像を複数枚、アンカーの大きさまで縮小・変換する時間を、変換後の形式と並列数ごとに比較する。
+ * 縮小・変換の結果はキャッシュされるため、計測ごとに{@link PictureResizer}を作成し直す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PictureResizerBenchmark {
+
+  /** 画像の幅(ピクセル) */
+  @Param({ "4000" })
+  public int width;
+
+  /** 画像の高さ(ピクセル) */
+  @Param({ "3000" })
+  public int height;
+
+  @Param({ "8" })
+  public int pictures;
+
+  @Param({ "ORIGINAL", "JPEG", "PALETTE_PNG" })
+  public PictureResizer.OutputFormat format;
+
+  @Param({ "1", "4" })
+  public int parallelism;
+
+  /** 縮小・変換する画像(内容はそれぞれ異なる) */
+  private List<byte[]> sourcePictures;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    sourcePictures = new ArrayList<>(pictures);
+    var random = new Random(0);
+    for (int i = 0; i < pictures; i++) {
+      var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | random.nextInt(64));
+        }
+      }
+      var os = new ByteArrayOutputStream();
+      ImageIO.write(image, "jpeg", os);
+      sourcePictures.add(os.toByteArray());
+    }
+  }
+
+  @Benchmark
+  public long resize() throws InterruptedException, ExecutionException {
+    try (var resizer = new PictureResizer(new PictureResizer.Options(format, 0.85f, 1.0), parallelism)) {
+      var futures = new ArrayList<Future<PictureResizer.ResizedPicture>>(pictures);
+      for (var picture : sourcePictures) {
+        futures.add(resizer.submit(picture, 320, 240));
+      }
+      long totalBytes = 0;
+      for (var future : futures) {
+        totalBytes += future.get().data().length;
+      }
+      return totalBytes;
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.qwerty0121.poi.utils.ShapeIndex;
+
+/**
+ * 図形を操作するサンプル(図形テキストの設定、画像追加、図形非表示、図形削除、図形重なり順変更)のベンチマーク<br>
+ * <br>
+ * 各操作はワークブックを変更するため、同じワークブックに対しては1回だけ操作する。
+ * そのため、呼び出しごとに読み込んだワークブックを{@link #POOL_SIZE}個用意しておき、1回の呼び出しで全てのワークブックを1回ずつ操作する。
+ * 読み込みの時間は計測に含めず、1回の操作あたりの平均時間を計測する(AverageTime)。
+ * 反復ごとに多数回呼び出されるため、JITコンパイル後の操作の時間を計測できる。<br>
+ * NOTE: ワークブックの読み込みは呼び出しごと(Level.Invocation)に行う。
+ * 1回の呼び出しで複数回操作するため、呼び出しごとの計測の誤差(タイマーの呼び出しなど)は操作の時間に対して十分小さい
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(ShapeBenchmark.POOL_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ShapeBenchmark {
+
+  /** 1回の呼び出しで操作するワークブックの数 */
+  static final int POOL_SIZE = 16;
+
+  @Param({ "10", "500" })
+  public int shapes;
+
+  @Param({ "10" })
+  public int pictures;
+
+  /** 操作対象のワークブック(xlsx形式) */
+  private byte[] workbookBytes;
+
+  /** 操作対象のワークブック(呼び出しごとに読み込み直す) */
+  private final XSSFWorkbook[] workbooks = new XSSFWorkbook[POOL_SIZE];
+
+  /** 操作対象のシート */
+  private final XSSFSheet[] sheets = new XSSFSheet[POOL_SIZE];
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    workbookBytes = SyntheticWorkbooks.create(10, 10, 1, shapes, pictures, 0);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    for (int i = 0; i < POOL_SIZE; i++) {
+      workbooks[i] = SyntheticWorkbooks.open(workbookBytes);
+      sheets[i] = workbooks[i].getSheet(SyntheticWorkbooks.SHEET_NAME);
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDownInvocation() throws IOException {
+    for (int i = 0; i < POOL_SIZE; i++) {
+      workbooks[i].close();
+      workbooks[i] = null;
+      sheets[i] = null;
+    }
+  }
+
+  @Benchmark
+  public void replaceShapeText(Blackhole blackhole) {
+    for (var sheet : sheets) {
+      ShapeTextSettingSample.replaceShapeText(ShapeIndex.of(sheet), SyntheticWorkbooks.TEXT_SHAPE_NAME,
+          SyntheticWorkbooks.TEXT_PLACEHOLDER, "プログラムから設定したテキスト");
+      blackhole.consume(sheet);
+    }
+  }
+
+  @Benchmark
+  public void addImage(Blackhole blackhole) throws IOException {
+    for (int i = 0; i < POOL_SIZE; i++) {
+      AddImageSample.addImage(workbooks[i], sheets[i]);
+      blackhole.consume(sheets[i]);
+    }
+  }
+
+  @Benchmark
+  public void addImageToContainer(Blackhole blackhole) throws IOException {
+    for (int i = 0; i < POOL_SIZE; i++) {
+      AddImageSample.addImageToContainer(workbooks[i], sheets[i], ShapeIndex.of(sheets[i]));
+      blackhole.consume(sheets[i]);
+    }
+  }
+
+  @Benchmark
+  public void hideShapes(Blackhole blackhole) throws IOException {
+    for (var sheet : sheets) {
+      // NOTE: サンプルと同様に、図形インデックスを1つ作成して3回の検索で使い回す
+      var shapeIndex = ShapeIndex.of(sheet);
+      HideShapeSample.hidePicture(shapeIndex);
+      HideShapeSample.hideSimpleShape(shapeIndex);
+      HideShapeSample.hideShapeGroup(shapeIndex);
+      blackhole.consume(sheet);
+    }
+  }
+
+  @Benchmark
+  public void removeShape(Blackhole blackhole) {
+    for (var sheet : sheets) {
+      RemoveShapeSample.removeShape(sheet, "shape");
+      blackhole.consume(sheet);
+    }
+  }
+
+  @Benchmark
+  public void removeShapes(Blackhole blackhole) {
+    for (var sheet : sheets) {
+      blackhole.consume(RemoveShapeSample.removeShapes(sheet, Set.of("shape-group", "picture")));
+    }
+  }
+
+  @Benchmark
+  public void reverseShapeStackingOrder(Blackhole blackhole) {
+    for (var sheet : sheets) {
+      ChangeShapeStackingOrder.reverseShapeStackingOrder(sheet);
+      blackhole.consume(sheet);
+    }
+  }
+
+  @Benchmark
+  public void reverseShapeStackingOrderByXmlText(Blackhole blackhole) {
+    for (var sheet : sheets) {
+      ChangeShapeStackingOrder.reverseShapeStackingOrderByXmlText(sheet);
+      blackhole.consume(sheet);
+    }
+  }
+
+}
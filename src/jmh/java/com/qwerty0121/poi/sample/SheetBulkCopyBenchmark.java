@@ -0,0 +1,81 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 列数の多いシートにおける、セル単位のコピーと行・セルのXMLの一括コピーの比較のベンチマーク<br>
+ * <br>
+ * 一括コピーは出力時にシートのXMLを作成するため、いずれもコピー元の読み込みからコピーしたワークブックの出力までを計測する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SheetBulkCopyBenchmark {
+
+  /** メモリ上に保持する行数(ストリーミング方式の場合) */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  @Param({ "1000" })
+  public int rows;
+
+  @Param({ "200" })
+  public int columns;
+
+  @Param({ "50" })
+  public int styles;
+
+  /** コピー元のワークブック(xlsx形式) */
+  private byte[] sourceBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sourceBytes = SyntheticWorkbooks.create(rows, columns, styles, 0, 0, 0);
+  }
+
+  @Benchmark
+  public void copyWorkbook() throws IOException {
+    try (var sourceWorkbook = SyntheticWorkbooks.open(sourceBytes);
+        var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbook(sourceWorkbook)) {
+      newWorkbook.write(NullOutputStream.INSTANCE);
+    }
+  }
+
+  @Benchmark
+  public void copyWorkbookFromPackage() throws IOException, InvalidFormatException {
+    try (var sourcePackage = OPCPackage.open(new ByteArrayInputStream(sourceBytes));
+        var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbookFromPackage(sourcePackage,
+            ROW_ACCESS_WINDOW_SIZE)) {
+      newWorkbook.write(NullOutputStream.INSTANCE);
+    }
+  }
+
+  @Benchmark
+  public void copyWorkbookBulk() throws IOException, InvalidFormatException {
+    try (var sourcePackage = OPCPackage.open(new ByteArrayInputStream(sourceBytes));
+        var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbookBulk(sourcePackage)) {
+      newWorkbook.write(NullOutputStream.INSTANCE);
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SheetCopyToOtherWorkbookSample}のワークブックのコピーのベンチマーク
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SheetCopyBenchmark {
+
+  /** メモリ上に保持する行数(ストリーミング方式の場合) */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  @Param({ "1000", "10000" })
+  public int rows;
+
+  @Param({ "20" })
+  public int columns;
+
+  @Param({ "50" })
+  public int styles;
+
+  @Param({ "10" })
+  public int cfRules;
+
+  /** コピー元のワークブック(xlsx形式) */
+  private byte[] sourceBytes;
+
+  /** コピー元のワークブック(コピーでは変更されないため使い回す) */
+  private XSSFWorkbook sourceWorkbook;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sourceBytes = SyntheticWorkbooks.create(rows, columns, styles, 0, 0, cfRules);
+    sourceWorkbook = SyntheticWorkbooks.open(sourceBytes);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    sourceWorkbook.close();
+  }
+
+  @Benchmark
+  public int copyWorkbook() throws IOException {
+    try (var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbook(sourceWorkbook)) {
+      return newWorkbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+  @Benchmark
+  public int copyWorkbookStreaming() throws IOException {
+    try (var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbookStreaming(sourceWorkbook,
+        ROW_ACCESS_WINDOW_SIZE)) {
+      return newWorkbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+  @Benchmark
+  public int copyWorkbookFromPackage() throws IOException, InvalidFormatException {
+    try (var sourcePackage = OPCPackage.open(new ByteArrayInputStream(sourceBytes));
+        var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbookFromPackage(sourcePackage,
+            ROW_ACCESS_WINDOW_SIZE)) {
+      return newWorkbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+}
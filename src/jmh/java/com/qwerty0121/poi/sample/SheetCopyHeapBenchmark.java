@@ -0,0 +1,115 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SheetCopyToOtherWorkbookSample}のワークブックのコピー方法ごとのヒープの使用量のベンチマーク<br>
+ * <br>
+ * コピー中のヒープの使用量の最大値(peakBytes)と、コピー先のワークブックを保持している間のヒープの使用量(GC後、retainedBytes)を、
+ * 通常の方式(XSSF)とストリーミング方式(SXSSF)で行数ごとに比較する。
+ * コピー元のワークブックはTrialの開始時に読み込むため、計測値には含まれない(packageはコピー元をOPCパッケージとして開く分を含む)。<br>
+ * NOTE: retainedBytesとpeakBytesは計測の反復回数分の合計となる<br>
+ * NOTE: 行数の多い場合のxssf・sxssfは、コピー元のワークブック(XSSF)の読み込みとxssfのコピー先で数GBのヒープが必要となる。
+ * ヒープが不足する場合は-jvmArgsAppendで最大ヒープサイズを指定するか、-pで行数を絞って実行すること
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SheetCopyHeapBenchmark {
+
+  /** メモリ上に保持する行数(ストリーミング方式の場合) */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  @Param({ "10000", "100000", "500000" })
+  public int rows;
+
+  @Param({ "20" })
+  public int columns;
+
+  @Param({ "50" })
+  public int styles;
+
+  /**
+   * コピー方法(xssf: {@link SheetCopyToOtherWorkbookSample#copyWorkbook(XSSFWorkbook)}、
+   * sxssf: {@link SheetCopyToOtherWorkbookSample#copyWorkbookStreaming(XSSFWorkbook, int)}、
+   * package: {@link SheetCopyToOtherWorkbookSample#copyWorkbookFromPackage(OPCPackage, int)})
+   */
+  @Param({ "xssf", "sxssf", "package" })
+  public String mode;
+
+  /** コピー元のワークブック(xlsx形式) */
+  private byte[] sourceBytes;
+
+  /** コピー元のワークブック(コピーでは変更されないため使い回す。packageの場合は読み込まないためnull) */
+  private XSSFWorkbook sourceWorkbook;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sourceBytes = SyntheticWorkbooks.create(rows, columns, styles, 0, 0, 0);
+    if (!"package".equals(mode)) {
+      sourceWorkbook = SyntheticWorkbooks.open(sourceBytes);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (sourceWorkbook != null) {
+      sourceWorkbook.close();
+    }
+  }
+
+  @Benchmark
+  public int heap(HeapCounters counters) throws IOException, InvalidFormatException {
+    var before = HeapCounters.resetPeakHeap();
+    if ("package".equals(mode)) {
+      try (var sourcePackage = OPCPackage.open(new ByteArrayInputStream(sourceBytes));
+          var newWorkbook = SheetCopyToOtherWorkbookSample.copyWorkbookFromPackage(sourcePackage,
+              ROW_ACCESS_WINDOW_SIZE)) {
+        counters.peakBytes = HeapCounters.peakHeap() - before;
+        counters.retainedBytes = HeapCounters.usedHeapAfterGc() - before;
+        return newWorkbook.getSheetAt(0).getLastRowNum();
+      }
+    }
+    try (var newWorkbook = copyWorkbook()) {
+      counters.peakBytes = HeapCounters.peakHeap() - before;
+      counters.retainedBytes = HeapCounters.usedHeapAfterGc() - before;
+      return newWorkbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+  /**
+   * コピー方法に応じてワークブックをコピーする
+   *
+   * @return コピー先のワークブック
+   */
+  private Workbook copyWorkbook() {
+    if ("sxssf".equals(mode)) {
+      return SheetCopyToOtherWorkbookSample.copyWorkbookStreaming(sourceWorkbook, ROW_ACCESS_WINDOW_SIZE);
+    }
+    return SheetCopyToOtherWorkbookSample.copyWorkbook(sourceWorkbook);
+  }
+
+}
@@ -0,0 +1,167 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFChildAnchor;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFSimpleShape;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+
+/**
+ * ベンチマーク用のワークブックを作成するクラス<br>
+ * <br>
+ * 各サンプルのテンプレートと同じ名前の図形(shape, shape-group, picture, image-container)を含む"テスト"シートを作成し、
+ * 行数・列数・セルスタイル数・図形数・画像数・条件付き書式のルール数を指定して規模を変えられるようにする。<br>
+ * NOTE: 行数の多いワークブックも作成できるよう、行はストリーミング方式(SXSSF)で書き出す。
+ * 文字列は共有文字列として出力するため、XSSFで作成した場合と同じ形式のワークブックとなる
+ */
+class SyntheticWorkbooks {
+
+  /** シート名 */
+  static final String SHEET_NAME = "テスト";
+
+  /** テキストを置換する図形の名前 */
+  static final String TEXT_SHAPE_NAME = "text-shape";
+
+  /** テキストを置換する図形に設定する置換対象の文字列 */
+  static final String TEXT_PLACEHOLDER = "${text}";
+
+  private SyntheticWorkbooks() {
+  }
+
+  /**
+   * ワークブックを作成し、xlsx形式のbyte配列として返す
+   *
+   * @param rows     行数
+   * @param columns  列数
+   * @param styles   セルスタイル数
+   * @param shapes   追加する図形数(サンプル用の図形とは別に作成する)
+   * @param pictures 追加する画像数(サンプル用の画像とは別に作成する)
+   * @param cfRules  条件付き書式のルール数
+   * @return ワークブック(xlsx形式)
+   */
+  static byte[] create(int rows, int columns, int styles, int shapes, int pictures, int cfRules) {
+    try (var streamingWorkbook = new SXSSFWorkbook(null, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, false, true);
+        var os = new ByteArrayOutputStream()) {
+      var workbook = streamingWorkbook.getXSSFWorkbook();
+      var sheet = streamingWorkbook.createSheet(SHEET_NAME);
+
+      // セルスタイル(塗りつぶしの色だけが異なる)
+      var cellStyles = new XSSFCellStyle[Math.max(styles, 1)];
+      for (int i = 0; i < cellStyles.length; i++) {
+        cellStyles[i] = workbook.createCellStyle();
+        cellStyles[i].setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        cellStyles[i].setFillForegroundColor(new XSSFColor(new byte[] { (byte) i, (byte) (i >> 8), (byte) 0x80 }));
+      }
+
+      // セル(文字列・数値・数式を列ごとに切り替える)
+      for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+        var row = sheet.createRow(rowIndex);
+        for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+          var cell = row.createCell(columnIndex);
+          cell.setCellStyle(cellStyles[(rowIndex + columnIndex) % cellStyles.length]);
+          switch (columnIndex % 3) {
+            case 0 -> cell.setCellValue("文字列" + rowIndex + "-" + columnIndex);
+            case 1 -> cell.setCellValue(rowIndex * columnIndex);
+            default -> cell.setCellFormula("B" + (rowIndex + 1) + "*2");
+          }
+        }
+      }
+
+      // 条件付き書式
+      var conditionalFormatting = sheet.getSheetConditionalFormatting();
+      var regions = new CellRangeAddress[] { new CellRangeAddress(0, Math.max(rows - 1, 0), 0,
+          Math.max(columns - 1, 0)) };
+      for (int i = 0; i < cfRules; i++) {
+        var rule = conditionalFormatting.createConditionalFormattingRule("MOD(ROW()," + (i + 2) + ")=0");
+        rule.createPatternFormatting().setFillBackgroundColor(IndexedColors.values()[i % 40 + 8].getIndex());
+        conditionalFormatting.addConditionalFormatting(regions, rule);
+      }
+
+      // NOTE: 図形グループなどはSXSSFのDrawingでは作成できないため、内部のXSSFSheetのDrawingに作成する
+      var drawing = workbook.getSheet(SHEET_NAME).createDrawingPatriarch();
+      var picture = PoiSampleUtils.loadPictureAsByteArray("add-image-sample.png");
+      var pictureIndex = workbook.addPicture(picture, Workbook.PICTURE_TYPE_PNG);
+
+      // 各サンプルが対象とする図形
+      createSimpleShape(drawing, anchor(drawing, 0), "shape");
+      createSimpleShape(drawing, anchor(drawing, 1), "image-container");
+      createSimpleShape(drawing, anchor(drawing, 2), TEXT_SHAPE_NAME).setText("置換前 " + TEXT_PLACEHOLDER + " 置換後");
+      var group = drawing.createGroup(anchor(drawing, 3));
+      group.setCoordinates(0, 0, 100, 100);
+      group.getCTGroupShape().getNvGrpSpPr().getCNvPr().setName("shape-group");
+      group.createSimpleShape(new XSSFChildAnchor(0, 0, 50, 50));
+      group.createSimpleShape(new XSSFChildAnchor(50, 50, 100, 100));
+      drawing.createPicture(anchor(drawing, 4), pictureIndex).getCTPicture().getNvPicPr().getCNvPr().setName("picture");
+
+      // 規模を変えるための図形・画像
+      for (int i = 0; i < shapes; i++) {
+        createSimpleShape(drawing, anchor(drawing, 5 + i), "shape-" + i);
+      }
+      for (int i = 0; i < pictures; i++) {
+        drawing.createPicture(anchor(drawing, 5 + shapes + i), pictureIndex).getCTPicture().getNvPicPr().getCNvPr()
+            .setName("picture-" + i);
+      }
+
+      streamingWorkbook.write(os);
+      return os.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException("ベンチマーク用のワークブックの作成に失敗しました。", e);
+    }
+  }
+
+  /**
+   * byte配列からワークブックを読み込む
+   *
+   * @param workbook ワークブック(xlsx形式)
+   * @return ワークブック
+   */
+  static XSSFWorkbook open(byte[] workbook) {
+    try {
+      return new XSSFWorkbook(new ByteArrayInputStream(workbook));
+    } catch (IOException e) {
+      throw new UncheckedIOException("ベンチマーク用のワークブックの読み込みに失敗しました。", e);
+    }
+  }
+
+  /**
+   * 図形を作成する
+   *
+   * @param drawing Drawing
+   * @param anchor  アンカー
+   * @param name    図形名
+   * @return 図形
+   */
+  private static XSSFSimpleShape createSimpleShape(XSSFDrawing drawing, XSSFClientAnchor anchor, String name) {
+    var shape = drawing.createSimpleShape(anchor);
+    shape.getCTShape().getNvSpPr().getCNvPr().setName(name);
+    return shape;
+  }
+
+  /**
+   * 図形ごとに少しずつずらしたアンカーを作成する
+   *
+   * @param drawing Drawing
+   * @param index   図形の番号
+   * @return アンカー
+   */
+  private static XSSFClientAnchor anchor(XSSFDrawing drawing, int index) {
+    var column = (index % 10) * 2;
+    var row = (index / 10) * 3;
+    return drawing.createAnchor(0, 0, 0, 0, column, row, column + 2, row + 3);
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.TemplateCache;
+
+/**
+ * テンプレートファイルのキャッシュ({@link TemplateCache})の有無の比較のベンチマーク<br>
+ * <br>
+ * readはテンプレートファイルの内容の取得のみ、loadはWorkbookの作成までの時間を計測する。
+ * キャッシュで省けるのはテンプレートファイルの読み込みのみのため、loadの差はreadの差と同程度となる。<br>
+ * NOTE: テンプレートファイルはクラスパス(benchmarks.jar)から読み込むため、ファイルを直接参照する読み込みは行われない
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateCacheBenchmark {
+
+  /** テンプレートファイル名 */
+  @Param({ "シートコピー(別ワークブック)テンプレート.xlsx", "シートコピーテンプレート.xls" })
+  public String template;
+
+  /** 読み込み方法(resource: クラスパスから毎回読み込む、cache: キャッシュから取得する) */
+  @Param({ "resource", "cache" })
+  public String mode;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    TemplateCache.clear();
+  }
+
+  @Benchmark
+  public int read() throws IOException {
+    if ("cache".equals(mode)) {
+      return TemplateCache.getTemplate(template).length;
+    }
+    try (var is = openResource()) {
+      return IOUtils.toByteArray(is).length;
+    }
+  }
+
+  @Benchmark
+  public int load() throws IOException {
+    if ("cache".equals(mode)) {
+      try (var workbook = PoiSampleUtils.loadTemplateWorkbook(template)) {
+        return workbook.getNumberOfSheets();
+      }
+    }
+    try (var is = openResource(); var workbook = WorkbookFactory.create(is)) {
+      return workbook.getNumberOfSheets();
+    }
+  }
+
+  /**
+   * クラスパスのテンプレートファイルを開く
+   *
+   * @return テンプレートファイルの入力ストリーム
+   * @throws IOException
+   */
+  private InputStream openResource() throws IOException {
+    var is = getClass().getClassLoader().getResourceAsStream(template);
+    if (is == null) {
+      throw new FileNotFoundException("テンプレートファイルが見つかりません: " + template);
+    }
+    return is;
+  }
+
+}
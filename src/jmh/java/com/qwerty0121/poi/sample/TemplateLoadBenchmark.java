@@ -0,0 +1,100 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+
+/**
+ * テンプレートファイルの読み込み方法(ストリーム・ファイルの直接参照)の比較のベンチマーク<br>
+ * <br>
+ * 読み込み時間に加えて、読み込んだワークブックを保持している間のヒープの使用量(GC後)を比較する。<br>
+ * NOTE: retainedHeapのretainedBytesとpeakBytesは計測の反復回数分の合計となる
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateLoadBenchmark {
+
+  @Param({ "10000" })
+  public int rows;
+
+  @Param({ "20" })
+  public int columns;
+
+  /** 読み込み方法(stream: ストリームから読み込む、file: ファイルを直接参照する) */
+  @Param({ "stream", "file" })
+  public String mode;
+
+  /** テンプレートファイル */
+  private Path templateFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    templateFile = Files.createTempFile("template-load-benchmark", ".xlsx");
+    Files.write(templateFile, SyntheticWorkbooks.create(rows, columns, 50, 100, 10, 0));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(templateFile);
+  }
+
+  @Benchmark
+  public int load() throws IOException {
+    try (var workbook = loadWorkbook()) {
+      return workbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 3)
+  public int retainedHeap(HeapCounters counters) throws IOException {
+    var before = HeapCounters.resetPeakHeap();
+    try (var workbook = loadWorkbook()) {
+      counters.peakBytes = HeapCounters.peakHeap() - before;
+      counters.retainedBytes = HeapCounters.usedHeapAfterGc() - before;
+      return workbook.getSheetAt(0).getLastRowNum();
+    }
+  }
+
+  /**
+   * 読み込み方法に応じてテンプレートファイルを読み込む
+   *
+   * @return ワークブック
+   * @throws IOException
+   */
+  private Workbook loadWorkbook() throws IOException {
+    if ("file".equals(mode)) {
+      return PoiSampleUtils.loadTemplateWorkbook(templateFile);
+    }
+    // NOTE: クラスパスのリソースと同様にストリームから読み込む
+    try (var is = Files.newInputStream(templateFile)) {
+      return WorkbookFactory.create(is);
+    }
+  }
+
+}
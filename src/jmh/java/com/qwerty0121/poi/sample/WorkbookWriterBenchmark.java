@@ -0,0 +1,89 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.file.PathUtils;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.qwerty0121.poi.utils.WorkbookWriter;
+
+/**
+ * ワークブックのファイル出力のベンチマーク<br>
+ * <br>
+ * 圧縮レベル(-1: 既定、0: 無圧縮)と圧縮の並列数ごとの{@link WorkbookWriter}の出力と、
+ * 従来の{@link FileOutputStream}への直接の出力を比較する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkbookWriterBenchmark {
+
+  @Param({ "10000" })
+  public int rows;
+
+  @Param({ "20" })
+  public int columns;
+
+  @Param({ "-1", "0", "1" })
+  public int compressionLevel;
+
+  @Param({ "1", "4" })
+  public int parallelism;
+
+  /** 出力するワークブック(出力では変更されないため使い回す) */
+  private XSSFWorkbook workbook;
+
+  /** 出力先のディレクトリ */
+  private Path outputDirectory;
+
+  /** ワークブックの出力方法 */
+  private WorkbookWriter writer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    workbook = SyntheticWorkbooks.open(SyntheticWorkbooks.create(rows, columns, 50, 0, 0, 0));
+    outputDirectory = Files.createTempDirectory("workbook-writer-benchmark");
+    writer = new WorkbookWriter(compressionLevel, parallelism);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    workbook.close();
+    PathUtils.deleteDirectory(outputDirectory);
+  }
+
+  @Benchmark
+  public long write() throws IOException {
+    return writer.write(workbook, outputDirectory.resolve("workbook.xlsx")).bytes();
+  }
+
+  @Benchmark
+  public long writeToFileOutputStream() throws IOException {
+    var outputFile = outputDirectory.resolve("workbook-direct.xlsx");
+    try (var os = new FileOutputStream(outputFile.toFile())) {
+      workbook.write(os);
+    }
+    return Files.size(outputFile);
+  }
+
+}
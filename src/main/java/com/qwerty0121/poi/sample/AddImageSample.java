@@ -1,13 +1,17 @@
 package com.qwerty0121.poi.sample;
 
 import java.io.IOException;
+import java.util.Locale;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.util.Units;
 import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
 
+import com.qwerty0121.poi.utils.PictureRegistry;
+import com.qwerty0121.poi.utils.PictureResizer;
 import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.ShapeIndex;
 
 /**
  * 画像を追加するサンプル
@@ -23,16 +27,40 @@ public class AddImageSample {
       addImage(workbook, sheet);
 
       // テンプレートの図形に画像を追加
-      addImageToContainer(workbook, sheet);
+      // NOTE: 図形インデックスは画像の追加後に作成する
+      addImageToContainer(workbook, sheet, ShapeIndex.of(sheet));
 
       PoiSampleUtils.writeWorkbook(workbook, "画像追加サンプル.xlsx");
     }
+
+    // 画像を配置先の大きさに縮小し、パレット形式のPNGに変換してから追加する
+    try (var workbook = PoiSampleUtils.loadTemplateWorkbook("画像追加サンプルテンプレート.xlsx");
+        var resizer = new PictureResizer(new PictureResizer.Options(PictureResizer.OutputFormat.PALETTE_PNG, 0.85f, 1.0),
+            Runtime.getRuntime().availableProcessors())) {
+      var sheet = workbook.getSheet("テスト");
+      addImage(workbook, sheet, resizer);
+      addImageToContainer(workbook, sheet, ShapeIndex.of(sheet), "add-image-sample.png", "image-container", resizer);
+
+      PoiSampleUtils.writeWorkbook(workbook, "画像追加サンプル_縮小.xlsx");
+    }
+  }
+
+  static void addImage(Workbook workbook, Sheet sheet) throws IOException {
+    addImage(workbook, sheet, null);
   }
 
-  private static void addImage(Workbook workbook, Sheet sheet) throws IOException {
+  /**
+   * 画像をシートに追加する
+   *
+   * @param workbook ワークブック
+   * @param sheet    シート
+   * @param resizer  画像を配置先の大きさに縮小する場合に使用するクラス(縮小しない場合はnull)
+   * @throws IOException
+   */
+  static void addImage(Workbook workbook, Sheet sheet, PictureResizer resizer) throws IOException {
     // 画像ファイルを読み込み
-    var image = PoiSampleUtils.loadPictureAsByteArray("add-image-sample.png");
-    var imageIdx = workbook.addPicture(image, Workbook.PICTURE_TYPE_PNG);
+    // NOTE: 読み込んだ画像ファイルはキャッシュされ、同じ内容の画像はワークブック内で1つの画像ファイルを共有する
+    var image = PictureRegistry.loadPicture("add-image-sample.png");
 
     // 画像の追加位置とサイズを指定
     var anchor = workbook.getCreationHelper().createClientAnchor();
@@ -48,18 +76,82 @@ public class AddImageSample {
     anchor.setDx2(Units.EMU_PER_PIXEL * -10);
     anchor.setDy2(Units.EMU_PER_PIXEL * -10);
 
+    // ワークブックに画像を追加
+    var imageIdx = resizer == null
+        ? PictureRegistry.addPicture(workbook, image, Workbook.PICTURE_TYPE_PNG)
+        : resizer.addPicture(sheet, anchor, image);
+
     // シートに画像を追加
     var patriarch = sheet.createDrawingPatriarch();
     patriarch.createPicture(anchor, imageIdx);
   }
 
-  private static void addImageToContainer(Workbook workbook, Sheet sheet) throws IOException {
-    // 画像ファイルを読み込み
-    var image = PoiSampleUtils.loadPictureAsByteArray("add-image-sample.png");
-    var imageIdx = workbook.addPicture(image, Workbook.PICTURE_TYPE_PNG);
+  static void addImageToContainer(Workbook workbook, Sheet sheet, ShapeIndex shapeIndex) throws IOException {
+    addImageToContainer(workbook, sheet, shapeIndex, "add-image-sample.png", "image-container", null);
+  }
 
+  /**
+   * 画像の追加位置の目安となる図形と同じ位置に画像を追加する
+   * 
+   * @param workbook      ワークブック
+   * @param sheet         シート
+   * @param imageFileName 画像ファイル名(PNGまたはJPEG)
+   * @param containerName 画像の追加位置の目安となる図形の名前
+   * @return 画像を追加した場合はtrue。シートに図形が存在しない場合はfalse
+   * @throws IOException
+   */
+  public static boolean addImageToContainer(Workbook workbook, Sheet sheet, String imageFileName,
+      String containerName) throws IOException {
+    return addImageToContainer(workbook, sheet, imageFileName, containerName, null);
+  }
+
+  /**
+   * 画像の追加位置の目安となる図形と同じ位置に画像を追加する<br>
+   * <br>
+   * 縮小に使用するクラスを指定した場合は、画像を図形の大きさまで縮小(設定に応じて変換)してから追加する。
+   * 
+   * @param workbook      ワークブック
+   * @param sheet         シート
+   * @param imageFileName 画像ファイル名(PNGまたはJPEG)
+   * @param containerName 画像の追加位置の目安となる図形の名前
+   * @param resizer       画像を縮小する場合に使用するクラス(縮小しない場合はnull)
+   * @return 画像を追加した場合はtrue。シートに図形が存在しない場合はfalse
+   * @throws IOException
+   */
+  public static boolean addImageToContainer(Workbook workbook, Sheet sheet, String imageFileName,
+      String containerName, PictureResizer resizer) throws IOException {
+    return addImageToContainer(workbook, sheet, null, imageFileName, containerName, resizer);
+  }
+
+  /**
+   * 画像の追加位置の目安となる図形と同じ位置に画像を追加する<br>
+   * <br>
+   * 図形インデックスを指定した場合は、インデックスから図形を取得し、画像の追加後にインデックスを破棄する。
+   * 縮小に使用するクラスを指定した場合は、画像を図形の大きさまで縮小(設定に応じて変換)してから追加する。
+   * 
+   * @param workbook      ワークブック
+   * @param sheet         シート
+   * @param shapeIndex    シートの図形インデックス(ない場合はnull)
+   * @param imageFileName 画像ファイル名(PNGまたはJPEG)
+   * @param containerName 画像の追加位置の目安となる図形の名前
+   * @param resizer       画像を縮小する場合に使用するクラス(縮小しない場合はnull)
+   * @return 画像を追加した場合はtrue。シートに図形が存在しない場合はfalse
+   * @throws IOException
+   */
+  public static boolean addImageToContainer(Workbook workbook, Sheet sheet, ShapeIndex shapeIndex,
+      String imageFileName, String containerName, PictureResizer resizer) throws IOException {
     // 画像の追加位置の目安となる図形
-    var container = PoiSampleUtils.getShapeByName(sheet, "image-container");
+    var container = shapeIndex != null
+        ? shapeIndex.getByName(containerName)
+        : PoiSampleUtils.getShapeByName(sheet, containerName);
+    if (container == null) {
+      return false;
+    }
+
+    // 画像ファイルを読み込み
+    // NOTE: 読み込んだ画像ファイルはキャッシュされ、同じ内容の画像はワークブック内で1つの画像ファイルを共有する
+    var image = PictureRegistry.loadPicture(imageFileName);
+
     var containerAnchor = (XSSFClientAnchor) container.getAnchor();
 
     // 図形と同じ位置に画像を追加
@@ -73,7 +165,33 @@ public class AddImageSample {
         containerAnchor.getRow1(),
         containerAnchor.getCol2(),
         containerAnchor.getRow2());
+    var imageIdx = resizer == null
+        ? PictureRegistry.addPicture(workbook, image, getPictureType(imageFileName))
+        : resizer.addPicture(sheet, anchor, image);
     patriarch.createPicture(anchor, imageIdx);
+
+    // 図形を追加したため、図形インデックスを破棄する
+    if (shapeIndex != null) {
+      shapeIndex.invalidate();
+    }
+    return true;
+  }
+
+  /**
+   * 画像ファイル名の拡張子から画像の種類を取得する
+   * 
+   * @param imageFileName 画像ファイル名
+   * @return 画像の種類({@link Workbook#PICTURE_TYPE_PNG}など)
+   */
+  private static int getPictureType(String imageFileName) {
+    var lowerCaseFileName = imageFileName.toLowerCase(Locale.ROOT);
+    if (lowerCaseFileName.endsWith(".png")) {
+      return Workbook.PICTURE_TYPE_PNG;
+    }
+    if (lowerCaseFileName.endsWith(".jpg") || lowerCaseFileName.endsWith(".jpeg")) {
+      return Workbook.PICTURE_TYPE_JPEG;
+    }
+    throw new IllegalArgumentException("対応していない画像ファイルです: " + imageFileName);
   }
 
 }
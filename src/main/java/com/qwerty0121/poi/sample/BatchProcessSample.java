@@ -0,0 +1,243 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.qwerty0121.poi.utils.ShapeIndex;
+import com.qwerty0121.poi.utils.WorkbookBatchProcessor;
+import com.qwerty0121.poi.utils.WorkbookBatchProcessor.WorkbookOperation;
+
+/**
+ * 複数のワークブックのファイルにまとめて処理を実行するサンプル<br>
+ * <br>
+ * 使い方: {@code BatchProcessSample <入力ファイル|ディレクトリ|globパターン> <出力先ディレクトリ> <処理>...}<br>
+ * 処理は指定した順に実行する。シートを対象とする処理は全てのシートに実行する。
+ * <ul>
+ * <li>{@code copy:<シート名>}: シートをコピーする</li>
+ * <li>{@code hide:<図形名>[,<図形名>...]}: 図形を非表示にする</li>
+ * <li>{@code remove:<図形名>[,<図形名>...]}: 図形を削除する</li>
+ * <li>{@code reverse}: 図形の重なり順を逆にする</li>
+ * <li>{@code front:<図形名>}、{@code back:<図形名>}: 図形を最前面、最背面に移動する</li>
+ * <li>{@code image:<画像ファイル名>@<図形名>}: 図形と同じ位置に画像を追加する</li>
+ * <li>{@code replace:<置換対象の文字列>=<置換後の文字列>}: 図形とセルのテキストを置換する</li>
+ * </ul>
+ * 引数を省略した場合は、テンプレートファイルのディレクトリの全てのxlsxファイルに処理を実行して.output/batchに出力する。
+ * 処理に失敗したファイルがある場合は、処理結果を出力した後に例外とする。
+ */
+public class BatchProcessSample {
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length == 0) {
+      args = new String[] { "src/main/resources", "./.output/batch", "replace:${text}=バッチ処理で設定したテキスト", "reverse",
+          "image:add-image-sample.png@image-container" };
+    }
+    if (args.length < 3) {
+      throw new IllegalArgumentException("使い方: BatchProcessSample <入力ファイル|ディレクトリ|globパターン> <出力先ディレクトリ> <処理>...");
+    }
+
+    var inputFiles = WorkbookBatchProcessor.findInputFiles(args[0]);
+    var outputDirectory = Path.of(args[1]);
+    var operation = parseOperations(Arrays.asList(args).subList(2, args.length));
+
+    var processor = new WorkbookBatchProcessor(operation,
+        WorkbookBatchProcessor.defaultParallelism(inputFiles.files()));
+    var summary = processor.process(inputFiles, outputDirectory);
+    summary.print(System.out);
+
+    if (!summary.failures().isEmpty()) {
+      throw new RuntimeException(summary.failures().size() + "件のファイルの処理に失敗しました。");
+    }
+  }
+
+  /**
+   * 処理の指定を順に実行する処理を作成する
+   *
+   * @param specs 処理の指定({@code <処理名>[:<引数>]})
+   * @return 処理
+   */
+  static WorkbookOperation parseOperations(List<String> specs) {
+    var operations = specs.stream().map(BatchProcessSample::parseOperation).toList();
+    return workbook -> {
+      // NOTE: 図形インデックスはシートごとに1つ作成し、ワークブックの処理が終わるまで各処理で使い回す
+      var shapeIndexes = new HashMap<Sheet, ShapeIndex>();
+      for (var operation : operations) {
+        operation.apply(workbook, shapeIndexes);
+      }
+    };
+  }
+
+  /**
+   * 処理の指定から処理を作成する
+   *
+   * @param spec 処理の指定({@code <処理名>[:<引数>]})
+   * @return 処理
+   */
+  static BatchOperation parseOperation(String spec) {
+    var separatorIndex = spec.indexOf(':');
+    var name = separatorIndex < 0 ? spec : spec.substring(0, separatorIndex);
+    var argument = separatorIndex < 0 ? "" : spec.substring(separatorIndex + 1);
+
+    switch (name) {
+      case "copy":
+        return (workbook, shapeIndexes) -> copySheet(workbook, requireArgument(spec, argument));
+      case "hide": {
+        var shapeNames = Set.of(requireArgument(spec, argument).split(","));
+        return (workbook, shapeIndexes) -> forEachSheet(workbook, shapeIndexes,
+            (sheet, shapeIndex) -> HideShapeSample.hideShapes(sheet, shapeNames));
+      }
+      case "remove": {
+        var shapeNames = Set.of(requireArgument(spec, argument).split(","));
+        return (workbook, shapeIndexes) -> forEachSheetWithDrawing(workbook, shapeIndexes,
+            (sheet, shapeIndex) -> RemoveShapeSample.removeShapes(sheet, shapeIndex, shapeNames));
+      }
+      case "reverse":
+        return (workbook, shapeIndexes) -> forEachSheetWithDrawing(workbook, shapeIndexes,
+            ChangeShapeStackingOrder::reverseShapeStackingOrder);
+      case "front": {
+        var shapeName = requireArgument(spec, argument);
+        return (workbook, shapeIndexes) -> forEachSheetWithShape(workbook, shapeIndexes, shapeName,
+            (sheet, shapeIndex) -> ChangeShapeStackingOrder.bringToFront(sheet, shapeIndex, shapeName));
+      }
+      case "back": {
+        var shapeName = requireArgument(spec, argument);
+        return (workbook, shapeIndexes) -> forEachSheetWithShape(workbook, shapeIndexes, shapeName,
+            (sheet, shapeIndex) -> ChangeShapeStackingOrder.sendToBack(sheet, shapeIndex, shapeName));
+      }
+      case "image": {
+        var imageArguments = requireArgument(spec, argument).split("@", 2);
+        if (imageArguments.length != 2) {
+          throw new IllegalArgumentException("画像ファイル名と図形名を「@」で区切って指定してください: " + spec);
+        }
+        return (workbook, shapeIndexes) -> forEachSheet(workbook, shapeIndexes,
+            (sheet, shapeIndex) -> AddImageSample.addImageToContainer(workbook, sheet, shapeIndex,
+                imageArguments[0], imageArguments[1], null));
+      }
+      case "replace": {
+        var replaceArguments = requireArgument(spec, argument).split("=", 2);
+        if (replaceArguments.length != 2) {
+          throw new IllegalArgumentException("置換対象の文字列と置換後の文字列を「=」で区切って指定してください: " + spec);
+        }
+        var replacements = Map.of(replaceArguments[0], replaceArguments[1]);
+        return (workbook, shapeIndexes) -> forEachSheet(workbook, shapeIndexes,
+            (sheet, shapeIndex) -> ShapeTextSettingSample.replacePlaceholders(sheet, replacements));
+      }
+      default:
+        throw new IllegalArgumentException("処理名が不正です: " + spec);
+    }
+  }
+
+  /**
+   * シートをコピーする<br>
+   * <br>
+   * コピーしたシートはPOIの既定の名前(「シート名 (2)」など)となる。
+   *
+   * @param workbook  ワークブック
+   * @param sheetName コピー元のシート名
+   */
+  private static void copySheet(Workbook workbook, String sheetName) {
+    var sheetIndex = workbook.getSheetIndex(sheetName);
+    if (sheetIndex < 0) {
+      throw new IllegalArgumentException("シートが存在しません: " + sheetName);
+    }
+    workbook.cloneSheet(sheetIndex);
+  }
+
+  /**
+   * 全てのシートに処理を実行する<br>
+   * <br>
+   * シートの図形インデックスは、まだ作成していない場合のみ作成する。
+   *
+   * @param workbook     ワークブック
+   * @param shapeIndexes シート → 図形インデックス
+   * @param operation    シートに実行する処理
+   * @throws IOException
+   */
+  private static void forEachSheet(Workbook workbook, Map<Sheet, ShapeIndex> shapeIndexes,
+      SheetOperation operation) throws IOException {
+    // NOTE: 処理中にシートが追加されても対象にしないよう、シート数を先に取得する
+    var sheetCount = workbook.getNumberOfSheets();
+    for (int i = 0; i < sheetCount; i++) {
+      var sheet = workbook.getSheetAt(i);
+      // NOTE: xlsx形式でない、またはDrawingが存在しないシートはnull(保持しない)
+      operation.apply(sheet, shapeIndexes.computeIfAbsent(sheet, ShapeIndex::of));
+    }
+  }
+
+  /**
+   * 図形が存在する全てのシートに処理を実行する
+   *
+   * @param workbook     ワークブック
+   * @param shapeIndexes シート → 図形インデックス
+   * @param operation    シートに実行する処理
+   * @throws IOException
+   */
+  private static void forEachSheetWithDrawing(Workbook workbook, Map<Sheet, ShapeIndex> shapeIndexes,
+      SheetOperation operation) throws IOException {
+    forEachSheet(workbook, shapeIndexes, (sheet, shapeIndex) -> {
+      if (sheet.getDrawingPatriarch() != null) {
+        operation.apply(sheet, shapeIndex);
+      }
+    });
+  }
+
+  /**
+   * 指定した名前の図形が存在する全てのシートに処理を実行する
+   *
+   * @param workbook     ワークブック
+   * @param shapeIndexes シート → 図形インデックス
+   * @param shapeName    図形名
+   * @param operation    シートに実行する処理
+   * @throws IOException
+   */
+  private static void forEachSheetWithShape(Workbook workbook, Map<Sheet, ShapeIndex> shapeIndexes,
+      String shapeName, SheetOperation operation) throws IOException {
+    forEachSheet(workbook, shapeIndexes, (sheet, shapeIndex) -> {
+      if (shapeIndex != null && shapeIndex.getByName(shapeName) != null) {
+        operation.apply(sheet, shapeIndex);
+      }
+    });
+  }
+
+  /**
+   * 処理の引数を取得する
+   *
+   * @param spec     処理の指定
+   * @param argument 処理の引数
+   * @return 処理の引数
+   */
+  private static String requireArgument(String spec, String argument) {
+    if (argument.isEmpty()) {
+      throw new IllegalArgumentException("処理の引数を指定してください: " + spec);
+    }
+    return argument;
+  }
+
+  /**
+   * ワークブックに実行する処理(シートの図形インデックスを処理間で共有する)
+   */
+  @FunctionalInterface
+  interface BatchOperation {
+
+    void apply(Workbook workbook, Map<Sheet, ShapeIndex> shapeIndexes) throws IOException;
+
+  }
+
+  /**
+   * シートに実行する処理
+   */
+  @FunctionalInterface
+  private interface SheetOperation {
+
+    void apply(Sheet sheet, ShapeIndex shapeIndex) throws IOException;
+
+  }
+
+}
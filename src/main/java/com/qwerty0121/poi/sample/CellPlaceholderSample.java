@@ -0,0 +1,35 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+import com.qwerty0121.poi.utils.CellPlaceholderIndex;
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+
+/**
+ * セルのプレースホルダーに値を設定するサンプル
+ */
+public class CellPlaceholderSample {
+
+  /** テンプレートファイル名 */
+  private static final String TEMPLATE_FILE_NAME = "セルプレースホルダーテンプレート.xlsx";
+
+  public static void main(String[] args) throws IOException {
+    // テンプレートのプレースホルダーの位置を取得
+    // NOTE: インデックスはテンプレートごとに一度だけ作成され、2回目以降はキャッシュから取得される
+    var index = CellPlaceholderIndex.forTemplate(TEMPLATE_FILE_NAME);
+
+    try (var workbook = PoiSampleUtils.loadTemplateWorkbook(TEMPLATE_FILE_NAME);) {
+      // プレースホルダーに値を設定する
+      index.render(workbook, Map.of(
+          "customerName", "株式会社サンプル",
+          "issueDate", LocalDate.of(2024, 4, 1),
+          "amount", 123456,
+          "note", "税込"));
+
+      PoiSampleUtils.writeWorkbook(workbook, "セルプレースホルダー.xlsx");
+    }
+  }
+
+}
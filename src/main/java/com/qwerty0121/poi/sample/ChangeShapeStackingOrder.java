@@ -1,15 +1,23 @@
 package com.qwerty0121.poi.sample;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.usermodel.XSSFDrawing;
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTAbsoluteAnchor;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTDrawing;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTOneCellAnchor;
 import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTTwoCellAnchor;
 
 import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.ShapeIndex;
 
 /**
  * 図形の重なり順を変更するサンプル
@@ -33,37 +41,161 @@ public class ChangeShapeStackingOrder {
    * 
    * @param sheet シート
    */
-  private static void reverseShapeStackingOrder(Sheet sheet) {
+  static void reverseShapeStackingOrder(Sheet sheet) {
+    reverseShapeStackingOrder(sheet, null);
+  }
+
+  /**
+   * 図形の重なり順を逆にする
+   * 
+   * @param sheet      シート
+   * @param shapeIndex 並び順の変更後に破棄する図形インデックス(ない場合はnull)
+   */
+  static void reverseShapeStackingOrder(Sheet sheet, ShapeIndex shapeIndex) {
+    var anchorCount = getAnchors(getXSSFDrawing(sheet)).size();
+
+    // 逆順の並び順を作成する
+    var newOrder = new int[anchorCount];
+    for (int i = 0; i < anchorCount; i++) {
+      newOrder[i] = anchorCount - 1 - i;
+    }
+
+    reorderShapes(sheet, shapeIndex, newOrder);
+  }
+
+  /**
+   * 図形の重なり順を指定した並び順に変更する<br>
+   * <br>
+   * 詳細は{@link #reorderShapes(Sheet, ShapeIndex, int[])}を参照。
+   * 
+   * @param sheet    シート
+   * @param newOrder 変更後の並び順
+   */
+  public static void reorderShapes(Sheet sheet, int[] newOrder) {
+    reorderShapes(sheet, null, newOrder);
+  }
+
+  /**
+   * 図形の重なり順を指定した並び順に変更する<br>
+   * <br>
+   * CTTwoCellAnchor、CTOneCellAnchor、CTAbsoluteAnchorの全てを対象とし、
+   * CTDrawing内の出現順(最背面 → 最前面)を重なり順として扱う。
+   * アンカーはXmlCursorで移動するため、XML文字列への変換や再解析は行わない。
+   * 
+   * @param sheet      シート
+   * @param shapeIndex 並び順の変更後に破棄する図形インデックス(ない場合はnull)
+   * @param newOrder   変更後の並び順。newOrder[i]には変更後にi番目(最背面から数えて)となる図形の、変更前の位置を指定する
+   */
+  public static void reorderShapes(Sheet sheet, ShapeIndex shapeIndex, int[] newOrder) {
+    var xssfDrawing = getXSSFDrawing(sheet);
+    var anchors = getAnchors(xssfDrawing);
+
+    // 並び順が全ての図形の位置を1回ずつ含んでいるか検証する
+    if (newOrder.length != anchors.size()) {
+      throw new IllegalArgumentException(
+          "並び順の要素数が図形の数と一致しません。図形の数: " + anchors.size() + ", 並び順の要素数: " + newOrder.length);
+    }
+    var used = new boolean[anchors.size()];
+    for (var index : newOrder) {
+      if (index < 0 || index >= anchors.size() || used[index]) {
+        throw new IllegalArgumentException("並び順が不正です: " + Arrays.toString(newOrder));
+      }
+      used[index] = true;
+    }
+
+    // 変更後の並び順でアンカーを末尾に移動していく
+    // NOTE: moveXmlで移動したアンカーは削除/再追加と異なりXmlValueDisconnectedExceptionが発生しない
+    var ctDrawing = xssfDrawing.getCTDrawing();
+    for (var index : newOrder) {
+      moveToEnd(ctDrawing, anchors.get(index));
+    }
+
+    // 図形の並び順を変更したため、図形インデックスを破棄する
+    invalidate(shapeIndex);
+  }
+
+  /**
+   * 図形を最前面に移動する
+   * 
+   * @param sheet     シート
+   * @param shapeName 移動対象の図形の名前
+   */
+  public static void bringToFront(Sheet sheet, String shapeName) {
+    bringToFront(sheet, null, shapeName);
+  }
+
+  /**
+   * 図形を最前面に移動する<br>
+   * <br>
+   * 図形インデックスを指定した場合は、インデックスから移動対象の図形を取得し、移動後にインデックスを破棄する。
+   * 
+   * @param sheet      シート
+   * @param shapeIndex シートの図形インデックス(ない場合はnull)
+   * @param shapeName  移動対象の図形の名前
+   */
+  public static void bringToFront(Sheet sheet, ShapeIndex shapeIndex, String shapeName) {
+    var xssfDrawing = getXSSFDrawing(sheet);
+    moveToEnd(xssfDrawing.getCTDrawing(), findAnchor(xssfDrawing, shapeIndex, shapeName));
+    invalidate(shapeIndex);
+  }
+
+  /**
+   * 図形を最背面に移動する
+   * 
+   * @param sheet     シート
+   * @param shapeName 移動対象の図形の名前
+   */
+  public static void sendToBack(Sheet sheet, String shapeName) {
+    sendToBack(sheet, null, shapeName);
+  }
+
+  /**
+   * 図形を最背面に移動する<br>
+   * <br>
+   * 図形インデックスを指定した場合は、インデックスから移動対象の図形を取得し、移動後にインデックスを破棄する。
+   * 
+   * @param sheet      シート
+   * @param shapeIndex シートの図形インデックス(ない場合はnull)
+   * @param shapeName  移動対象の図形の名前
+   */
+  public static void sendToBack(Sheet sheet, ShapeIndex shapeIndex, String shapeName) {
+    var xssfDrawing = getXSSFDrawing(sheet);
+    var anchor = findAnchor(xssfDrawing, shapeIndex, shapeName);
+    try (var destination = xssfDrawing.getCTDrawing().newCursor(); var source = anchor.newCursor()) {
+      // CTDrawingの先頭の子要素の前に移動する
+      destination.toFirstChild();
+      if (!destination.isAtSamePositionAs(source)) {
+        source.moveXml(destination);
+      }
+    }
+    invalidate(shapeIndex);
+  }
+
+  /**
+   * 図形の重なり順をXML文字列を経由して逆にする<br>
+   * <br>
+   * NOTE: CTTwoCellAnchorのみを対象とする従来の実装。{@link #reverseShapeStackingOrder(Sheet)}との性能比較のために残している
+   * 
+   * @param sheet シート
+   */
+  static void reverseShapeStackingOrderByXmlText(Sheet sheet) {
     // --- 注意事項 ---
     // 今回のサンプルではテンプレートのExcelファイルにCTTwoCellAnchorのみ含まれていることを前提としている。
-    // そのため、CTOneCellAnchorやCTAbsoluteAnchorが含まれている場合は、別途処理を追加する必要がある。
     // CTDrawingからCTTwoCellAnchorを追加/削除することで図形の重なり順を変更できる。
-    // それ以外の方法では出力時にエラーとなる、出力したファイルが破損する、などの問題が発生する。
-    // また、CTDrawingから削除したCTTwoCellAnchorインスタンスを再度CTDrawingに追加するとXmlValueDisconnectedExceptionが発生する。
+    // CTDrawingから削除したCTTwoCellAnchorインスタンスを再度CTDrawingに追加するとXmlValueDisconnectedExceptionが発生する。
     // そのため、一度XML文字列に変換し、そのXML文字列から再度CTTwoCellAnchorインスタンスを生成している。
 
-    var drawing = sheet.getDrawingPatriarch();
-    if (!(drawing instanceof XSSFDrawing xssfDrawing)) {
-      throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
-    }
-
     // CTDrawingを取得
-    var ctDrawing = xssfDrawing.getCTDrawing();
+    var ctDrawing = getXSSFDrawing(sheet).getCTDrawing();
 
     // CTTwoCellAnchorリストを取得
     var twoCellAnchorList = ctDrawing.getTwoCellAnchorList();
 
-    // CTTwoCellAnchorリストをコピーし、変更後の順序に変更する
-    // ※今回は逆順にする
+    // CTTwoCellAnchorリストをコピーし、逆順にする
     var newOrderTwoCellAnchorList = twoCellAnchorList.stream().map(twoCellAnchor -> {
-      // 後の処理でCTTwoCellAnchorを削除するため、CTTwoCellAnchorインスタンスをコピーする
-      // NOTE: これをしないとCTDrawingに追加する際にXmlValueDisconnectedExceptionが発生してしまう
-
-      // XML文字列に変換
-      var xmlText = twoCellAnchor.xmlText();
-      // 再度CTTwoCellAnchorに変換
+      // XML文字列に変換し、再度CTTwoCellAnchorに変換する
       try {
-        return CTTwoCellAnchor.Factory.parse(xmlText);
+        return CTTwoCellAnchor.Factory.parse(twoCellAnchor.xmlText());
       } catch (XmlException e) {
         throw new RuntimeException(e);
       }
@@ -78,4 +210,88 @@ public class ChangeShapeStackingOrder {
       ctDrawing.addNewTwoCellAnchor().set(twoCellAnchor);
     });
   }
+
+  /**
+   * シートからXSSFDrawingを取得する
+   * 
+   * @param sheet シート
+   * @return XSSFDrawing
+   */
+  private static XSSFDrawing getXSSFDrawing(Sheet sheet) {
+    var drawing = sheet.getDrawingPatriarch();
+    if (!(drawing instanceof XSSFDrawing xssfDrawing)) {
+      throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
+    }
+    return xssfDrawing;
+  }
+
+  /**
+   * CTDrawing内のアンカーを出現順(最背面 → 最前面)に取得する
+   * 
+   * @param xssfDrawing XSSFDrawing
+   * @return アンカーのリスト
+   */
+  private static List<XmlObject> getAnchors(XSSFDrawing xssfDrawing) {
+    var anchors = new ArrayList<XmlObject>();
+    try (var cursor = xssfDrawing.getCTDrawing().newCursor()) {
+      for (var hasChild = cursor.toFirstChild(); hasChild; hasChild = cursor.toNextSibling()) {
+        var object = cursor.getObject();
+        if (object instanceof CTTwoCellAnchor || object instanceof CTOneCellAnchor
+            || object instanceof CTAbsoluteAnchor) {
+          anchors.add(object);
+        }
+      }
+    }
+    return anchors;
+  }
+
+  /**
+   * 図形名をもとにアンカーを取得する<br>
+   * <br>
+   * 図形インデックスを指定した場合はインデックスから取得し、指定しない場合はアンカーを走査する。
+   * 
+   * @param xssfDrawing XSSFDrawing
+   * @param shapeIndex  シートの図形インデックス(ない場合はnull)
+   * @param shapeName   図形名
+   * @return アンカー
+   */
+  private static XmlObject findAnchor(XSSFDrawing xssfDrawing, ShapeIndex shapeIndex, String shapeName) {
+    var anchor = shapeIndex != null
+        ? shapeIndex.getAnchorByName(shapeName)
+        : getAnchors(xssfDrawing).stream()
+            .filter(candidate -> {
+              var nonVisualProperties = PoiSampleUtils.getAnchorNonVisualProperties(candidate);
+              return nonVisualProperties != null && shapeName.equals(nonVisualProperties.getName());
+            })
+            .findFirst()
+            .orElse(null);
+    if (anchor == null) {
+      throw new IllegalArgumentException("図形が存在しません: " + shapeName);
+    }
+    return anchor;
+  }
+
+  /**
+   * 図形インデックスを破棄する
+   * 
+   * @param shapeIndex 図形インデックス(ない場合はnull)
+   */
+  private static void invalidate(ShapeIndex shapeIndex) {
+    if (shapeIndex != null) {
+      shapeIndex.invalidate();
+    }
+  }
+
+  /**
+   * アンカーをCTDrawingの末尾(最前面)に移動する
+   * 
+   * @param ctDrawing CTDrawing
+   * @param anchor    アンカー
+   */
+  private static void moveToEnd(CTDrawing ctDrawing, XmlObject anchor) {
+    try (var destination = ctDrawing.newCursor(); var source = anchor.newCursor()) {
+      destination.toEndToken();
+      source.moveXml(destination);
+    }
+  }
 }
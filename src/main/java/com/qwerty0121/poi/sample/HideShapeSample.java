@@ -1,13 +1,19 @@
 package com.qwerty0121.poi.sample;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
 import org.apache.poi.xssf.usermodel.XSSFPicture;
 import org.apache.poi.xssf.usermodel.XSSFShapeGroup;
 import org.apache.poi.xssf.usermodel.XSSFSimpleShape;
+import org.apache.xmlbeans.XmlObject;
 
 import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.ShapeIndex;
 
 /**
  * 図形を非表示にするサンプル
@@ -19,14 +25,20 @@ public class HideShapeSample {
       // "テスト"シートを取得
       var sheet = workbook.getSheet("テスト");
 
+      // 図形インデックスを作成し、図形の検索に使い回す
+      var shapeIndex = ShapeIndex.of(sheet);
+      if (shapeIndex == null) {
+        throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
+      }
+
       // 画像を非表示にする
-      hidePicture(sheet);
+      hidePicture(shapeIndex);
 
       // 図形を非表示にする
-      hideSimpleShape(sheet);
+      hideSimpleShape(shapeIndex);
 
       // 図形グループを非表示にする
-      hideShapeGroup(sheet);
+      hideShapeGroup(shapeIndex);
 
       PoiSampleUtils.writeWorkbook(workbook, "図形非表示サンプル.xlsx");
     }
@@ -35,12 +47,12 @@ public class HideShapeSample {
   /**
    * 画像を非表示にする
    * 
-   * @param sheet シート
+   * @param shapeIndex シートの図形インデックス
    * @throws IOException
    */
-  private static void hidePicture(Sheet sheet) throws IOException {
+  static void hidePicture(ShapeIndex shapeIndex) throws IOException {
     // 画像図形を取得
-    var shape = PoiSampleUtils.getShapeByName(sheet, "picture");
+    var shape = shapeIndex.getByName("picture");
     if (!(shape instanceof XSSFPicture picture)) {
       throw new RuntimeException("テンプレートファイルに「picture」という名前の画像図形が存在しません。");
     }
@@ -52,12 +64,12 @@ public class HideShapeSample {
   /**
    * 図形を非表示にする
    * 
-   * @param sheet シート
+   * @param shapeIndex シートの図形インデックス
    * @throws IOException
    */
-  private static void hideSimpleShape(Sheet sheet) throws IOException {
+  static void hideSimpleShape(ShapeIndex shapeIndex) throws IOException {
     // 図形を取得
-    var shape = PoiSampleUtils.getShapeByName(sheet, "shape");
+    var shape = shapeIndex.getByName("shape");
     if (!(shape instanceof XSSFSimpleShape simpleShape)) {
       throw new RuntimeException("テンプレートファイルに「shape」という名前の図形が存在しません。");
     }
@@ -69,12 +81,12 @@ public class HideShapeSample {
   /**
    * 図形グループを非表示にする
    * 
-   * @param sheet シート
+   * @param shapeIndex シートの図形インデックス
    * @throws IOException
    */
-  private static void hideShapeGroup(Sheet sheet) throws IOException {
+  static void hideShapeGroup(ShapeIndex shapeIndex) throws IOException {
     // 図形グループを取得
-    var shape = PoiSampleUtils.getShapeByName(sheet, "shape-group");
+    var shape = shapeIndex.getByName("shape-group");
     if (!(shape instanceof XSSFShapeGroup shapeGroup)) {
       throw new RuntimeException("テンプレートファイルに「shape-group」という名前の図形グループが存在しません。");
     }
@@ -83,4 +95,37 @@ public class HideShapeSample {
     shapeGroup.getCTGroupShape().getNvGrpSpPr().getCNvPr().setHidden(true);
   }
 
+  /**
+   * 指定した名前の図形をまとめて非表示にする<br>
+   * <br>
+   * 各アンカーのリストを1回ずつ走査して対象の図形を判定する。
+   * 図形の種類(図形・図形グループ・画像など)は問わない。<br>
+   * NOTE: 最上位の階層の図形のみを判定対象とし、図形グループ内の図形は判定しない
+   * 
+   * @param sheet      シート
+   * @param shapeNames 非表示にする図形の名前
+   * @return 非表示にした図形の数。シートにDrawingが存在しない場合は0
+   */
+  public static int hideShapes(Sheet sheet, Set<String> shapeNames) {
+    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
+      return 0;
+    }
+
+    var ctDrawing = xssfDrawing.getCTDrawing();
+    var anchors = new ArrayList<XmlObject>();
+    anchors.addAll(List.of(ctDrawing.getTwoCellAnchorArray()));
+    anchors.addAll(List.of(ctDrawing.getOneCellAnchorArray()));
+    anchors.addAll(List.of(ctDrawing.getAbsoluteAnchorArray()));
+
+    var hiddenCount = 0;
+    for (var anchor : anchors) {
+      var nonVisualProperties = PoiSampleUtils.getAnchorNonVisualProperties(anchor);
+      if (nonVisualProperties != null && shapeNames.contains(nonVisualProperties.getName())) {
+        nonVisualProperties.setHidden(true);
+        hiddenCount++;
+      }
+    }
+    return hiddenCount;
+  }
+
 }
@@ -1,11 +1,26 @@
 package com.qwerty0121.poi.sample;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.openxml4j.opc.TargetMode;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTBlip;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTNonVisualDrawingProps;
 
+import com.qwerty0121.poi.utils.PictureRegistry;
 import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.ShapeIndex;
 
 /**
  * 図形を削除するサンプル
@@ -20,11 +35,8 @@ public class RemoveShapeSample {
       // 図形を削除する
       removeShape(sheet, "shape");
 
-      // 図形グループを削除する
-      removeShape(sheet, "shape-group");
-
-      // 画像を削除する
-      removeShape(sheet, "picture");
+      // 図形グループと画像をまとめて削除する
+      removeShapes(sheet, Set.of("shape-group", "picture"));
 
       PoiSampleUtils.writeWorkbook(workbook, "図形削除サンプル.xlsx");
     }
@@ -36,7 +48,7 @@ public class RemoveShapeSample {
    * @param sheet     シート
    * @param shapeName 削除対象の図形の名前
    */
-  private static void removeShape(Sheet sheet, String shapeName) {
+  static void removeShape(Sheet sheet, String shapeName) {
     var drawing = sheet.getDrawingPatriarch();
     if (!(drawing instanceof XSSFDrawing xssfDrawing)) {
       throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
@@ -91,4 +103,197 @@ public class RemoveShapeSample {
     }
   }
 
+  /**
+   * 指定した名前の図形をまとめて削除する<br>
+   * <br>
+   * 詳細は{@link #removeShapes(Sheet, Predicate)}を参照。
+   * 
+   * @param sheet      シート
+   * @param shapeNames 削除対象の図形の名前
+   * @return 削除した図形
+   */
+  public static List<RemovedShape> removeShapes(Sheet sheet, Set<String> shapeNames) {
+    return removeShapes(sheet, null, shapeNames);
+  }
+
+  /**
+   * 指定した名前の図形をまとめて削除する<br>
+   * <br>
+   * 詳細は{@link #removeShapes(Sheet, ShapeIndex, Predicate)}を参照。
+   * 
+   * @param sheet      シート
+   * @param shapeIndex 図形の削除後に破棄する図形インデックス(ない場合はnull)
+   * @param shapeNames 削除対象の図形の名前
+   * @return 削除した図形
+   */
+  public static List<RemovedShape> removeShapes(Sheet sheet, ShapeIndex shapeIndex, Set<String> shapeNames) {
+    return removeShapes(sheet, shapeIndex,
+        nonVisualProperties -> shapeNames.contains(nonVisualProperties.getName()));
+  }
+
+  /**
+   * 条件を満たす図形をまとめて削除する<br>
+   * <br>
+   * 詳細は{@link #removeShapes(Sheet, ShapeIndex, Predicate)}を参照。
+   * 
+   * @param sheet     シート
+   * @param predicate 削除対象の判定条件(図形名・図形IDなどの非表示プロパティを受け取る)
+   * @return 削除した図形
+   */
+  public static List<RemovedShape> removeShapes(Sheet sheet, Predicate<CTNonVisualDrawingProps> predicate) {
+    return removeShapes(sheet, null, predicate);
+  }
+
+  /**
+   * 条件を満たす図形をまとめて削除する<br>
+   * <br>
+   * 各アンカーのリストを1回ずつ走査して削除対象の図形を判定する。
+   * また、削除した画像が参照していた画像ファイルが他から参照されなくなった場合は、リレーションと画像ファイルも削除する。<br>
+   * 図形を削除した場合は、図形インデックスを破棄する。<br>
+   * NOTE: 最上位の階層の図形のみを判定対象とし、図形グループ内の図形は判定しない
+   * 
+   * @param sheet      シート
+   * @param shapeIndex 図形の削除後に破棄する図形インデックス(ない場合はnull)
+   * @param predicate  削除対象の判定条件(図形名・図形IDなどの非表示プロパティを受け取る)
+   * @return 削除した図形
+   */
+  public static List<RemovedShape> removeShapes(Sheet sheet, ShapeIndex shapeIndex,
+      Predicate<CTNonVisualDrawingProps> predicate) {
+    var drawing = sheet.getDrawingPatriarch();
+    if (!(drawing instanceof XSSFDrawing xssfDrawing)) {
+      throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
+    }
+
+    // 削除対象のアンカーを判定する
+    var ctDrawing = xssfDrawing.getCTDrawing();
+    var removedShapes = new ArrayList<RemovedShape>();
+    var removedAnchors = new ArrayList<XmlObject>();
+    var anchors = new ArrayList<XmlObject>();
+    anchors.addAll(List.of(ctDrawing.getTwoCellAnchorArray()));
+    anchors.addAll(List.of(ctDrawing.getOneCellAnchorArray()));
+    anchors.addAll(List.of(ctDrawing.getAbsoluteAnchorArray()));
+    for (var anchor : anchors) {
+      var nonVisualProperties = PoiSampleUtils.getAnchorNonVisualProperties(anchor);
+      if (nonVisualProperties != null && predicate.test(nonVisualProperties)) {
+        removedShapes.add(new RemovedShape(nonVisualProperties.getId(), nonVisualProperties.getName()));
+        removedAnchors.add(anchor);
+      }
+    }
+
+    if (removedAnchors.isEmpty()) {
+      return removedShapes;
+    }
+
+    // 削除対象の画像が参照している画像ファイルのリレーションIDを取得してから図形を削除する
+    // NOTE: インデックス指定で削除すると削除の度に先頭から要素を探すため、カーソルで要素を直接削除する
+    var removedRelationIds = new HashSet<String>();
+    for (var anchor : removedAnchors) {
+      removedRelationIds.addAll(getEmbeddedRelationIds(anchor));
+      try (var cursor = anchor.newCursor()) {
+        cursor.removeXml();
+      }
+    }
+
+    // 削除した図形はインデックスから参照できなくなるため、図形インデックスを破棄する
+    if (shapeIndex != null) {
+      shapeIndex.invalidate();
+    }
+
+    // 参照されなくなった画像ファイルを削除する
+    removedRelationIds.removeAll(getEmbeddedRelationIds(ctDrawing));
+    removeUnusedPictures(xssfDrawing, removedRelationIds);
+
+    return removedShapes;
+  }
+
+  /**
+   * XML要素内の画像が参照している画像ファイルのリレーションIDを取得する<br>
+   * <br>
+   * 図形グループ内の画像も対象とする。
+   * 
+   * @param xmlObject XML要素
+   * @return リレーションID
+   */
+  private static Set<String> getEmbeddedRelationIds(XmlObject xmlObject) {
+    var relationIds = new HashSet<String>();
+    for (var blip : xmlObject.selectPath("declare namespace a='" + XSSFRelation.NS_DRAWINGML + "' .//a:blip")) {
+      var embed = ((CTBlip) blip).getEmbed();
+      if (embed != null) {
+        relationIds.add(embed);
+      }
+    }
+    return relationIds;
+  }
+
+  /**
+   * 参照されなくなった画像ファイルのリレーションを削除し、他のパートからも参照されていない画像ファイルを削除する<br>
+   * <br>
+   * 画像ファイルを削除した場合は、削除した画像を再利用しないよう{@link PictureRegistry}の画像のインデックスを破棄する。<br>
+   * NOTE: リレーションと画像ファイルはパッケージから削除するため、出力したファイルには含まれない。
+   * ただし、POIが保持している画像の一覧(ワークブックの画像の一覧、Drawingのリレーションの一覧)には削除した画像が残るので注意
+   * (画像の一覧から取り除かないため、画像のインデックスはずれない)
+   * 
+   * @param xssfDrawing 画像を削除したDrawing
+   * @param relationIds 参照されなくなった画像ファイルのリレーションID
+   */
+  private static void removeUnusedPictures(XSSFDrawing xssfDrawing, Set<String> relationIds) {
+    var drawingPart = xssfDrawing.getPackagePart();
+    var opcPackage = drawingPart.getPackage();
+
+    var candidatePartNames = new HashSet<PackagePartName>();
+    for (var relationId : relationIds) {
+      var relationship = drawingPart.getRelationship(relationId);
+      if (relationship == null) {
+        continue;
+      }
+      drawingPart.removeRelationship(relationId);
+      if (relationship.getTargetMode() == TargetMode.INTERNAL) {
+        try {
+          candidatePartNames.add(PackagingURIHelper.createPartName(
+              PackagingURIHelper.resolvePartUri(relationship.getSourceURI(), relationship.getTargetURI())));
+        } catch (InvalidFormatException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+    if (candidatePartNames.isEmpty()) {
+      return;
+    }
+
+    // 他のパートから参照されている画像ファイルは削除しない
+    // NOTE: Drawingごとに画像ファイルのPOIXMLDocumentPartが作成されるため、POIの参照数ではなくパッケージのリレーションで判定する
+    try {
+      for (var part : opcPackage.getParts()) {
+        if (part.isRelationshipPart()) {
+          continue;
+        }
+        for (var relationship : part.getRelationships()) {
+          if (relationship.getTargetMode() != TargetMode.INTERNAL) {
+            continue;
+          }
+          candidatePartNames.remove(PackagingURIHelper.createPartName(
+              PackagingURIHelper.resolvePartUri(relationship.getSourceURI(), relationship.getTargetURI())));
+        }
+      }
+    } catch (InvalidFormatException e) {
+      throw new RuntimeException(e);
+    }
+    if (candidatePartNames.isEmpty()) {
+      return;
+    }
+    candidatePartNames.forEach(opcPackage::removePart);
+
+    // 削除した画像ファイルを再利用しないよう、画像のインデックスを作成し直させる
+    PictureRegistry.invalidate(xssfDrawing.getSheet().getWorkbook());
+  }
+
+  /**
+   * 削除した図形
+   * 
+   * @param id   図形ID
+   * @param name 図形名
+   */
+  public record RemovedShape(long id, String name) {
+  }
+
 }
@@ -0,0 +1,84 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.TemplateRowBinder;
+
+/**
+ * テンプレートの行をデータの件数分繰り返して出力するサンプル
+ */
+public class RowRepeatSample {
+
+  /** テンプレートファイル名 */
+  private static final String TEMPLATE_FILE_NAME = "行繰り返しテンプレート.xlsx";
+
+  public static void main(String[] args) throws IOException {
+    // 通常の方法で出力する
+    try (var workbook = (XSSFWorkbook) PoiSampleUtils.loadTemplateWorkbook(TEMPLATE_FILE_NAME);) {
+      // "テスト"シートの"${item.～}"を含む行をテンプレート行とする
+      var sheet = workbook.getSheet("テスト");
+      var binder = TemplateRowBinder.prepare(sheet, "item.");
+
+      // データごとにテンプレート行を出力する
+      binder.bind(sheet, createItems(100), RowRepeatSample::toMap);
+
+      PoiSampleUtils.writeWorkbook(workbook, "行繰り返し.xlsx");
+    }
+
+    // ストリーミング方式(SXSSF)で出力する
+    // NOTE: テンプレート行の読み取りはSXSSFWorkbookを作成する前に行う
+    try (var workbook = (XSSFWorkbook) PoiSampleUtils.loadTemplateWorkbook(TEMPLATE_FILE_NAME);) {
+      var binder = TemplateRowBinder.prepare(workbook.getSheet("テスト"), "item.");
+
+      try (var streamingWorkbook = new SXSSFWorkbook(workbook, 100);) {
+        binder.bind(streamingWorkbook.getSheet("テスト"), createItems(100000), RowRepeatSample::toMap);
+
+        PoiSampleUtils.writeWorkbook(streamingWorkbook, "行繰り返し_ストリーミング.xlsx");
+      }
+    }
+  }
+
+  /**
+   * 出力するデータを作成する
+   * 
+   * @param count 件数
+   * @return データ
+   */
+  private static Stream<Item> createItems(int count) {
+    return IntStream.rangeClosed(1, count)
+        .mapToObj(no -> new Item(no, "商品" + no, no % 10 + 1, no * 100));
+  }
+
+  /**
+   * データをプレースホルダーの名前 → 値に変換する
+   * 
+   * @param item データ
+   * @return プレースホルダーの名前 → 値
+   */
+  private static Map<String, Object> toMap(Item item) {
+    return Map.of(
+        "no", item.no(),
+        "name", item.name(),
+        "quantity", item.quantity(),
+        "price", item.price());
+  }
+
+  /**
+   * 明細のデータ
+   * 
+   * @param no       No
+   * @param name     品名
+   * @param quantity 数量
+   * @param price    単価
+   */
+  private record Item(int no, String name, int quantity, int price) {
+  }
+
+}
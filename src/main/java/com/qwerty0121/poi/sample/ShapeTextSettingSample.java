@@ -4,14 +4,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.xssf.usermodel.XSSFDrawing;
-import org.apache.poi.xssf.usermodel.XSSFShape;
-import org.apache.poi.xssf.usermodel.XSSFSimpleShape;
+
+import com.qwerty0121.poi.utils.PlaceholderReplacer;
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.ShapeIndex;
 
 /**
  * 図形にテキストを設定するサンプル
@@ -24,19 +24,20 @@ public class ShapeTextSettingSample {
     // "テスト"シートを取得
     var sheet = workbook.getSheet("テスト");
 
+    // 図形インデックスを作成し、図形の検索に使い回す
+    var shapeIndex = ShapeIndex.of(sheet);
+    if (shapeIndex == null) {
+      throw new RuntimeException("シートからのDrawingの取得に失敗しました。");
+    }
+
     // 図形にテキストを設定
-    replaceShapeText(sheet, "設定対象図形", "${text}", "プログラムから設定したテキスト");
+    replaceShapeText(shapeIndex, "設定対象図形", "${text}", "プログラムから設定したテキスト");
 
     writeWorkbook(workbook);
   }
 
   private static Workbook createWorkbook() throws IOException {
-    try (
-        var templateFileIS = ShapeTextSettingSample.class.getClassLoader()
-            .getResourceAsStream("図形テキスト設定テンプレート.xlsx");) {
-      var workbook = WorkbookFactory.create(templateFileIS);
-      return workbook;
-    }
+    return PoiSampleUtils.loadTemplateWorkbook("図形テキスト設定テンプレート.xlsx");
   }
 
   private static void writeWorkbook(Workbook workbook) throws IOException, FileNotFoundException {
@@ -57,56 +58,35 @@ public class ShapeTextSettingSample {
 
   /**
    * 図形のテキストを置換
-   * NOTE: TextRunごとに置換処理を行う。
+   * NOTE: 段落ごとに置換処理を行うため、複数のTextRunに分割された置換対象の文字列も置換する。
    * 
-   * @param sheet        シート
+   * @param shapeIndex   シートの図形インデックス
    * @param shapeName    テキストを設定する図形の名前
    * @param searchString 置換対象の文字列
    * @param replacement  置換後の文字列
    */
-  private static void replaceShapeText(Sheet sheet, String shapeName, String searchString, String replacement) {
-    var targetShape = getShapeByName(sheet, shapeName);
+  static void replaceShapeText(ShapeIndex shapeIndex, String shapeName, String searchString, String replacement) {
+    var targetShape = shapeIndex.getByName(shapeName);
     if (targetShape == null) {
       // 図形名から図形を取得できなかった場合は何もしない
       return;
     }
 
-    if (!(targetShape instanceof XSSFSimpleShape xssfSimpleShape)) {
-      // 図形がXSSFSimpleShapeでない場合は何もしない
-      return;
-    }
-
-    xssfSimpleShape.getTextParagraphs().forEach(textParagraph -> {
-      textParagraph.getTextRuns().stream().forEach(textRun -> {
-        // 元々図形に設定されているテキストを取得
-        var originalText = textRun.getText();
-
-        // 置換対象のタグを置換する
-        var replacedText = StringUtils.replace(originalText, searchString, replacement);
-
-        // 図形にテキストを設定
-        textRun.setText(replacedText);
-      });
-    });
+    new PlaceholderReplacer(Map.of(searchString, replacement)).replaceInShape(targetShape);
   }
 
   /**
-   * 図形名をもとにシート内の図形を取得
+   * シート内の全ての図形(図形グループ内の図形を含む)とセルのプレースホルダーをまとめて置換する<br>
+   * <br>
+   * 図形とセルはそれぞれ1回ずつ走査するため、プレースホルダーの数が増えても走査の回数は変わらない。
    * 
-   * @param sheet     シート
-   * @param shapeName 図形名
-   * @return 図形
+   * @param sheet        シート
+   * @param replacements プレースホルダー → 置換後の文字列
    */
-  private static XSSFShape getShapeByName(Sheet sheet, String shapeName) {
-    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
-      // XSSFDrawingでない場合は取得できないのでnullを返す
-      return null;
-    }
-
-    return xssfDrawing.getShapes().stream()
-        .filter(shape -> StringUtils.equals(shape.getShapeName(), shapeName))
-        .findFirst()
-        .orElse(null);
+  public static void replacePlaceholders(Sheet sheet, Map<String, String> replacements) {
+    var replacer = new PlaceholderReplacer(replacements);
+    replacer.replaceInShapes(sheet);
+    replacer.replaceInCells(sheet);
   }
 
 }
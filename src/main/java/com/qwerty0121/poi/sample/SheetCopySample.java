@@ -4,9 +4,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
 
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.WorkbookUtil;
+
+import com.qwerty0121.poi.utils.PoiSampleUtils;
 
 /**
  * シートをコピーするサンプル
@@ -20,20 +28,87 @@ public class SheetCopySample {
     var srcSheetIndex = workbook.getSheetIndex("テスト");
     workbook.cloneSheet(srcSheetIndex);
 
-    writeWorkbook(workbook);
+    writeWorkbook(workbook, "シートコピー.xls");
+
+    cloneSheetForEachBranch();
   }
 
-  private static Workbook createWorkbook() throws IOException {
-    try (var templateFileIS = SheetCopySample.class.getClassLoader().getResourceAsStream("シートコピーテンプレート.xls");) {
-      var workbook = WorkbookFactory.create(templateFileIS);
-      return workbook;
+  /**
+   * "テスト"シートを支店ごとにまとめて複製する
+   *
+   * @throws IOException
+   */
+  private static void cloneSheetForEachBranch() throws IOException {
+    var workbook = createWorkbook();
+
+    var srcSheetIndex = workbook.getSheetIndex("テスト");
+    cloneSheet((HSSFWorkbook) workbook, srcSheetIndex, 3, i -> "テスト_支店" + (i + 1));
+
+    writeWorkbook(workbook, "シートコピー_一括.xls");
+  }
+
+  /**
+   * シートを指定した数だけ複製する(xls形式)<br>
+   * <br>
+   * 複製したシートはワークブックの末尾に追加する。シート名はすべて事前に検証し、不正な場合はシートを複製せずに例外とする。
+   * 複製の途中で失敗した場合は、それまでに複製したシートを削除する。<br>
+   * NOTE: xls形式ではフォント・セルの書式・表示形式・共有文字列・画像のデータはワークブック単位で保持されるため、
+   * 複製したシートはこれらを複製元と共有し、シートごとのセル・図形などのレコードのみが複製される。
+   * xls形式のファイルはシートごとにセルのレコードを出力する必要があり、
+   * POIのシートもセルのレコードを個別に保持して変更するため、セルのレコードを複製元と共有して変更する行のみを複製することはできない
+   *
+   * @param workbook   ワークブック
+   * @param sheetIndex 複製元のシートのインデックス
+   * @param count      複製する数
+   * @param namer      複製したシートの名前(0から始まる複製の番号を引数とする)
+   * @return 複製したシート
+   */
+  public static List<HSSFSheet> cloneSheet(HSSFWorkbook workbook, int sheetIndex, int count,
+      IntFunction<String> namer) {
+    if (count < 0) {
+      throw new IllegalArgumentException("複製する数は0以上を指定してください: " + count);
     }
+
+    // シート名を検証する(Excelと同様に大文字・小文字を区別しない)
+    var sheetNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+      sheetNames.add(workbook.getSheetName(i));
+    }
+    var newSheetNames = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      var sheetName = namer.apply(i);
+      WorkbookUtil.validateSheetName(sheetName);
+      if (!sheetNames.add(sheetName)) {
+        throw new IllegalArgumentException("シート名が重複しています: " + sheetName);
+      }
+      newSheetNames.add(sheetName);
+    }
+
+    var numberOfSheets = workbook.getNumberOfSheets();
+    var clonedSheets = new ArrayList<HSSFSheet>(count);
+    try {
+      for (var sheetName : newSheetNames) {
+        var clonedSheet = workbook.cloneSheet(sheetIndex);
+        workbook.setSheetName(workbook.getSheetIndex(clonedSheet), sheetName);
+        clonedSheets.add(clonedSheet);
+      }
+    } catch (RuntimeException e) {
+      while (workbook.getNumberOfSheets() > numberOfSheets) {
+        workbook.removeSheetAt(workbook.getNumberOfSheets() - 1);
+      }
+      throw e;
+    }
+    return clonedSheets;
+  }
+
+  private static Workbook createWorkbook() throws IOException {
+    return PoiSampleUtils.loadTemplateWorkbook("シートコピーテンプレート.xls");
   }
 
-  private static void writeWorkbook(Workbook workbook) throws IOException, FileNotFoundException {
+  private static void writeWorkbook(Workbook workbook, String fileName) throws IOException, FileNotFoundException {
     File outputFileDir = getOrCreateDestDir();
 
-    var outputFilePath = outputFileDir.toPath().resolve("シートコピー.xls");
+    var outputFilePath = outputFileDir.toPath().resolve(fileName);
     try (var os = new FileOutputStream(outputFilePath.toString());) {
       workbook.write(os);
     }
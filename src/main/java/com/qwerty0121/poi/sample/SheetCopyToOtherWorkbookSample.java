@@ -1,27 +1,52 @@
 package com.qwerty0121.poi.sample;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-
-import org.apache.commons.lang3.tuple.Pair;
-import org.apache.poi.hssf.record.cf.PatternFormatting;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.ConditionType;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.model.Themes;
-import org.apache.poi.xssf.usermodel.XSSFColor;
-import org.apache.poi.xssf.usermodel.XSSFConditionalFormattingRule;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFSheetConditionalFormatting;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import org.xml.sax.SAXException;
+
+import com.qwerty0121.poi.utils.CellStyleRegistry;
+import com.qwerty0121.poi.utils.ColorTranslationCache;
+import com.qwerty0121.poi.utils.ConditionalFormattingCopier;
+import com.qwerty0121.poi.utils.MergedRegionWriter;
 import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.SharedStringRemapper;
+import com.qwerty0121.poi.utils.SheetDataInjectingWorkbook;
+import com.qwerty0121.poi.utils.SheetDataXmlCopier;
+import com.qwerty0121.poi.utils.SheetEventRecorder;
+import com.qwerty0121.poi.utils.SheetEventWriter;
+import com.qwerty0121.poi.utils.XlsxSheetEventReader;
 
 /**
  * シートを別ワークブックにコピーするサンプル
@@ -37,6 +62,34 @@ public class SheetCopyToOtherWorkbookSample {
       // コピーしたワークブックを出力する
       PoiSampleUtils.writeWorkbook(destinationWorkbook, "シートコピー(別ワークブック).xlsx");
     }
+
+    // ワークブックをストリーミング方式でコピーする
+    try (var destinationWorkbook = copyWorkbookStreaming(sourceWorkbook, SXSSFWorkbook.DEFAULT_WINDOW_SIZE)) {
+      // コピーしたワークブックを出力する
+      PoiSampleUtils.writeWorkbook(destinationWorkbook, "シートコピー(別ワークブック)_ストリーミング.xlsx");
+    }
+
+    // コピー元ワークブックをシートのXMLを解析せずに読み込み、イベント方式でコピーする
+    try (var sourcePackage = PoiSampleUtils.openTemplatePackage("シートコピー(別ワークブック)テンプレート.xlsx");
+        var destinationWorkbook = copyWorkbookFromPackage(sourcePackage, SXSSFWorkbook.DEFAULT_WINDOW_SIZE)) {
+      // コピーしたワークブックを出力する
+      PoiSampleUtils.writeWorkbook(destinationWorkbook, "シートコピー(別ワークブック)_イベント読込.xlsx");
+    }
+
+    // コピー元ワークブックのシートを並列に解析してコピーする
+    try (var sourcePackage = PoiSampleUtils.openTemplatePackage("シートコピー(別ワークブック)テンプレート.xlsx");
+        var destinationWorkbook = copyWorkbookFromPackageParallel(sourcePackage, SXSSFWorkbook.DEFAULT_WINDOW_SIZE,
+            Runtime.getRuntime().availableProcessors())) {
+      // コピーしたワークブックを出力する
+      PoiSampleUtils.writeWorkbook(destinationWorkbook, "シートコピー(別ワークブック)_並列.xlsx");
+    }
+
+    // コピー元ワークブックのシートの行・セルをXMLのまま一括でコピーする
+    try (var sourcePackage = PoiSampleUtils.openTemplatePackage("シートコピー(別ワークブック)テンプレート.xlsx");
+        var destinationWorkbook = copyWorkbookBulk(sourcePackage)) {
+      // コピーしたワークブックを出力する
+      PoiSampleUtils.writeWorkbook(destinationWorkbook, "シートコピー(別ワークブック)_一括.xlsx");
+    }
   }
 
   /**
@@ -45,28 +98,323 @@ public class SheetCopyToOtherWorkbookSample {
    * @param sourceWorkbook コピー元のワークブック
    * @return コピーしたワークブック
    */
-  private static XSSFWorkbook copyWorkbook(XSSFWorkbook sourceWorkbook) {
+  static XSSFWorkbook copyWorkbook(XSSFWorkbook sourceWorkbook) {
     var newWorkbook = new XSSFWorkbook();
+    copyWorkbookInto(sourceWorkbook, newWorkbook, new CellStyleRegistry(newWorkbook));
+    return newWorkbook;
+  }
+
+  /**
+   * ワークブックをストリーミング方式(SXSSF)でコピーする<br>
+   * <br>
+   * コピー先の行は指定した行数分だけメモリ上に保持され、それを超えた行は一時ファイルに書き出される。
+   * そのため、行数の多いワークブックでもコピー先のヒープ使用量は行数に比例して増加しない。<br>
+   * NOTE: 使用後は{@link SXSSFWorkbook#close()}を呼び出して一時ファイルを削除すること
+   * 
+   * @param sourceWorkbook      コピー元のワークブック
+   * @param rowAccessWindowSize メモリ上に保持する行数(これを超えた行は一時ファイルに書き出される)
+   * @return コピーしたワークブック
+   */
+  static SXSSFWorkbook copyWorkbookStreaming(XSSFWorkbook sourceWorkbook, int rowAccessWindowSize) {
+    var newWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+    copyWorkbookInto(sourceWorkbook, newWorkbook, new CellStyleRegistry(newWorkbook));
+    return newWorkbook;
+  }
+
+  /**
+   * ワークブックの全てのシートをコピー先のワークブックに追加する<br>
+   * <br>
+   * 同じセルスタイルレジストリを指定すれば、複数のコピー元ワークブックを1つのワークブックにコピーする場合でも
+   * 内容が同じセルスタイルはコピー先で1つにまとめられる。
+   * 
+   * @param sourceWorkbook コピー元のワークブック
+   * @param newWorkbook    コピー先のワークブック
+   * @param styleRegistry  コピー先のワークブックのセルスタイルレジストリ
+   */
+  private static void copyWorkbookInto(XSSFWorkbook sourceWorkbook, Workbook newWorkbook,
+      CellStyleRegistry styleRegistry) {
+    // コピー元のワークブックの色の変換結果は全てのシートで共有する
+    var conditionalFormattingCopier = new ConditionalFormattingCopier(sourceWorkbook.getStylesSource(),
+        new ColorTranslationCache(sourceWorkbook.getTheme()));
+
+    // コピー先がXSSFの場合は、共有文字列をインデックスの変換表でコピーする
+    // NOTE: SXSSFはインライン文字列で出力するため、文字列として設定する
+    var sharedStringRemapper = newWorkbook instanceof XSSFWorkbook newXSSFWorkbook
+        ? new SharedStringRemapper(sourceWorkbook.getSharedStringSource(), newXSSFWorkbook.getSharedStringSource())
+        : null;
 
     // 全てのシートをコピーする
     sourceWorkbook.sheetIterator().forEachRemaining(sourceSheet -> {
       var newSheet = newWorkbook.createSheet(sourceSheet.getSheetName());
-      copySheets((XSSFSheet) sourceSheet, newSheet);
+      copySheets((XSSFSheet) sourceSheet, newSheet, styleRegistry, conditionalFormattingCopier,
+          sharedStringRemapper);
     });
+  }
 
-    return newWorkbook;
+  /**
+   * OPCパッケージからワークブックをイベント方式(SAX)で読み込み、ストリーミング方式(SXSSF)でコピーする<br>
+   * <br>
+   * コピー元のシートのXMLはDOMとして読み込まず、セル単位でコピー先に書き込むため、
+   * メモリ使用量はコピー元のセル数ではなくコピー先で保持する行数に依存する。
+   * 条件付き書式は{@link #copyWorkbook(XSSFWorkbook)}と同じ処理でコピーする。
+   * 
+   * @param sourcePackage       コピー元のOPCパッケージ
+   * @param rowAccessWindowSize メモリ上に保持する行数(これを超えた行は一時ファイルに書き出される)
+   * @return コピーしたワークブック
+   * @throws IOException
+   */
+  static SXSSFWorkbook copyWorkbookFromPackage(OPCPackage sourcePackage, int rowAccessWindowSize)
+      throws IOException {
+    var newWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+    try {
+      var reader = new XSSFReader(sourcePackage);
+      var sharedStrings = new ReadOnlySharedStringsTable(sourcePackage, false);
+      var sourceStyles = reader.getStylesTable();
+
+      var sheetParts = createSheetsFromPackage(reader, newWorkbook);
+      var styleMapper = createStyleMapper(sourceStyles, new CellStyleRegistry(newWorkbook));
+      var conditionalFormattingCopier = new ConditionalFormattingCopier(sourceStyles,
+          new ColorTranslationCache(sourceStyles.getTheme()));
+      var formulaWorkbook = XSSFEvaluationWorkbook.create(newWorkbook.getXSSFWorkbook());
+
+      // 全てのシートをコピーする
+      for (int sheetIndex = 0; sheetIndex < sheetParts.size(); sheetIndex++) {
+        var sheetPart = sheetParts.get(sheetIndex);
+        try (var sheetIS = sheetPart.getInputStream()) {
+          var writer = new SheetEventWriter(newWorkbook.getSheetAt(sheetIndex), styleMapper,
+              conditionalFormattingCopier);
+          new XlsxSheetEventReader(sharedStrings, formulaWorkbook, sheetIndex).read(sheetIS, sheetPart, writer);
+        }
+      }
+
+      return newWorkbook;
+    } catch (OpenXML4JException | SAXException e) {
+      // NOTE: 失敗した場合は一時ファイルを削除するため、コピー先のワークブックを閉じる
+      newWorkbook.close();
+      throw new IOException("コピー元のワークブックの読み込みに失敗しました。", e);
+    } catch (IOException | RuntimeException e) {
+      newWorkbook.close();
+      throw e;
+    }
+  }
+
+  /**
+   * OPCパッケージからワークブックを読み込み、シートごとに並列でコピーする<br>
+   * <br>
+   * 各シートのXMLの解析はワーカースレッドで並列に行い、解析結果のコピー先への書き込みは呼び出し元のスレッドでシート順に行う。
+   * POIのワークブックはスレッドセーフではないため、セルスタイルの作成などのワークブックへの変更は全て書き込み時に行う。
+   * そのため、コピー結果は{@link #copyWorkbookFromPackage(OPCPackage, int)}と同一となる。<br>
+   * NOTE: 解析結果はコピー先に書き込むまでシートごとにメモリ上に保持される。
+   * メモリ使用量を抑えるため、解析を開始したが書き込んでいないシートは並列数までとし、書き込みが終わるごとに次のシートの解析を開始する
+   * 
+   * @param sourcePackage       コピー元のOPCパッケージ
+   * @param rowAccessWindowSize メモリ上に保持する行数(これを超えた行は一時ファイルに書き出される)
+   * @param parallelism         シートの解析を行うスレッド数
+   * @return コピーしたワークブック
+   * @throws IOException
+   */
+  static SXSSFWorkbook copyWorkbookFromPackageParallel(OPCPackage sourcePackage, int rowAccessWindowSize,
+      int parallelism) throws IOException {
+    var newWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+    try {
+      var executor = Executors.newFixedThreadPool(parallelism);
+      var recorderFutures = new ArrayDeque<Future<SheetEventRecorder>>();
+      try {
+        var reader = new XSSFReader(sourcePackage);
+        var sharedStrings = new ReadOnlySharedStringsTable(sourcePackage, false);
+        var sourceStyles = reader.getStylesTable();
+
+        var sheetParts = createSheetsFromPackage(reader, newWorkbook);
+        var styleMapper = createStyleMapper(sourceStyles, new CellStyleRegistry(newWorkbook));
+        var conditionalFormattingCopier = new ConditionalFormattingCopier(sourceStyles,
+            new ColorTranslationCache(sourceStyles.getTheme()));
+
+        // シートの解析をワーカースレッドで開始する関数
+        // NOTE: 解析中はコピー先のワークブックを参照のみ行う(共有数式の展開におけるシート名の解決)
+        IntFunction<Future<SheetEventRecorder>> submitSheet = sheetIndex -> executor.submit(() -> {
+          var sheetPart = sheetParts.get(sheetIndex);
+          var recorder = new SheetEventRecorder();
+          try (var sheetIS = sheetPart.getInputStream()) {
+            var formulaWorkbook = XSSFEvaluationWorkbook.create(newWorkbook.getXSSFWorkbook());
+            new XlsxSheetEventReader(sharedStrings, formulaWorkbook, sheetIndex).read(sheetIS, sheetPart, recorder);
+          }
+          return recorder;
+        });
+
+        // 解析結果をシート順にコピー先へ書き込む
+        var nextSheetIndex = 0;
+        for (int sheetIndex = 0; sheetIndex < sheetParts.size(); sheetIndex++) {
+          // 書き込み待ちのシートが並列数に達するまで、後続のシートの解析を開始する
+          while (nextSheetIndex < sheetParts.size() && nextSheetIndex < sheetIndex + parallelism) {
+            recorderFutures.add(submitSheet.apply(nextSheetIndex++));
+          }
+          var recorder = recorderFutures.poll().get();
+          recorder.replay(new SheetEventWriter(newWorkbook.getSheetAt(sheetIndex), styleMapper,
+              conditionalFormattingCopier));
+        }
+
+        return newWorkbook;
+      } catch (OpenXML4JException | SAXException e) {
+        throw new IOException("コピー元のワークブックの読み込みに失敗しました。", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException ioException) {
+          throw ioException;
+        }
+        throw new IOException("シートの読み込みに失敗しました。", e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("シートのコピー中に割り込みが発生しました。");
+      } finally {
+        // NOTE: 失敗した場合は解析中のシートを中断し、書き込み待ちのシートの解析結果を破棄する
+        recorderFutures.forEach(recorderFuture -> recorderFuture.cancel(true));
+        recorderFutures.clear();
+        executor.shutdownNow();
+      }
+    } catch (Throwable e) {
+      // NOTE: 失敗した場合は一時ファイルを削除するため、コピー先のワークブックを閉じる
+      try {
+        newWorkbook.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * OPCパッケージからワークブックを読み込み、シートの行・セルをXMLのまま一括でコピーする<br>
+   * <br>
+   * コピー元のシートのsheetData要素の内容を{@link SheetDataXmlCopier}でファイルに書き出し、出力時にコピー先のシートに埋め込む。
+   * セルごとのオブジェクトの作成や数式の解析を行わないため、列数の多いシートでも{@link #copyWorkbookFromPackage(OPCPackage, int)}より高速にコピーできる。
+   * セルスタイルはコピー先のワークブックに作成し、インデックスを変換表で置き換える。
+   * 共有文字列はコピー元のパートをそのまま出力するため、リッチテキストの書式も含めてコピーされる。<br>
+   * NOTE: 以下の設定はコピーされないので注意
+   * <ul>
+   * <li>条件付き書式</li>
+   * <li>セルのメタデータ(セル内の画像など)</li>
+   * </ul>
+   * NOTE: 使用後は{@link SXSSFWorkbook#close()}を呼び出して一時ファイルを削除すること
+   * 
+   * @param sourcePackage コピー元のOPCパッケージ
+   * @return コピーしたワークブック
+   * @throws IOException
+   */
+  static SheetDataInjectingWorkbook copyWorkbookBulk(OPCPackage sourcePackage) throws IOException {
+    var newWorkbook = new SheetDataInjectingWorkbook();
+    try {
+      var reader = new XSSFReader(sourcePackage);
+      var sourceStyles = reader.getStylesTable();
+
+      var sheetParts = createSheetsFromPackage(reader, newWorkbook);
+      var styleMapper = createStyleMapper(sourceStyles, new CellStyleRegistry(newWorkbook));
+
+      // セルスタイルのインデックスの変換表は、使用されたインデックスのみ作成する
+      var styleIndexMapper = createIndexMapper(sourceStyles.getNumCellStyles(),
+          styleIndex -> Optional.ofNullable(styleMapper.apply(styleIndex)).map(CellStyle::getIndex).orElse((short) 0));
+
+      var copier = new SheetDataXmlCopier(styleIndexMapper, IntUnaryOperator.identity());
+
+      // コピー先は新しいワークブックで共有文字列が空のため、コピー元の共有文字列のパート(リッチテキストを含む)をそのまま出力する
+      // NOTE: コピー元とコピー先で共有文字列のインデックスが一致するため、セルの値は変換せずに出力できる
+      try (var sharedStringsIS = reader.getSharedStringsData()) {
+        if (sharedStringsIS != null) {
+          try (var sharedStringsOS = new BufferedOutputStream(
+              Files.newOutputStream(newWorkbook.createSharedStringsFile()))) {
+            copier.copySharedStrings(sharedStringsIS, sharedStringsOS);
+          }
+        }
+      }
+
+      // 全てのシートの行・セルをファイルに書き出す
+      for (int sheetIndex = 0; sheetIndex < sheetParts.size(); sheetIndex++) {
+        var sheetPart = sheetParts.get(sheetIndex);
+        var newSheet = newWorkbook.getSheetAt(sheetIndex);
+        var sheetDataFile = newWorkbook.createSheetDataFile(newSheet);
+        try (var sheetIS = sheetPart.getInputStream();
+            var sheetDataOS = new BufferedOutputStream(Files.newOutputStream(sheetDataFile))) {
+          copier.copy(sheetIS, sheetPart, sheetDataOS, new SheetEventWriter(newSheet, styleMapper));
+        }
+      }
+
+      return newWorkbook;
+    } catch (OpenXML4JException e) {
+      newWorkbook.close();
+      throw new IOException("コピー元のワークブックの読み込みに失敗しました。", e);
+    } catch (IOException | RuntimeException e) {
+      newWorkbook.close();
+      throw e;
+    }
+  }
+
+  /**
+   * コピー元のインデックスからコピー先のインデックスを取得する関数を、変換結果を配列に保持するようにする
+   * 
+   * @param size   コピー元のインデックスの数
+   * @param mapper コピー元のインデックスからコピー先のインデックスを取得する関数
+   * @return 変換結果を保持する関数
+   */
+  private static IntUnaryOperator createIndexMapper(int size, IntUnaryOperator mapper) {
+    var indexes = new int[size];
+    Arrays.fill(indexes, -1);
+    return index -> {
+      if (index >= indexes.length) {
+        return mapper.applyAsInt(index);
+      }
+      if (indexes[index] < 0) {
+        indexes[index] = mapper.applyAsInt(index);
+      }
+      return indexes[index];
+    };
   }
 
   /**
-   * シートをコピーする
+   * OPCパッケージ内の全てのシートと同名のシートをコピー先に作成する<br>
+   * <br>
+   * NOTE: 共有数式の展開でシート名を解決できるよう、シートの内容をコピーする前に全てのシートを作成しておく
    * 
-   * @param sourceSheet コピー元のシート
-   * @param newSheet    コピー先のシート
+   * @param reader      コピー元のXSSFReader
+   * @param newWorkbook コピー先のワークブック
+   * @return コピー元のシートパートのリスト(シート順)
+   * @throws IOException
+   * @throws InvalidFormatException
    */
-  private static void copySheets(XSSFSheet sourceSheet, XSSFSheet newSheet) {
-    // セルスタイルを保持するマップ
-    var styleMap = new HashMap<CellStyle, CellStyle>();
+  private static List<PackagePart> createSheetsFromPackage(XSSFReader reader, SXSSFWorkbook newWorkbook)
+      throws IOException, InvalidFormatException {
+    var sheetParts = new ArrayList<PackagePart>();
+    var sheetIterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+    while (sheetIterator.hasNext()) {
+      // NOTE: シート名とシートパートはnext()の呼び出し後に取得できるため、シートのストリームは読み込まずに閉じる
+      sheetIterator.next().close();
+      newWorkbook.createSheet(sheetIterator.getSheetName());
+      sheetParts.add(sheetIterator.getSheetPart());
+    }
+    return sheetParts;
+  }
 
+  /**
+   * コピー元のセルスタイルのインデックスからコピー先のセルスタイルを取得する関数を作成する
+   * 
+   * @param sourceStyles  コピー元のスタイル
+   * @param styleRegistry コピー先のワークブックのセルスタイルレジストリ
+   * @return コピー先のセルスタイルを取得する関数
+   */
+  private static IntFunction<CellStyle> createStyleMapper(StylesTable sourceStyles, CellStyleRegistry styleRegistry) {
+    return styleIndex -> styleRegistry.getOrCreate(sourceStyles.getStyleAt(styleIndex), sourceStyles);
+  }
+
+  /**
+   * シートをコピーする<br>
+   * <br>
+   * NOTE: コピー先がストリーミング方式(SXSSF)のシートである場合に備え、行は昇順にコピーする
+   * 
+   * @param sourceSheet          コピー元のシート
+   * @param newSheet             コピー先のシート
+   * @param styleRegistry        コピー先のワークブックのセルスタイルレジストリ
+   * @param cfCopier             コピー元のワークブックの条件付き書式のコピー処理
+   * @param sharedStringRemapper 共有文字列のインデックスの変換表(コピー先がXSSFでない場合はnull)
+   */
+  private static void copySheets(XSSFSheet sourceSheet, Sheet newSheet, CellStyleRegistry styleRegistry,
+      ConditionalFormattingCopier cfCopier, SharedStringRemapper sharedStringRemapper) {
     // シート内容の行をコピーする
     for (int i = sourceSheet.getFirstRowNum(); i <= sourceSheet.getLastRowNum(); i++) {
       var sourceRow = sourceSheet.getRow(i);
@@ -76,27 +424,28 @@ public class SheetCopyToOtherWorkbookSample {
 
       // 行をコピー
       var newRow = newSheet.createRow(i);
-      copyRow(sourceRow, newRow, styleMap);
+      copyRow(sourceRow, newRow, styleRegistry, sharedStringRemapper);
     }
 
     // セル結合をコピー
-    for (int i = 0; i < sourceSheet.getNumMergedRegions(); i++) {
-      newSheet.addMergedRegion(sourceSheet.getMergedRegion(i));
-    }
+    // NOTE: 1件ずつ追加すると追加のたびに重なりを検証するため、まとめて追加する
+    MergedRegionWriter.addAll(newSheet, sourceSheet.getMergedRegions());
 
     // シートの条件付き書式をコピー
-    copySheetConditionalFormatting(sourceSheet.getSheetConditionalFormatting(),
-        newSheet.getSheetConditionalFormatting(), sourceSheet.getWorkbook().getTheme());
+    cfCopier.copy(Arrays.asList(sourceSheet.getCTWorksheet().getConditionalFormattingArray()),
+        getXSSFSheet(newSheet));
   }
 
   /**
    * 行をコピーする
    * 
-   * @param sourceRow コピー元の行
-   * @param newRow    コピー先の行
-   * @param styleMap  セルスタイルを保持するマップ
+   * @param sourceRow            コピー元の行
+   * @param newRow               コピー先の行
+   * @param styleRegistry        コピー先のワークブックのセルスタイルレジストリ
+   * @param sharedStringRemapper 共有文字列のインデックスの変換表(コピー先がXSSFでない場合はnull)
    */
-  private static void copyRow(Row sourceRow, Row newRow, Map<CellStyle, CellStyle> styleMap) {
+  private static void copyRow(Row sourceRow, Row newRow, CellStyleRegistry styleRegistry,
+      SharedStringRemapper sharedStringRemapper) {
     // 行内のセルをコピーする
     for (int i = sourceRow.getFirstCellNum(); i < sourceRow.getLastCellNum(); i++) {
       var sourceCell = sourceRow.getCell(i);
@@ -106,34 +455,38 @@ public class SheetCopyToOtherWorkbookSample {
 
       // セルをコピー
       var newCell = newRow.createCell(i);
-      copyCell(sourceCell, newCell, styleMap);
+      copyCell(sourceCell, newCell, styleRegistry, sharedStringRemapper);
     }
   }
 
   /**
    * セルをコピーする
    * 
-   * @param sourceCell コピー元のセル
-   * @param newCell    コピー先のセル
-   * @param styleMap   セルスタイルを保持するマップ
+   * @param sourceCell           コピー元のセル
+   * @param newCell              コピー先のセル
+   * @param styleRegistry        コピー先のワークブックのセルスタイルレジストリ
+   * @param sharedStringRemapper 共有文字列のインデックスの変換表(コピー先がXSSFでない場合はnull)
    */
-  private static void copyCell(Cell sourceCell, Cell newCell, Map<CellStyle, CellStyle> styleMap) {
+  private static void copyCell(Cell sourceCell, Cell newCell, CellStyleRegistry styleRegistry,
+      SharedStringRemapper sharedStringRemapper) {
     // セルスタイルをコピー
-    var sourceCellStyle = sourceCell.getCellStyle();
-    if (sourceCellStyle != null) {
-      var destinationCellStyle = styleMap.get(sourceCellStyle);
-      if (destinationCellStyle == null) {
-        // 新しいスタイルを作成してマップに保存
-        destinationCellStyle = newCell.getSheet().getWorkbook().createCellStyle();
-        destinationCellStyle.cloneStyleFrom(sourceCellStyle);
-        styleMap.put(sourceCellStyle, destinationCellStyle);
-      }
-      newCell.setCellStyle(destinationCellStyle);
+    if (sourceCell.getCellStyle() instanceof XSSFCellStyle sourceCellStyle) {
+      var sourceWorkbook = sourceCell.getSheet().getWorkbook();
+      var sourceStyles = sourceWorkbook instanceof SXSSFWorkbook sourceSXSSFWorkbook
+          ? sourceSXSSFWorkbook.getXSSFWorkbook().getStylesSource()
+          : ((XSSFWorkbook) sourceWorkbook).getStylesSource();
+      newCell.setCellStyle(styleRegistry.getOrCreate(sourceCellStyle, sourceStyles));
     }
 
     // セルの値をコピー
     switch (sourceCell.getCellType()) {
       case STRING:
+        // 共有文字列のセルは、変換表でコピー先の共有文字列のインデックスを設定する(リッチテキストの書式も維持される)
+        if (sharedStringRemapper != null && sourceCell instanceof XSSFCell sourceXSSFCell
+            && newCell instanceof XSSFCell newXSSFCell
+            && sharedStringRemapper.copyCellValue(sourceXSSFCell, newXSSFCell)) {
+          break;
+        }
         newCell.setCellValue(sourceCell.getStringCellValue());
         break;
       case NUMERIC:
@@ -166,170 +519,16 @@ public class SheetCopyToOtherWorkbookSample {
   }
 
   /**
-   * シート条件付き書式をコピーする<br>
-   * <br>
-   * 以下の設定はコピーできないので注意。
-   * <ul>
-   * <li>条件を満たす場合は停止</li>
-   * </ul>
-   * <br>
-   * また、現状では条件種別が数式以外である場合はコピーされないので注意
-   * 
-   * @param srcSheetConditionalFormatting  コピー元のシート条件付き書式
-   * @param destSheetConditionalFormatting コピー先のシート条件付き書式
-   * @param srcTheme                       コピー元のテーマ
-   */
-  private static void copySheetConditionalFormatting(XSSFSheetConditionalFormatting srcSheetConditionalFormatting,
-      XSSFSheetConditionalFormatting destSheetConditionalFormatting, Themes srcTheme) {
-    // コピー元の条件付き書式における対象セル範囲とルールのペアをListとして取得
-    var srcConditionalFormattingPairList = new ArrayList<Pair<CellRangeAddress[], XSSFConditionalFormattingRule>>();
-    for (int i = 0; i < srcSheetConditionalFormatting.getNumConditionalFormattings(); i++) {
-      var srcConditionalFormatting = srcSheetConditionalFormatting.getConditionalFormattingAt(i);
-      var regions = srcConditionalFormatting.getFormattingRanges();
-      for (int j = 0; j < srcConditionalFormatting.getNumberOfRules(); j++) {
-        var srcRule = srcConditionalFormatting.getRule(j);
-        srcConditionalFormattingPairList.add(Pair.of(regions, srcRule));
-      }
-    }
-
-    // 条件付き書式の優先順位でソート
-    srcConditionalFormattingPairList
-        .sort(Comparator.comparing(conditionalFormattingPair -> conditionalFormattingPair.getValue().getPriority()));
-
-    // 条件付き書式をコピーする
-    srcConditionalFormattingPairList.forEach(srcConditionalFormattingPair -> {
-      var regions = srcConditionalFormattingPair.getKey();
-      var srcConditionalFormattingRule = srcConditionalFormattingPair.getValue();
-
-      // コピー先の条件付き書式を作成
-      XSSFConditionalFormattingRule destConditionalFormattingRule = null;
-      if (srcConditionalFormattingRule.getConditionType() == ConditionType.FORMULA) {
-        // 条件種別が数式である場合
-        destConditionalFormattingRule = destSheetConditionalFormatting
-            .createConditionalFormattingRule(srcConditionalFormattingRule.getFormula1());
-      }
-
-      if (destConditionalFormattingRule == null) {
-        return;
-      }
-
-      // 条件付き書式ルールの書式設定をコピー
-      copyConditionalFormattingRuleFormatting(srcConditionalFormattingRule, destConditionalFormattingRule, srcTheme);
-
-      // コピーした条件付き書式を追加
-      destSheetConditionalFormatting.addConditionalFormatting(regions, destConditionalFormattingRule);
-    });
-  }
-
-  /**
-   * 条件付き書式ルールにおける書式設定をコピーする<br>
-   * <br>
-   * NOTE: 以下の設定はコピーされないので注意
-   * <ul>
-   * <li>表示形式</li>
-   * <li>フォント - 取り消し線</li>
-   * </ul>
-   * 
-   * @param srcConditionalFormattingRule  コピー元の条件付き書式ルール
-   * @param destConditionalFormattingRule コピー先の条件付き書式ルール
-   * @param srcTheme                      コピー元のテーマ
-   */
-  private static void copyConditionalFormattingRuleFormatting(
-      XSSFConditionalFormattingRule srcConditionalFormattingRule,
-      XSSFConditionalFormattingRule destConditionalFormattingRule, Themes srcTheme) {
-    if (srcConditionalFormattingRule.getFontFormatting() != null) {
-      // フォント設定をコピー
-      var srcFontFormatting = srcConditionalFormattingRule.getFontFormatting();
-      var destFontFormatting = destConditionalFormattingRule.createFontFormatting();
-
-      // スタイル
-      destFontFormatting.setFontStyle(srcFontFormatting.isItalic(), srcFontFormatting.isBold());
-      // サイズ
-      if (srcFontFormatting.getFontHeight() != -1) {
-        destFontFormatting.setFontHeight(srcFontFormatting.getFontHeight());
-      }
-      // 下線
-      destFontFormatting.setUnderlineType(srcFontFormatting.getUnderlineType());
-      // 色
-      var destFontColor = cloneColorFrom(srcFontFormatting.getFontColor(), srcTheme);
-      if (destFontColor != null) {
-        destFontFormatting.setFontColor(destFontColor);
-      }
-    }
-
-    if (srcConditionalFormattingRule.getBorderFormatting() != null) {
-      // 罫線設定をコピー
-      var srcBorderFormatting = srcConditionalFormattingRule.getBorderFormatting();
-      var destBorderFormatting = destConditionalFormattingRule.createBorderFormatting();
-
-      // 線のスタイル
-      destBorderFormatting.setBorderBottom(srcBorderFormatting.getBorderBottom());
-      destBorderFormatting.setBorderLeft(srcBorderFormatting.getBorderLeft());
-      destBorderFormatting.setBorderRight(srcBorderFormatting.getBorderRight());
-      destBorderFormatting.setBorderTop(srcBorderFormatting.getBorderTop());
-
-      // 線の色
-      var destBottomColor = cloneColorFrom(srcBorderFormatting.getBottomBorderColorColor(), srcTheme);
-      if (destBottomColor != null) {
-        destBorderFormatting.setBottomBorderColor(destBottomColor);
-      }
-      var destLeftColor = cloneColorFrom(srcBorderFormatting.getLeftBorderColorColor(), srcTheme);
-      if (destLeftColor != null) {
-        destBorderFormatting.setLeftBorderColor(destLeftColor);
-      }
-      var destRightColor = cloneColorFrom(srcBorderFormatting.getRightBorderColorColor(), srcTheme);
-      if (destRightColor != null) {
-        destBorderFormatting.setRightBorderColor(destRightColor);
-      }
-      var destTopColor = cloneColorFrom(srcBorderFormatting.getTopBorderColorColor(), srcTheme);
-      if (destTopColor != null) {
-        destBorderFormatting.setTopBorderColor(destTopColor);
-      }
-    }
-
-    if (srcConditionalFormattingRule.getPatternFormatting() != null) {
-      // 塗りつぶし設定をコピー
-      var srcPatternFormatting = srcConditionalFormattingRule.getPatternFormatting();
-      var destPatternFormatting = destConditionalFormattingRule.createPatternFormatting();
-
-      // 背景色
-      var destFillBackgroundColor = cloneColorFrom(srcPatternFormatting.getFillBackgroundColorColor(), srcTheme);
-      if (destFillBackgroundColor != null) {
-        destPatternFormatting.setFillBackgroundColor(destFillBackgroundColor);
-      }
-      // パターンの色
-      var destFillForegroundColor = cloneColorFrom(srcPatternFormatting.getFillForegroundColorColor(), srcTheme);
-      if (destFillForegroundColor != null) {
-        destPatternFormatting.setFillForegroundColor(destFillForegroundColor);
-      }
-      // パターンスタイル
-      if (srcPatternFormatting.getFillPattern() != PatternFormatting.NO_FILL) {
-        destPatternFormatting.setFillPattern(srcPatternFormatting.getFillPattern());
-      }
-    }
-  }
-
-  /**
-   * 色を複製する
+   * シートに対応するXSSFSheetを取得する
    * 
-   * @param srcColor 複製元の色
-   * @param theme    複製元のテーマ
-   * @return 複製した色。複製元がnullの場合はnullを返す。
+   * @param sheet シート(XSSFSheetまたはSXSSFSheet)
+   * @return XSSFSheet
    */
-  private static XSSFColor cloneColorFrom(XSSFColor srcColor, Themes theme) {
-    if (srcColor == null) {
-      return null;
+  private static XSSFSheet getXSSFSheet(Sheet sheet) {
+    if (sheet instanceof XSSFSheet xssfSheet) {
+      return xssfSheet;
     }
-
-    var newColor = XSSFColor.from(srcColor.getCTColor());
-
-    if (srcColor.isThemed()) {
-      // テーマカラーの場合、テーマから取得したRGB値を設定
-      newColor
-          .setRGB(Optional.ofNullable(theme.getThemeColor(srcColor.getTheme())).map(XSSFColor::getRGB).orElse(null));
-    }
-
-    return newColor;
+    return ((SXSSFWorkbook) sheet.getWorkbook()).getXSSFWorkbook().getSheet(sheet.getSheetName());
   }
 
 }
@@ -0,0 +1,122 @@
+package com.qwerty0121.poi.sample;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import com.qwerty0121.poi.utils.CellStyleRegistry;
+import com.qwerty0121.poi.utils.PoiSampleUtils;
+import com.qwerty0121.poi.utils.SheetEventHandler;
+import com.qwerty0121.poi.utils.SheetEventWriter;
+import com.qwerty0121.poi.utils.WorkbookWriter;
+import com.qwerty0121.poi.utils.XlsWorkbookEventReader;
+import com.qwerty0121.poi.utils.XlsWorkbookEventReader.SheetData;
+
+/**
+ * xls形式のワークブックをxlsx形式に変換するサンプル<br>
+ * <br>
+ * 引数を省略した場合はテンプレートファイルを変換して".output"ディレクトリに出力する。
+ *
+ * <pre>
+ * XlsToXlsxConvertSample [変換元のxlsファイル 出力先のxlsxファイル]
+ * </pre>
+ */
+public class XlsToXlsxConvertSample {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length >= 2) {
+      // 指定したファイルを変換する
+      try (var sourceFileSystem = PoiSampleUtils.openTemplateFileSystem(Path.of(args[0]));
+          var destinationWorkbook = convert(sourceFileSystem.getRoot(), SXSSFWorkbook.DEFAULT_WINDOW_SIZE)) {
+        var result = new WorkbookWriter().write(destinationWorkbook, Path.of(args[1]));
+        System.out.printf("%s (%,d bytes, %.1f MB/s)%n", result.file(), result.bytes(), result.megabytesPerSecond());
+      }
+      return;
+    }
+
+    // テンプレートファイルを変換する
+    try (var sourceFileSystem = PoiSampleUtils.openTemplateFileSystem("シートコピーテンプレート.xls");
+        var destinationWorkbook = convert(sourceFileSystem.getRoot(), SXSSFWorkbook.DEFAULT_WINDOW_SIZE)) {
+      PoiSampleUtils.writeWorkbook(destinationWorkbook, "xlsx変換.xlsx");
+    }
+  }
+
+  /**
+   * xls形式のワークブックをイベント方式で読み込み、ストリーミング方式(SXSSF)のワークブックに変換する<br>
+   * <br>
+   * 変換元のシートはHSSFWorkbookとして読み込まず、セル単位で変換先に書き込むため、
+   * メモリ使用量は変換元のセル数ではなく変換先で保持する行数に依存する。
+   * セルスタイルは変換元のインデックスごとにキャッシュし、内容が同じセルスタイルは変換先で1つにまとめる。<br>
+   * NOTE: 以下の設定は変換されないので注意
+   * <ul>
+   * <li>列幅・行の高さ</li>
+   * <li>図形・画像</li>
+   * <li>条件付き書式</li>
+   * </ul>
+   * NOTE: 使用後は{@link SXSSFWorkbook#close()}を呼び出して一時ファイルを削除すること
+   *
+   * @param sourceRoot          変換元のワークブックを含むPOIFSのルートディレクトリ
+   * @param rowAccessWindowSize メモリ上に保持する行数(これを超えた行は一時ファイルに書き出される)
+   * @return 変換したワークブック
+   * @throws IOException
+   */
+  static SXSSFWorkbook convert(DirectoryNode sourceRoot, int rowAccessWindowSize) throws IOException {
+    var newWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+    try {
+      new XlsWorkbookEventReader().read(sourceRoot, new XlsWorkbookEventReader.WorkbookHandler() {
+
+        /** 変換元のセルスタイルのインデックス → 変換先のセルスタイル */
+        private CellStyle[] styleCache;
+
+        private HSSFWorkbook sourceWorkbook;
+
+        private final CellStyleRegistry styleRegistry = new CellStyleRegistry(newWorkbook);
+
+        @Override
+        public void startWorkbook(HSSFWorkbook globalsWorkbook, List<SheetData> sheets) {
+          sourceWorkbook = globalsWorkbook;
+          styleCache = new CellStyle[globalsWorkbook.getNumCellStyles()];
+
+          // NOTE: 他のシートを参照する数式を書き込めるよう、全てのシートを先に作成する
+          for (int sheetIndex = 0; sheetIndex < sheets.size(); sheetIndex++) {
+            newWorkbook.createSheet(sheets.get(sheetIndex).name());
+            newWorkbook.setSheetVisibility(sheetIndex, sheets.get(sheetIndex).visibility());
+          }
+        }
+
+        @Override
+        public SheetEventHandler startSheet(int sheetIndex) {
+          return new SheetEventWriter(newWorkbook.getSheetAt(sheetIndex), this::getStyle);
+        }
+
+        /**
+         * 変換元のセルスタイルのインデックスに対応する変換先のセルスタイルを取得する
+         *
+         * @param styleIndex 変換元のセルスタイルのインデックス
+         * @return 変換先のセルスタイル
+         */
+        private CellStyle getStyle(int styleIndex) {
+          if (styleIndex < 0 || styleIndex >= styleCache.length) {
+            return null;
+          }
+          if (styleCache[styleIndex] == null) {
+            styleCache[styleIndex] = styleRegistry.getOrCreate(sourceWorkbook.getCellStyleAt(styleIndex),
+                sourceWorkbook);
+          }
+          return styleCache[styleIndex];
+        }
+
+      });
+      return newWorkbook;
+    } catch (IOException | RuntimeException e) {
+      newWorkbook.close();
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,251 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * テンプレートのセル内のプレースホルダー(${名前})の位置をまとめたインデックス<br>
+ * <br>
+ * インデックスはテンプレートごとに一度だけ作成し、プレースホルダーを含むセルの位置(シート・行・列)と、
+ * セルの文字列を固定の文字列とプレースホルダーに分割した結果を保持する。
+ * 出力時はインデックスに登録されたセルのみに値を書き込むため、処理時間はシートの大きさではなくプレースホルダーの数に比例する。<br>
+ * NOTE: セルの一部分のみに設定された書式(リッチテキスト)は維持されないので注意
+ */
+public class CellPlaceholderIndex {
+
+  /** プレースホルダーのパターン */
+  private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$\\{([^${}]+)\\}");
+
+  /** テンプレートファイルの内容 → インデックス */
+  // NOTE: テンプレートファイルが更新されると内容の配列が変わるため、配列そのもの(同一性)をキーにする
+  private static final Map<byte[], CellPlaceholderIndex> INDEX_CACHE = Collections
+      .synchronizedMap(new WeakHashMap<>());
+
+  /** プレースホルダーを含むセル */
+  private final List<PlaceholderCell> cells;
+
+  /**
+   * コンストラクタ
+   *
+   * @param cells プレースホルダーを含むセル
+   */
+  private CellPlaceholderIndex(List<PlaceholderCell> cells) {
+    this.cells = cells;
+  }
+
+  /**
+   * テンプレートファイルのインデックスを取得する<br>
+   * <br>
+   * インデックスは{@link TemplateCache}にキャッシュされたテンプレートファイルの内容ごとに一度だけ作成する。
+   *
+   * @param templateFileName テンプレートファイル名
+   * @return インデックス
+   * @throws IOException
+   */
+  public static CellPlaceholderIndex forTemplate(String templateFileName) throws IOException {
+    var template = TemplateCache.getTemplate(templateFileName);
+    var index = INDEX_CACHE.get(template);
+    if (index != null) {
+      return index;
+    }
+
+    try (var workbook = WorkbookFactory.create(new ByteArrayInputStream(template))) {
+      index = of(workbook);
+    }
+    INDEX_CACHE.put(template, index);
+    return index;
+  }
+
+  /**
+   * ワークブックの全てのシートの文字列セルからインデックスを作成する
+   *
+   * @param workbook ワークブック
+   * @return インデックス
+   */
+  public static CellPlaceholderIndex of(Workbook workbook) {
+    var cells = new ArrayList<PlaceholderCell>();
+    for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+      for (var row : workbook.getSheetAt(sheetIndex)) {
+        for (var cell : row) {
+          if (cell.getCellType() != CellType.STRING) {
+            continue;
+          }
+          var segments = parseSegments(cell.getStringCellValue());
+          if (segments != null) {
+            cells.add(new PlaceholderCell(sheetIndex, cell.getRowIndex(), cell.getColumnIndex(), segments));
+          }
+        }
+      }
+    }
+    return new CellPlaceholderIndex(List.copyOf(cells));
+  }
+
+  /**
+   * プレースホルダーを含むセルの数を取得する
+   *
+   * @return セルの数
+   */
+  public int size() {
+    return cells.size();
+  }
+
+  /**
+   * プレースホルダーを含むセルを取得する
+   *
+   * @return プレースホルダーを含むセル
+   */
+  public List<PlaceholderCell> getCells() {
+    return cells;
+  }
+
+  /**
+   * ワークブックのプレースホルダーを含むセルに値を書き込む<br>
+   * <br>
+   * 値の書き込み方は{@link #writeSegments(Cell, List, Map)}を参照。<br>
+   * NOTE: ワークブックはインデックスを作成したテンプレートから読み込んだものであること
+   *
+   * @param workbook ワークブック
+   * @param data     プレースホルダーの名前 → 値
+   * @throws IllegalArgumentException インデックスに登録されたセルがワークブックに存在しない場合
+   */
+  public void render(Workbook workbook, Map<String, ?> data) {
+    for (var placeholderCell : cells) {
+      var sheet = workbook.getSheetAt(placeholderCell.sheetIndex());
+      var row = sheet.getRow(placeholderCell.rowIndex());
+      var cell = row != null ? row.getCell(placeholderCell.columnIndex()) : null;
+      if (cell == null) {
+        var cellReference = new CellReference(sheet.getSheetName(), placeholderCell.rowIndex(),
+            placeholderCell.columnIndex(), false, false);
+        throw new IllegalArgumentException("プレースホルダーのセル(" + cellReference.formatAsString()
+            + ")がワークブックに存在しません。インデックスを作成したテンプレートから読み込んだワークブックを指定してください。");
+      }
+      writeSegments(cell, placeholderCell.segments(), data);
+    }
+  }
+
+  /**
+   * プレースホルダーを値に置き換えてセルに書き込む<br>
+   * <br>
+   * セルがプレースホルダーのみの場合は値の型(数値、真偽値、日付)のまま書き込み、
+   * それ以外の場合はプレースホルダーを値の文字列表現に置き換えた文字列を書き込む。
+   * 値が存在しないプレースホルダーはそのまま残す。
+   *
+   * @param cell     セル
+   * @param segments セルの文字列を固定の文字列とプレースホルダーに分割した結果
+   * @param data     プレースホルダーの名前 → 値
+   */
+  static void writeSegments(Cell cell, List<Segment> segments, Map<String, ?> data) {
+    // プレースホルダーのみのセルは値の型のまま書き込む
+    if (segments.size() == 1 && segments.get(0).isPlaceholder()) {
+      var name = segments.get(0).text();
+      if (data.containsKey(name)) {
+        setCellValue(cell, data.get(name));
+      } else {
+        cell.setCellValue("${" + name + "}");
+      }
+      return;
+    }
+
+    var value = new StringBuilder();
+    for (var segment : segments) {
+      if (!segment.isPlaceholder()) {
+        value.append(segment.text());
+      } else if (data.containsKey(segment.text())) {
+        value.append(data.get(segment.text()) != null ? data.get(segment.text()) : "");
+      } else {
+        value.append("${").append(segment.text()).append("}");
+      }
+    }
+    cell.setCellValue(value.toString());
+  }
+
+  /**
+   * 値の型に応じてセルに値を設定する
+   *
+   * @param cell  セル
+   * @param value 値
+   */
+  private static void setCellValue(Cell cell, Object value) {
+    if (value == null) {
+      cell.setBlank();
+    } else if (value instanceof Number number) {
+      cell.setCellValue(number.doubleValue());
+    } else if (value instanceof Boolean bool) {
+      cell.setCellValue(bool);
+    } else if (value instanceof Date date) {
+      cell.setCellValue(date);
+    } else if (value instanceof LocalDate localDate) {
+      cell.setCellValue(localDate);
+    } else if (value instanceof LocalDateTime localDateTime) {
+      cell.setCellValue(localDateTime);
+    } else if (value instanceof Calendar calendar) {
+      cell.setCellValue(calendar);
+    } else {
+      cell.setCellValue(value.toString());
+    }
+  }
+
+  /**
+   * 文字列を固定の文字列とプレースホルダーに分割する
+   *
+   * @param text 文字列
+   * @return 分割結果。プレースホルダーを含まない場合はnull
+   */
+  static List<Segment> parseSegments(String text) {
+    var matcher = PLACEHOLDER_PATTERN.matcher(text);
+    if (!matcher.find()) {
+      return null;
+    }
+
+    var segments = new ArrayList<Segment>();
+    var position = 0;
+    do {
+      if (matcher.start() > position) {
+        segments.add(new Segment(text.substring(position, matcher.start()), false));
+      }
+      segments.add(new Segment(matcher.group(1), true));
+      position = matcher.end();
+    } while (matcher.find());
+    if (position < text.length()) {
+      segments.add(new Segment(text.substring(position), false));
+    }
+    return List.copyOf(segments);
+  }
+
+  /**
+   * プレースホルダーを含むセル
+   *
+   * @param sheetIndex  シートのインデックス
+   * @param rowIndex    行のインデックス
+   * @param columnIndex 列のインデックス
+   * @param segments    セルの文字列を固定の文字列とプレースホルダーに分割した結果
+   */
+  public record PlaceholderCell(int sheetIndex, int rowIndex, int columnIndex, List<Segment> segments) {
+  }
+
+  /**
+   * セルの文字列の一部分
+   *
+   * @param text          固定の文字列、またはプレースホルダーの名前
+   * @param isPlaceholder プレースホルダーかどうか
+   */
+  public record Segment(String text, boolean isPlaceholder) {
+  }
+
+}
@@ -0,0 +1,322 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.usermodel.HSSFPalette;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hssf.util.HSSFColor.HSSFColorPredefined;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+
+/**
+ * コピー先のワークブック単位でセルスタイルを共有するレジストリ<br>
+ * <br>
+ * フォント、塗りつぶし、罫線、配置、表示形式の内容が同じセルスタイルは、
+ * コピー元のシートやワークブックが異なっていてもコピー先では1つのセルスタイルにまとめる。<br>
+ * NOTE: スレッドセーフではないので注意
+ */
+public class CellStyleRegistry {
+
+  /** コピー先のワークブック */
+  private final Workbook destinationWorkbook;
+
+  /** コピー元のセルスタイルの実体(CTXf) → コピー先のセルスタイル */
+  private final Map<Object, CellStyle> styleBySource = new IdentityHashMap<>();
+
+  /** セルスタイルの内容({@link XmlStyleKey}または{@link StyleKey}) → コピー先のセルスタイル */
+  private final Map<Object, CellStyle> styleByContent = new HashMap<>();
+
+  /** フォントの内容 → コピー先のフォント(xls形式のセルスタイルのコピーで利用する) */
+  private final Map<FontKey, XSSFFont> fontByContent = new HashMap<>();
+
+  /** 内容が同じセルスタイルを再利用した回数 */
+  private int hitCount;
+
+  /** セルスタイルを新たに作成した回数 */
+  private int missCount;
+
+  /**
+   * コンストラクタ
+   *
+   * @param destinationWorkbook コピー先のワークブック
+   */
+  public CellStyleRegistry(Workbook destinationWorkbook) {
+    this.destinationWorkbook = destinationWorkbook;
+  }
+
+  /**
+   * コピー元のセルスタイルに対応するコピー先のセルスタイルを取得する<br>
+   * <br>
+   * 内容が同じセルスタイルがコピー先に存在しない場合は新たに作成する。
+   * 内容はセルスタイル・フォント・塗りつぶし・罫線のXMLで比較するため、
+   * 斜線やグラデーションなど個別に取得できない設定が異なるセルスタイルもまとめられることはない。
+   *
+   * @param sourceStyle  コピー元のセルスタイル
+   * @param sourceStyles コピー元のワークブックのスタイル(塗りつぶしと罫線の取得に利用する)
+   * @return コピー先のセルスタイル
+   */
+  public CellStyle getOrCreate(XSSFCellStyle sourceStyle, StylesTable sourceStyles) {
+    // 同じセルスタイルは内容を比較せずに返す
+    // NOTE: XSSFCellStyleは取得の都度インスタンスが作成されるため、実体であるCTXfで判定する
+    var destinationStyle = styleBySource.get(sourceStyle.getCoreXf());
+    if (destinationStyle != null) {
+      return destinationStyle;
+    }
+
+    var key = XmlStyleKey.of(sourceStyle, sourceStyles);
+    destinationStyle = styleByContent.get(key);
+    if (destinationStyle != null) {
+      hitCount++;
+    } else {
+      // 新しいスタイルを作成して保存
+      missCount++;
+      destinationStyle = destinationWorkbook.createCellStyle();
+      destinationStyle.cloneStyleFrom(sourceStyle);
+      styleByContent.put(key, destinationStyle);
+    }
+    styleBySource.put(sourceStyle.getCoreXf(), destinationStyle);
+    return destinationStyle;
+  }
+
+  /**
+   * コピー元のセルスタイル(xls形式)に対応するコピー先のセルスタイルを取得する<br>
+   * <br>
+   * 内容が同じセルスタイルがコピー先に存在しない場合は新たに作成する。
+   * xls形式の色はパレットのインデックスで指定されるため、パレットのRGB値の色に変換して設定する。<br>
+   * NOTE: HSSFCellStyleは取得の都度インスタンスが作成され、実体を参照できないため、同じセルスタイルでも内容を比較する。
+   * 呼び出し元でセルスタイルのインデックスごとに結果を保持すること
+   *
+   * @param sourceStyle    コピー元のセルスタイル
+   * @param sourceWorkbook コピー元のワークブック(フォントとパレットの取得に利用する)
+   * @return コピー先のセルスタイル
+   */
+  public CellStyle getOrCreate(HSSFCellStyle sourceStyle, HSSFWorkbook sourceWorkbook) {
+    var palette = sourceWorkbook.getCustomPalette();
+    var key = StyleKey.of(sourceStyle, sourceWorkbook, palette);
+    var destinationStyle = styleByContent.get(key);
+    if (destinationStyle != null) {
+      hitCount++;
+      return destinationStyle;
+    }
+
+    // 新しいスタイルを作成して保存
+    missCount++;
+    var newStyle = (XSSFCellStyle) destinationWorkbook.createCellStyle();
+    newStyle.setFont(getOrCreateFont(sourceStyle.getFont(sourceWorkbook), palette));
+    newStyle.setFillPattern(sourceStyle.getFillPattern());
+    setColor(newStyle::setFillForegroundColor, palette, sourceStyle.getFillForegroundColor());
+    setColor(newStyle::setFillBackgroundColor, palette, sourceStyle.getFillBackgroundColor());
+    newStyle.setBorderTop(sourceStyle.getBorderTop());
+    newStyle.setBorderBottom(sourceStyle.getBorderBottom());
+    newStyle.setBorderLeft(sourceStyle.getBorderLeft());
+    newStyle.setBorderRight(sourceStyle.getBorderRight());
+    setColor(newStyle::setTopBorderColor, palette, sourceStyle.getTopBorderColor());
+    setColor(newStyle::setBottomBorderColor, palette, sourceStyle.getBottomBorderColor());
+    setColor(newStyle::setLeftBorderColor, palette, sourceStyle.getLeftBorderColor());
+    setColor(newStyle::setRightBorderColor, palette, sourceStyle.getRightBorderColor());
+    newStyle.setAlignment(sourceStyle.getAlignment());
+    newStyle.setVerticalAlignment(sourceStyle.getVerticalAlignment());
+    newStyle.setWrapText(sourceStyle.getWrapText());
+    newStyle.setIndention(sourceStyle.getIndention());
+    // NOTE: xls形式の回転角度(-90~90)はXSSFCellStyle#setRotationでxlsx形式の値に変換される
+    newStyle.setRotation(sourceStyle.getRotation());
+    newStyle.setShrinkToFit(sourceStyle.getShrinkToFit());
+    newStyle.setLocked(sourceStyle.getLocked());
+    newStyle.setHidden(sourceStyle.getHidden());
+    newStyle.setQuotePrefixed(sourceStyle.getQuotePrefixed());
+    newStyle.setDataFormat(destinationWorkbook.createDataFormat().getFormat(key.dataFormatString()));
+    styleByContent.put(key, newStyle);
+    return newStyle;
+  }
+
+  /**
+   * コピー元のフォント(xls形式)に対応するコピー先のフォントを取得する<br>
+   * <br>
+   * 内容が同じフォントがコピー先に存在しない場合は新たに作成する。
+   *
+   * @param sourceFont コピー元のフォント
+   * @param palette    コピー元のパレット
+   * @return コピー先のフォント
+   */
+  private XSSFFont getOrCreateFont(HSSFFont sourceFont, HSSFPalette palette) {
+    var color = toXSSFColor(palette, sourceFont.getColor());
+    return fontByContent.computeIfAbsent(FontKey.of(sourceFont, color), key -> {
+      var newFont = (XSSFFont) destinationWorkbook.createFont();
+      newFont.setFontName(sourceFont.getFontName());
+      newFont.setFontHeight(sourceFont.getFontHeight());
+      newFont.setBold(sourceFont.getBold());
+      newFont.setItalic(sourceFont.getItalic());
+      newFont.setUnderline(sourceFont.getUnderline());
+      newFont.setStrikeout(sourceFont.getStrikeout());
+      newFont.setTypeOffset(sourceFont.getTypeOffset());
+      newFont.setCharSet(sourceFont.getCharSet());
+      if (color != null) {
+        newFont.setColor(color);
+      }
+      return newFont;
+    });
+  }
+
+  /**
+   * xls形式のパレットのインデックスの色を設定する<br>
+   * <br>
+   * NOTE: XSSFCellStyleの罫線の色は未設定の状態でnullを設定すると例外となるため、自動の色の場合は設定しない
+   *
+   * @param setter  色を設定する関数
+   * @param palette パレット
+   * @param index   パレットのインデックス
+   */
+  private static void setColor(Consumer<XSSFColor> setter, HSSFPalette palette, short index) {
+    var color = toXSSFColor(palette, index);
+    if (color != null) {
+      setter.accept(color);
+    }
+  }
+
+  /**
+   * xls形式のパレットのインデックスをRGB値の色に変換する
+   *
+   * @param palette パレット
+   * @param index   パレットのインデックス
+   * @return 色。自動の色、またはパレットに存在しない色の場合はnull
+   */
+  private static XSSFColor toXSSFColor(HSSFPalette palette, short index) {
+    if (index == HSSFColorPredefined.AUTOMATIC.getIndex() || index == Font.COLOR_NORMAL) {
+      return null;
+    }
+    var color = palette.getColor(index);
+    if (color == null) {
+      return null;
+    }
+    var triplet = color.getTriplet();
+    return new XSSFColor(new byte[] { (byte) triplet[0], (byte) triplet[1], (byte) triplet[2] }, null);
+  }
+
+  /**
+   * 内容が同じセルスタイルを再利用した回数を取得する<br>
+   * <br>
+   * NOTE: コピー元の同一のセルスタイルを2回目以降に参照した場合は数えない
+   *
+   * @return 再利用した回数
+   */
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * セルスタイルを新たに作成した回数を取得する
+   *
+   * @return 作成した回数
+   */
+  public int getMissCount() {
+    return missCount;
+  }
+
+  @Override
+  public String toString() {
+    return "CellStyleRegistry [hit=" + hitCount + ", miss=" + missCount + "]";
+  }
+
+  /**
+   * セルスタイル(xlsx形式)の内容を表すキー<br>
+   * <br>
+   * {@link XSSFCellStyle#cloneStyleFrom(CellStyle)}でコピーされる内容(セルスタイル・フォント・塗りつぶし・罫線のXMLと表示形式)で比較する。
+   * NOTE: フォント・塗りつぶし・罫線・表示形式のIDはワークブックごとに異なるため、セルスタイルのXMLからは除く
+   *
+   * @param xf               セルスタイル(CTXf)のXML
+   * @param font             フォント(CTFont)のXML
+   * @param fill             塗りつぶし(CTFill)のXML
+   * @param border           罫線(CTBorder)のXML
+   * @param dataFormatString 表示形式
+   */
+  private record XmlStyleKey(String xf, String font, String fill, String border, String dataFormatString) {
+
+    static XmlStyleKey of(XSSFCellStyle style, StylesTable styles) {
+      var coreXf = style.getCoreXf();
+      var xf = (CTXf) coreXf.copy();
+      if (xf.isSetFontId()) {
+        xf.unsetFontId();
+      }
+      if (xf.isSetFillId()) {
+        xf.unsetFillId();
+      }
+      if (xf.isSetBorderId()) {
+        xf.unsetBorderId();
+      }
+      if (xf.isSetNumFmtId()) {
+        xf.unsetNumFmtId();
+      }
+      return new XmlStyleKey(
+          xf.xmlText(),
+          style.getFont().getCTFont().xmlText(),
+          styles.getFillAt((int) coreXf.getFillId()).getCTFill().xmlText(),
+          styles.getBorderAt((int) coreXf.getBorderId()).getCTBorder().xmlText(),
+          style.getDataFormatString());
+    }
+
+  }
+
+  /**
+   * セルスタイル(xls形式)の内容を表すキー<br>
+   * <br>
+   * NOTE: xls形式のセルスタイルからコピーする設定のみを含める
+   */
+  private record StyleKey(
+      FontKey font,
+      FillPatternType fillPattern, ColorKey fillForegroundColor, ColorKey fillBackgroundColor,
+      BorderStyle borderTop, BorderStyle borderBottom, BorderStyle borderLeft, BorderStyle borderRight,
+      ColorKey borderTopColor, ColorKey borderBottomColor, ColorKey borderLeftColor, ColorKey borderRightColor,
+      HorizontalAlignment alignment, VerticalAlignment verticalAlignment, boolean wrapText, short indention,
+      short rotation, boolean shrinkToFit,
+      boolean locked, boolean hidden, boolean quotePrefixed,
+      String dataFormatString) {
+
+    static StyleKey of(HSSFCellStyle style, HSSFWorkbook workbook, HSSFPalette palette) {
+      var font = style.getFont(workbook);
+      return new StyleKey(
+          FontKey.of(font, toXSSFColor(palette, font.getColor())),
+          style.getFillPattern(),
+          ColorKey.of(toXSSFColor(palette, style.getFillForegroundColor())),
+          ColorKey.of(toXSSFColor(palette, style.getFillBackgroundColor())),
+          style.getBorderTop(), style.getBorderBottom(), style.getBorderLeft(), style.getBorderRight(),
+          ColorKey.of(toXSSFColor(palette, style.getTopBorderColor())),
+          ColorKey.of(toXSSFColor(palette, style.getBottomBorderColor())),
+          ColorKey.of(toXSSFColor(palette, style.getLeftBorderColor())),
+          ColorKey.of(toXSSFColor(palette, style.getRightBorderColor())),
+          style.getAlignment(), style.getVerticalAlignment(), style.getWrapText(), style.getIndention(),
+          style.getRotation(), style.getShrinkToFit(),
+          style.getLocked(), style.getHidden(), style.getQuotePrefixed(),
+          style.getDataFormatString());
+    }
+
+  }
+
+  /**
+   * フォント(xls形式)の内容を表すキー
+   */
+  private record FontKey(String fontName, short fontHeight, boolean bold, boolean italic, byte underline,
+      boolean strikeout, short typeOffset, int charSet, ColorKey color) {
+
+    static FontKey of(HSSFFont font, XSSFColor color) {
+      return new FontKey(font.getFontName(), font.getFontHeight(), font.getBold(), font.getItalic(),
+          font.getUnderline(), font.getStrikeout(), font.getTypeOffset(), font.getCharSet(), ColorKey.of(color));
+    }
+
+  }
+
+}
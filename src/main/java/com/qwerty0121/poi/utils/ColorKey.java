@@ -0,0 +1,33 @@
+package com.qwerty0121.poi.utils;
+
+import org.apache.poi.xssf.usermodel.XSSFColor;
+
+/**
+ * 色の内容を表すキー<br>
+ * <br>
+ * 内容(自動、インデックス、テーマ、明るさ、ARGB値)が同じ色は同じキーとなる。
+ * スタイルの登録({@link CellStyleRegistry})と色の変換({@link ColorTranslationCache})で共通して使用する。
+ *
+ * @param auto    自動の色か
+ * @param indexed インデックス
+ * @param theme   テーマカラーの番号(テーマカラーでない場合は-1)
+ * @param tint    明るさ
+ * @param argb    ARGB値(16進数の文字列)
+ */
+record ColorKey(boolean auto, short indexed, int theme, double tint, String argb) {
+
+  /**
+   * 色の内容を表すキーを作成する
+   *
+   * @param color 色(ない場合はnull)
+   * @return 色の内容を表すキー。色がnullの場合はnullを返す。
+   */
+  static ColorKey of(XSSFColor color) {
+    if (color == null) {
+      return null;
+    }
+    return new ColorKey(color.isAuto(), color.getIndexed(), color.isThemed() ? color.getTheme() : -1,
+        color.getTint(), color.getARGBHex());
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.xssf.model.Themes;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+
+/**
+ * コピー元のワークブックの色をコピー先で使用する色に変換し、変換結果をキャッシュするクラス<br>
+ * <br>
+ * テーマカラーはコピー元のテーマから取得したRGB値に明るさ(tint)を反映した色に変換する。
+ * それ以外の色(RGB値、インデックスカラー、自動)は内容を複製した色に変換する。
+ * 内容が同じ色の変換結果は共有するため、条件付き書式のルールが多いワークブックでもテーマの参照と色の生成は色の種類数だけで済む。<br>
+ * NOTE: 変換結果の色は共有されるため、変更しないこと<br>
+ * NOTE: コピー元のワークブックごとにインスタンスを作成すること
+ */
+public class ColorTranslationCache {
+
+  /** コピー元のテーマ */
+  private final Themes srcTheme;
+
+  /** 色の内容 → 変換後の色 */
+  private final Map<ColorKey, XSSFColor> cache = new HashMap<>();
+
+  /**
+   * コンストラクタ
+   *
+   * @param srcTheme コピー元のテーマ(テーマが存在しない場合はnull)
+   */
+  public ColorTranslationCache(Themes srcTheme) {
+    this.srcTheme = srcTheme;
+  }
+
+  /**
+   * コピー元の色をコピー先で使用する色に変換する
+   *
+   * @param srcColor コピー元の色
+   * @return 変換後の色。コピー元がnullの場合はnullを返す。
+   */
+  public XSSFColor translate(XSSFColor srcColor) {
+    if (srcColor == null) {
+      return null;
+    }
+    return cache.computeIfAbsent(ColorKey.of(srcColor), key -> createColor(srcColor));
+  }
+
+  /**
+   * コピー先で使用する色を作成する
+   *
+   * @param srcColor コピー元の色
+   * @return 作成した色
+   */
+  private XSSFColor createColor(XSSFColor srcColor) {
+    if (srcColor.isThemed() && srcTheme != null) {
+      var themeColor = srcTheme.getThemeColor(srcColor.getTheme());
+      if (themeColor != null && themeColor.getRGB() != null) {
+        // テーマから取得したRGB値に明るさを反映した色を作成する
+        // NOTE: 明るさの計算はXSSFColor#getRGBWithTintに任せる
+        var tintedColor = new XSSFColor(themeColor.getRGB());
+        tintedColor.setTint(srcColor.getTint());
+        return new XSSFColor(tintedColor.getRGBWithTint());
+      }
+    }
+
+    // NOTE: XSSFColor.fromは引数のXMLをそのまま参照するため、新しく作成したXMLに内容を複製してから作成する
+    var ctColor = CTColor.Factory.newInstance();
+    ctColor.set(srcColor.getCTColor());
+    return XSSFColor.from(ctColor);
+  }
+
+}
@@ -0,0 +1,150 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCfRule;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDxf;
+
+/**
+ * シートの条件付き書式(conditionalFormatting要素)を別のワークブックのシートにコピーするクラス<br>
+ * <br>
+ * 全ての条件種別(数式、セルの値、カラースケール、データバー、アイコンセットなど)のルールをコピーする。
+ * ルールの定義はコピー元のXMLをそのまま複製し、コピー元のワークブックのスタイルを参照する書式設定(dxf)はコピー先に作成し直す。
+ * 書式設定の色は{@link ColorTranslationCache}でコピー先で使用する色に変換する。
+ * 対象セル範囲が同じルールは、コピー元で別々の条件付き書式であってもコピー先では1つの条件付き書式にまとめる。
+ * 優先順位と「条件を満たす場合は停止」の設定はコピー元と同じとなる。<br>
+ * コピー元はXMLのみを参照するため、シートをDOMとして読み込まない場合(SAXで読み込んだ条件付き書式)でも同じ結果となる。<br>
+ * NOTE: Excel 2010以降の拡張設定(データバーの塗りつぶし・枠線の設定など)はコピーされないので注意<br>
+ * NOTE: コピー元のワークブックごとにインスタンスを作成すること
+ */
+public class ConditionalFormattingCopier {
+
+  /** コピー元のワークブックのスタイル */
+  private final StylesTable srcStyles;
+
+  /** コピー元のワークブックの色の変換キャッシュ */
+  private final ColorTranslationCache colorCache;
+
+  /**
+   * コンストラクタ
+   *
+   * @param srcStyles  コピー元のワークブックのスタイル
+   * @param colorCache コピー元のワークブックの色の変換キャッシュ
+   */
+  public ConditionalFormattingCopier(StylesTable srcStyles, ColorTranslationCache colorCache) {
+    this.srcStyles = srcStyles;
+    this.colorCache = colorCache;
+  }
+
+  /**
+   * シートの条件付き書式をコピー先のシートに追加する
+   *
+   * @param srcConditionalFormattings コピー元のシートの条件付き書式(シートのXMLでの出現順)
+   * @param destSheet                 コピー先のシート
+   */
+  public void copy(List<CTConditionalFormatting> srcConditionalFormattings, XSSFSheet destSheet) {
+    // コピー元の条件付き書式を対象セル範囲ごとにまとめる
+    var srcConditionalFormattingMap = new LinkedHashMap<String, List<CTConditionalFormatting>>();
+    for (var srcConditionalFormatting : srcConditionalFormattings) {
+      srcConditionalFormattingMap
+          .computeIfAbsent(toRegionsKey(srcConditionalFormatting), key -> new ArrayList<>())
+          .add(srcConditionalFormatting);
+    }
+
+    // 対象セル範囲ごとに条件付き書式をコピーする
+    var destStyles = destSheet.getWorkbook().getStylesSource();
+    srcConditionalFormattingMap.values().forEach(srcGroup -> {
+      // 対象セル範囲などの属性は先頭の条件付き書式から複製し、ルールは全ての条件付き書式のルールを出現順に追加する
+      var destConditionalFormatting = destSheet.getCTWorksheet().addNewConditionalFormatting();
+      destConditionalFormatting.set(srcGroup.get(0));
+      for (int i = 1; i < srcGroup.size(); i++) {
+        for (var srcCTCfRule : srcGroup.get(i).getCfRuleArray()) {
+          destConditionalFormatting.addNewCfRule().set(srcCTCfRule);
+        }
+      }
+
+      // 拡張設定はシート側の拡張設定への参照のため取り除く
+      if (destConditionalFormatting.isSetExtLst()) {
+        destConditionalFormatting.unsetExtLst();
+      }
+      for (var destCTCfRule : destConditionalFormatting.getCfRuleArray()) {
+        copyRuleFormatting(destCTCfRule, destStyles);
+      }
+    });
+  }
+
+  /**
+   * ルールの書式設定をコピー先のワークブックに作成し直す<br>
+   * <br>
+   * NOTE: 書式設定(dxfId)はコピー元のワークブックのスタイルを指しているため、コピー先に作成した書式設定に付け替える
+   *
+   * @param destCTCfRule コピー元の定義を複製したルール
+   * @param destStyles   コピー先のワークブックのスタイル
+   */
+  private void copyRuleFormatting(CTCfRule destCTCfRule, StylesTable destStyles) {
+    if (destCTCfRule.isSetExtLst()) {
+      destCTCfRule.unsetExtLst();
+    }
+    if (!destCTCfRule.isSetDxfId()) {
+      return;
+    }
+
+    var srcDxfId = destCTCfRule.getDxfId();
+    destCTCfRule.unsetDxfId();
+    if (srcDxfId >= srcStyles._getDXfsSize()) {
+      return; // コピー元に存在しない書式設定は参照しない
+    }
+
+    var destDxf = (CTDxf) srcStyles.getDxfAt((int) srcDxfId).copy();
+    if (destDxf.isSetExtLst()) {
+      destDxf.unsetExtLst();
+    }
+    translateColors(destDxf);
+    destCTCfRule.setDxfId(destStyles.putDxf(destDxf) - 1);
+  }
+
+  /**
+   * 書式設定に含まれる色(フォント、罫線、塗りつぶしの色)をコピー先で使用する色に置き換える
+   *
+   * @param dxf 書式設定
+   */
+  private void translateColors(CTDxf dxf) {
+    var ctColors = new ArrayList<CTColor>();
+    try (var cursor = dxf.newCursor()) {
+      while (!cursor.toNextToken().isNone()) {
+        if (cursor.isStart() && cursor.getObject() instanceof CTColor ctColor) {
+          ctColors.add(ctColor);
+        }
+      }
+    }
+
+    for (var ctColor : ctColors) {
+      var destColor = colorCache.translate(XSSFColor.from(ctColor, srcStyles.getIndexedColors()));
+      ctColor.set(destColor.getCTColor());
+    }
+  }
+
+  /**
+   * 条件付き書式の対象セル範囲を表すキーを作成する
+   *
+   * @param conditionalFormatting 条件付き書式
+   * @return 対象セル範囲を表すキー(セル範囲の文字列を空白区切りで連結した文字列)
+   */
+  private static String toRegionsKey(CTConditionalFormatting conditionalFormatting) {
+    // NOTE: getSqrefは型引数のないListを返すため、要素を文字列として扱う
+    List<?> sqref = conditionalFormatting.getSqref();
+    return sqref.stream()
+        .map(ref -> CellRangeAddress.valueOf(ref.toString()).formatAsString())
+        .collect(Collectors.joining(" "));
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * ファイルを直接参照して読み込むワークブック(xlsx形式)<br>
+ * <br>
+ * ZIPのエントリはファイルから必要な時に読み込むため、ストリームから読み込む場合と異なりパッケージ全体がメモリ上に保持されない。
+ * 変更したワークブックは{@link #write(java.io.OutputStream)}で別のファイルに出力できる。
+ * 閉じる際は変更を破棄し、読み込み元のファイルは変更しない。<br>
+ * NOTE: 読み取り専用で開いたパッケージは出力できないため読み書き可能で開いているが、
+ * 通常のワークブックは閉じる際に読み込み元のファイルへ変更を書き戻すため、{@link #close()}で書き戻しを行わないようにしている<br>
+ * NOTE: ワークブックを閉じるまで読み込み元のファイルは開いたままとなる
+ */
+public class FileBackedXSSFWorkbook extends XSSFWorkbook {
+
+  /**
+   * コンストラクタ
+   *
+   * @param opcPackage 読み書き可能で開いたOPCパッケージ
+   * @throws IOException
+   */
+  private FileBackedXSSFWorkbook(OPCPackage opcPackage) throws IOException {
+    super(opcPackage);
+  }
+
+  /**
+   * ファイルを開いてワークブックとして読み込む
+   *
+   * @param file ファイル
+   * @return ワークブック
+   * @throws IOException
+   */
+  public static FileBackedXSSFWorkbook open(Path file) throws IOException {
+    OPCPackage opcPackage;
+    try {
+      opcPackage = OPCPackage.open(file.toFile(), PackageAccess.READ_WRITE);
+    } catch (InvalidFormatException e) {
+      throw new IOException("ファイルの読み込みに失敗しました: " + file, e);
+    }
+
+    try {
+      return new FileBackedXSSFWorkbook(opcPackage);
+    } catch (IOException | RuntimeException e) {
+      opcPackage.revert();
+      throw e;
+    }
+  }
+
+  /**
+   * ワークブックを閉じる<br>
+   * <br>
+   * 変更は読み込み元のファイルに書き戻さずに破棄する。
+   */
+  @Override
+  public void close() throws IOException {
+    var opcPackage = getPackage();
+    if (opcPackage != null) {
+      opcPackage.revert();
+    }
+  }
+
+}
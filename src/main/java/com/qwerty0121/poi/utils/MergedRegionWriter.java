@@ -0,0 +1,130 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+/**
+ * シートにセル結合を一括で追加するクラス<br>
+ * <br>
+ * {@link Sheet#addMergedRegion(CellRangeAddress)}は追加のたびにシート内の全てのセル結合との重なりを検証するため、
+ * セル結合の数に対して2乗の時間がかかる(数万件のセル結合では数分かかる)。
+ * このクラスでは、追加するセル結合と既存のセル結合の重なりを行方向の走査で一度に検証してから、検証なしで追加する。
+ * xlsx形式のシートでは、セル結合のXML要素をまとめて追加する。<br>
+ * NOTE: 配列数式との重なりは検証しない
+ */
+public class MergedRegionWriter {
+
+  /**
+   * セル結合を一括で追加する<br>
+   * <br>
+   * 検証に失敗した場合は1件も追加しない。
+   *
+   * @param sheet   追加先のシート
+   * @param regions 追加するセル結合
+   * @throws IllegalArgumentException 結合範囲が1セルのみ、またはシートの範囲外の場合
+   * @throws IllegalStateException    結合範囲が他のセル結合と重なる場合
+   */
+  public static void addAll(Sheet sheet, Collection<CellRangeAddress> regions) {
+    if (regions.isEmpty()) {
+      return;
+    }
+
+    // 追加するセル結合と既存のセル結合をまとめて検証する
+    var version = sheet.getWorkbook().getSpreadsheetVersion();
+    for (var region : regions) {
+      validateRegion(region, version);
+    }
+    var allRegions = new ArrayList<CellRangeAddress>(sheet.getNumMergedRegions() + regions.size());
+    allRegions.addAll(sheet.getMergedRegions());
+    allRegions.addAll(regions);
+    validateNoOverlap(allRegions);
+
+    var xssfSheet = getXSSFSheet(sheet);
+    if (xssfSheet == null) {
+      regions.forEach(sheet::addMergedRegionUnsafe);
+      return;
+    }
+
+    // NOTE: addMergedRegionUnsafeは追加のたびに件数を数え直すため、XML要素をまとめて追加してから件数を設定する
+    var worksheet = xssfSheet.getCTWorksheet();
+    var ctMergeCells = worksheet.isSetMergeCells() ? worksheet.getMergeCells() : worksheet.addNewMergeCells();
+    for (var region : regions) {
+      ctMergeCells.addNewMergeCell().setRef(region.formatAsString());
+    }
+    ctMergeCells.setCount(ctMergeCells.sizeOfMergeCellArray());
+  }
+
+  /**
+   * セル結合が互いに重ならないことを検証する<br>
+   * <br>
+   * 開始行の昇順に走査し、走査中の行にかかるセル結合を開始列で索引して、列範囲が重なるものがないかを調べる。
+   * 走査中の行にかかるセル結合は互いに列範囲が重ならないため、開始列が終了列以下で最大のセル結合とだけ比較すればよい。
+   *
+   * @param regions セル結合
+   * @throws IllegalStateException 重なるセル結合がある場合
+   */
+  public static void validateNoOverlap(Collection<CellRangeAddress> regions) {
+    var sortedRegions = new ArrayList<>(regions);
+    sortedRegions.sort(Comparator.comparingInt(CellRangeAddress::getFirstRow));
+
+    // 開始列 → 走査中の行にかかるセル結合
+    var activeRegions = new TreeMap<Integer, CellRangeAddress>();
+    // 走査中の行にかかるセル結合(終了行の昇順)
+    var expiringRegions = new PriorityQueue<CellRangeAddress>(Comparator.comparingInt(CellRangeAddress::getLastRow));
+    for (var region : sortedRegions) {
+      // 走査中の行より上で終わるセル結合を取り除く
+      while (!expiringRegions.isEmpty() && expiringRegions.peek().getLastRow() < region.getFirstRow()) {
+        activeRegions.remove(expiringRegions.poll().getFirstColumn());
+      }
+
+      var candidate = activeRegions.floorEntry(region.getLastColumn());
+      if (candidate != null && candidate.getValue().getLastColumn() >= region.getFirstColumn()) {
+        throw new IllegalStateException("セル結合 " + region.formatAsString() + " が他のセル結合 "
+            + candidate.getValue().formatAsString() + " と重なっています。");
+      }
+      activeRegions.put(region.getFirstColumn(), region);
+      expiringRegions.add(region);
+    }
+  }
+
+  /**
+   * セル結合の範囲を検証する
+   *
+   * @param region  セル結合
+   * @param version ワークブックの形式
+   * @throws IllegalArgumentException 結合範囲が1セルのみ、またはシートの範囲外の場合
+   */
+  private static void validateRegion(CellRangeAddress region, SpreadsheetVersion version) {
+    if (region.getNumberOfCells() < 2) {
+      throw new IllegalArgumentException("セル結合 " + region.formatAsString() + " は2セル以上の範囲を指定してください。");
+    }
+    region.validate(version);
+  }
+
+  /**
+   * シートのXSSFSheetを取得する
+   *
+   * @param sheet シート
+   * @return XSSFSheet(ストリーミング方式の場合は内部のシート)。xlsx形式でない場合はnull
+   */
+  private static XSSFSheet getXSSFSheet(Sheet sheet) {
+    if (sheet instanceof XSSFSheet xssfSheet) {
+      return xssfSheet;
+    }
+    if (sheet instanceof SXSSFSheet && sheet.getWorkbook() instanceof SXSSFWorkbook sxssfWorkbook) {
+      return sxssfWorkbook.getXSSFWorkbook().getSheetAt(sxssfWorkbook.getSheetIndex(sheet));
+    }
+    return null;
+  }
+
+}
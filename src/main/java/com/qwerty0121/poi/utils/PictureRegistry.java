@@ -0,0 +1,224 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFFactory;
+import org.apache.poi.xssf.usermodel.XSSFPictureData;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * 画像ファイルのキャッシュと、ワークブックへの画像追加の重複排除を行うクラス<br>
+ * <br>
+ * 画像ファイルの内容は読み込んだ順に保持し、合計サイズが上限を超えた場合は最も長く参照されていないものから破棄する(LRU)。
+ * また、同じワークブックに内容が同じ画像を追加する場合は、追加済みの画像を再利用する。
+ */
+public class PictureRegistry {
+
+  /** 画像ファイルのキャッシュの合計サイズの上限(バイト) */
+  private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+  /** 画像ファイル名 → 画像ファイル(byte配列)。参照順に並ぶ */
+  private static final LinkedHashMap<String, byte[]> PICTURE_CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** キャッシュしている画像ファイルの合計サイズ(バイト) */
+  private static long cachedBytes;
+
+  /**
+   * 読み込んだ画像ファイル(byte配列) → 画像の内容のハッシュ値<br>
+   * NOTE: byte配列は同一性で比較されるため、読み込んだ配列ごとにハッシュ値を1回だけ計算する
+   */
+  private static final Map<byte[], String> PICTURE_HASH_CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /** ワークブック → (画像の内容のハッシュ値 → 画像のインデックス) */
+  private static final Map<Workbook, Map<String, Integer>> PICTURE_INDEX_CACHE = Collections
+      .synchronizedMap(new WeakHashMap<>());
+
+  private PictureRegistry() {
+  }
+
+  /**
+   * 画像ファイルをbyte配列として読み込む<br>
+   * <br>
+   * 一度読み込んだ画像ファイルはキャッシュし、次回以降はファイルを読み込まずに返す。<br>
+   * NOTE: 返却した配列はキャッシュと共有しているため、変更しないこと
+   *
+   * @param fileName ファイル名
+   * @return 画像ファイル(byte配列)
+   * @throws IOException
+   */
+  public static byte[] loadPicture(String fileName) throws IOException {
+    synchronized (PICTURE_CACHE) {
+      var cached = PICTURE_CACHE.get(fileName);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    var picture = PoiSampleUtils.loadPictureAsByteArray(fileName);
+    PICTURE_HASH_CACHE.put(picture, DigestUtils.sha256Hex(picture));
+
+    synchronized (PICTURE_CACHE) {
+      if (picture.length <= MAX_CACHE_BYTES && !PICTURE_CACHE.containsKey(fileName)) {
+        PICTURE_CACHE.put(fileName, picture);
+        cachedBytes += picture.length;
+
+        // 上限を超えた場合は最も長く参照されていない画像ファイルから破棄する
+        var iterator = PICTURE_CACHE.entrySet().iterator();
+        while (cachedBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+          cachedBytes -= iterator.next().getValue().length;
+          iterator.remove();
+        }
+      }
+    }
+    return picture;
+  }
+
+  /**
+   * ワークブックに画像を追加する<br>
+   * <br>
+   * 内容が同じ画像が既にワークブックに存在する場合は追加せず、既存の画像のインデックスを返す。
+   * そのため、同じ画像を何度配置しても画像ファイルのパートは1つだけとなる。
+   * {@link #loadPicture(String)}で読み込んだ画像は、読み込み時に計算したハッシュ値を使う。
+   *
+   * @param workbook    ワークブック
+   * @param picture     画像(byte配列)
+   * @param pictureType 画像の種別({@link Workbook#PICTURE_TYPE_PNG}など)
+   * @return 画像のインデックス
+   */
+  public static int addPicture(Workbook workbook, byte[] picture, int pictureType) {
+    var pictureIndexes = PICTURE_INDEX_CACHE.computeIfAbsent(workbook, PictureRegistry::indexPictures);
+    var xssfWorkbook = getXSSFWorkbook(workbook);
+    synchronized (pictureIndexes) {
+      return pictureIndexes.computeIfAbsent(getHash(picture),
+          hash -> xssfWorkbook != null
+              ? addXSSFPicture(xssfWorkbook, picture, pictureType)
+              : workbook.addPicture(picture, pictureType));
+    }
+  }
+
+  /**
+   * 画像の内容のハッシュ値を取得する
+   *
+   * @param picture 画像(byte配列)
+   * @return 画像の内容のハッシュ値
+   */
+  private static String getHash(byte[] picture) {
+    var hash = PICTURE_HASH_CACHE.get(picture);
+    return hash != null ? hash : DigestUtils.sha256Hex(picture);
+  }
+
+  /**
+   * ワークブックの画像のインデックスを破棄する<br>
+   * <br>
+   * ワークブックから画像ファイルを削除した場合は、削除した画像を再利用しないよう呼び出すこと。
+   * 次回の{@link #addPicture(Workbook, byte[], int)}でワークブックの画像から作成し直す。
+   *
+   * @param workbook ワークブック
+   */
+  public static void invalidate(Workbook workbook) {
+    PICTURE_INDEX_CACHE.remove(workbook);
+  }
+
+  /**
+   * xlsx形式のワークブックに画像を追加する<br>
+   * <br>
+   * NOTE: {@link XSSFWorkbook#addPicture(byte[], int)}は画像の数から画像ファイルのパート名を決めるため、
+   * 画像を削除したワークブックでは既存のパート名と重複して失敗することがある。そのため、未使用のパート名で追加する
+   *
+   * @param workbook    ワークブック
+   * @param picture     画像(byte配列)
+   * @param pictureType 画像の種別({@link Workbook#PICTURE_TYPE_PNG}など)
+   * @return 画像のインデックス
+   */
+  private static int addXSSFPicture(XSSFWorkbook workbook, byte[] picture, int pictureType) {
+    var relation = switch (pictureType) {
+      case Workbook.PICTURE_TYPE_EMF -> XSSFRelation.IMAGE_EMF;
+      case Workbook.PICTURE_TYPE_WMF -> XSSFRelation.IMAGE_WMF;
+      case Workbook.PICTURE_TYPE_PICT -> XSSFRelation.IMAGE_PICT;
+      case Workbook.PICTURE_TYPE_JPEG -> XSSFRelation.IMAGE_JPEG;
+      case Workbook.PICTURE_TYPE_PNG -> XSSFRelation.IMAGE_PNG;
+      case Workbook.PICTURE_TYPE_DIB -> XSSFRelation.IMAGE_DIB;
+      case XSSFWorkbook.PICTURE_TYPE_GIF -> XSSFRelation.IMAGE_GIF;
+      case XSSFWorkbook.PICTURE_TYPE_TIFF -> XSSFRelation.IMAGE_TIFF;
+      case XSSFWorkbook.PICTURE_TYPE_EPS -> XSSFRelation.IMAGE_EPS;
+      case XSSFWorkbook.PICTURE_TYPE_BMP -> XSSFRelation.IMAGE_BMP;
+      case XSSFWorkbook.PICTURE_TYPE_WPG -> XSSFRelation.IMAGE_WPG;
+      default -> throw new IllegalArgumentException("画像の種別(" + pictureType + ")が不正です。");
+    };
+
+    var pictures = workbook.getAllPictures();
+    var partNumber = workbook.getNextPartNumber(relation, pictures.size() + 1);
+    var pictureData = (XSSFPictureData) workbook
+        .createRelationship(relation, XSSFFactory.getInstance(), partNumber, true).getDocumentPart();
+    try (var outputStream = pictureData.getPackagePart().getOutputStream()) {
+      outputStream.write(picture);
+    } catch (IOException e) {
+      throw new UncheckedIOException("画像の追加に失敗しました。", e);
+    }
+    pictures.add(pictureData);
+    return pictures.size() - 1;
+  }
+
+  /**
+   * ワークブックのXSSFWorkbookを取得する
+   *
+   * @param workbook ワークブック
+   * @return XSSFWorkbook(ストリーミング方式の場合は内部のワークブック)。xlsx形式でない場合はnull
+   */
+  private static XSSFWorkbook getXSSFWorkbook(Workbook workbook) {
+    if (workbook instanceof XSSFWorkbook xssfWorkbook) {
+      return xssfWorkbook;
+    }
+    if (workbook instanceof SXSSFWorkbook sxssfWorkbook) {
+      return sxssfWorkbook.getXSSFWorkbook();
+    }
+    return null;
+  }
+
+  /**
+   * ワークブックに既に存在する画像のハッシュ値とインデックスの対応を作成する<br>
+   * <br>
+   * NOTE: 画像ファイルのパートがパッケージから削除された画像(POIの画像の一覧には残る)は再利用しない
+   *
+   * @param workbook ワークブック
+   * @return 画像の内容のハッシュ値 → 画像のインデックス
+   */
+  private static Map<String, Integer> indexPictures(Workbook workbook) {
+    // NOTE: xls形式の画像のインデックスは1始まり(Workbook#addPictureの戻り値と同じ)
+    var firstIndex = workbook instanceof HSSFWorkbook ? 1 : 0;
+    var pictureIndexes = new HashMap<String, Integer>();
+    var pictures = workbook.getAllPictures();
+    for (int i = 0; i < pictures.size(); i++) {
+      if (pictures.get(i) instanceof XSSFPictureData xssfPictureData && isRemoved(xssfPictureData)) {
+        continue;
+      }
+      pictureIndexes.putIfAbsent(DigestUtils.sha256Hex(pictures.get(i).getData()), firstIndex + i);
+    }
+    return pictureIndexes;
+  }
+
+  /**
+   * 画像ファイルのパートがパッケージから削除されているか判定する<br>
+   * <br>
+   * NOTE: 削除したパートと同じパート名で別の画像ファイルが追加されている場合があるため、パート名ではなくパートの同一性で判定する
+   *
+   * @param pictureData 画像
+   * @return 削除されている場合はtrue
+   */
+  private static boolean isRemoved(XSSFPictureData pictureData) {
+    var part = pictureData.getPackagePart();
+    return part.getPackage().getPart(part.getPartName()) != part;
+  }
+
+}
@@ -0,0 +1,558 @@
+package com.qwerty0121.poi.utils;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Units;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+
+/**
+ * ワークブックに追加する画像を、配置先のアンカーの大きさに縮小・再圧縮するクラス<br>
+ * <br>
+ * 画像はアンカーの大きさに合わせて表示されるため、アンカーより大きい画像はワークブックのサイズを増やすだけとなる。
+ * このクラスでは、アンカーのピクセル数(列幅・行の高さから算出)まで画像を縮小し、必要に応じてJPEGまたはパレット形式のPNGに変換する。
+ * 縮小・変換は複数のスレッドで並列に実行し、結果は画像の内容のハッシュ値と縮小後のサイズごとにキャッシュする。
+ * キャッシュは{@value #MAX_CACHE_ENTRIES}件までとし、超えた場合は最も長く参照されていないものから破棄する(LRU)。<br>
+ * NOTE: 画像を拡大することはない。また、縮小も変換も行わない場合や変換後の方が大きい場合は元の画像をそのまま返す<br>
+ * NOTE: 使用後は{@link #close()}を呼び出してスレッドを終了すること
+ */
+public class PictureResizer implements AutoCloseable {
+
+  /**
+   * 変換後の画像形式
+   */
+  public enum OutputFormat {
+    /** 元の画像と同じ形式(縮小のみ行う) */
+    ORIGINAL,
+    /** JPEG(透過部分は白で塗りつぶす) */
+    JPEG,
+    /** パレット形式(256色)のPNG(半透明部分は透明または不透明のいずれかになる) */
+    PALETTE_PNG,
+  }
+
+  /**
+   * 縮小・変換の設定
+   *
+   * @param format      変換後の画像形式
+   * @param jpegQuality JPEGの品質(0.0~1.0)
+   * @param scale       アンカーのピクセル数に対する倍率(拡大表示や印刷で粗くならないよう、1より大きくすることもできる)
+   */
+  public record Options(OutputFormat format, float jpegQuality, double scale) {
+
+    /** 既定の設定(元の画像と同じ形式で、アンカーのピクセル数まで縮小する) */
+    public static final Options DEFAULT = new Options(OutputFormat.ORIGINAL, 0.85f, 1.0);
+
+    public Options {
+      if (jpegQuality < 0 || jpegQuality > 1) {
+        throw new IllegalArgumentException("JPEGの品質は0.0~1.0の範囲で指定してください: " + jpegQuality);
+      }
+      if (scale <= 0) {
+        throw new IllegalArgumentException("倍率は正の値を指定してください: " + scale);
+      }
+    }
+
+  }
+
+  /**
+   * 縮小・変換後の画像
+   *
+   * @param data        画像(byte配列)
+   * @param pictureType 画像の種別({@link Workbook#PICTURE_TYPE_PNG}など)
+   * @param width       幅(ピクセル)
+   * @param height      高さ(ピクセル)
+   */
+  public record ResizedPicture(byte[] data, int pictureType, int width, int height) {
+  }
+
+  /**
+   * キャッシュのキー
+   *
+   * @param hash   画像の内容のハッシュ値
+   * @param width  縮小後の最大の幅(ピクセル)
+   * @param height 縮小後の最大の高さ(ピクセル)
+   */
+  private record CacheKey(String hash, int width, int height) {
+  }
+
+  /** キャッシュする縮小・変換の結果の件数の上限 */
+  private static final int MAX_CACHE_ENTRIES = 256;
+
+  /** パレットの色数 */
+  private static final int PALETTE_SIZE = 256;
+
+  /** パレットの作成時に色を分類する際の1色あたりのビット数 */
+  private static final int BUCKET_BITS = 5;
+
+  /** 縮小・変換の設定 */
+  private final Options options;
+
+  /** 縮小・変換を実行するスレッド */
+  private final ExecutorService executor;
+
+  /** キャッシュのキー → 縮小・変換の結果。参照順に並ぶ */
+  private final LinkedHashMap<CacheKey, Future<ResizedPicture>> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * コンストラクタ
+   *
+   * @param options     縮小・変換の設定
+   * @param parallelism 並列数
+   */
+  public PictureResizer(Options options, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("並列数は1以上を指定してください: " + parallelism);
+    }
+    this.options = options;
+    var threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      var thread = new Thread(runnable, "picture-resizer-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 画像をアンカーの大きさに縮小してワークブックに追加する<br>
+   * <br>
+   * 縮小後の画像は{@link PictureRegistry#addPicture(Workbook, byte[], int)}で追加するため、
+   * 同じ画像を同じ大きさのアンカーに配置する場合は画像ファイルのパートを共有する。
+   *
+   * @param sheet   画像を配置するシート
+   * @param anchor  画像のアンカー
+   * @param picture 画像(PNGまたはJPEG)
+   * @return 画像のインデックス
+   * @throws IOException
+   */
+  public int addPicture(Sheet sheet, ClientAnchor anchor, byte[] picture) throws IOException {
+    var anchorSize = getAnchorSize(sheet, anchor);
+    var resized = resize(picture, anchorSize.width, anchorSize.height);
+    return PictureRegistry.addPicture(sheet.getWorkbook(), resized.data(), resized.pictureType());
+  }
+
+  /**
+   * 画像を縮小・変換する(完了するまで待機する)
+   *
+   * @param picture 画像(PNGまたはJPEG)
+   * @param width   アンカーの幅(ピクセル)
+   * @param height  アンカーの高さ(ピクセル)
+   * @return 縮小・変換後の画像
+   * @throws IOException
+   */
+  public ResizedPicture resize(byte[] picture, int width, int height) throws IOException {
+    var key = createCacheKey(picture, width, height);
+    try {
+      return submit(key, picture).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("画像の縮小中に割り込まれました。");
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException ioException ? ioException
+          : new IOException("画像の縮小に失敗しました。", e.getCause());
+    }
+  }
+
+  /**
+   * 画像の縮小・変換を開始する<br>
+   * <br>
+   * 複数の画像を配置する場合は、先に全ての画像の縮小・変換を開始してから結果を取得すると並列に実行される。
+   *
+   * @param picture 画像(PNGまたはJPEG)
+   * @param width   アンカーの幅(ピクセル)
+   * @param height  アンカーの高さ(ピクセル)
+   * @return 縮小・変換後の画像
+   */
+  public Future<ResizedPicture> submit(byte[] picture, int width, int height) {
+    return submit(createCacheKey(picture, width, height), picture);
+  }
+
+  /**
+   * アンカーの大きさ(ピクセル)を列幅・行の高さから算出する<br>
+   * <br>
+   * NOTE: セル内の位置(dx・dy)はxlsx形式のアンカーの場合のみ考慮する
+   *
+   * @param sheet  シート
+   * @param anchor アンカー
+   * @return アンカーの大きさ(ピクセル)
+   */
+  public static Dimension getAnchorSize(Sheet sheet, ClientAnchor anchor) {
+    double width = 0;
+    for (int columnIndex = anchor.getCol1(); columnIndex < anchor.getCol2(); columnIndex++) {
+      width += sheet.getColumnWidthInPixels(columnIndex);
+    }
+    double heightInPoints = 0;
+    for (int rowIndex = anchor.getRow1(); rowIndex < anchor.getRow2(); rowIndex++) {
+      var row = sheet.getRow(rowIndex);
+      heightInPoints += row == null ? sheet.getDefaultRowHeightInPoints() : row.getHeightInPoints();
+    }
+    var height = Units.pointsToPixel(heightInPoints);
+
+    if (anchor instanceof XSSFClientAnchor) {
+      width += (double) (anchor.getDx2() - anchor.getDx1()) / Units.EMU_PER_PIXEL;
+      height += (double) (anchor.getDy2() - anchor.getDy1()) / Units.EMU_PER_PIXEL;
+    }
+    return new Dimension(Math.max(1, (int) Math.ceil(width)), Math.max(1, (int) Math.ceil(height)));
+  }
+
+  /**
+   * スレッドを終了する(実行中の縮小・変換は完了を待たない)
+   */
+  @Override
+  public void close() {
+    // NOTE: 開始していない縮小・変換は取り消し、結果を待機している呼び出し元に通知する
+    for (var runnable : executor.shutdownNow()) {
+      if (runnable instanceof Future<?> future) {
+        future.cancel(false);
+      }
+    }
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * キャッシュのキーを作成する
+   *
+   * @param picture 画像
+   * @param width   アンカーの幅(ピクセル)
+   * @param height  アンカーの高さ(ピクセル)
+   * @return キャッシュのキー
+   */
+  private CacheKey createCacheKey(byte[] picture, int width, int height) {
+    return new CacheKey(DigestUtils.sha256Hex(picture),
+        Math.max(1, (int) Math.ceil(width * options.scale())),
+        Math.max(1, (int) Math.ceil(height * options.scale())));
+  }
+
+  /**
+   * キャッシュにない場合のみ画像の縮小・変換を開始する<br>
+   * <br>
+   * NOTE: 失敗した結果はキャッシュしない(失敗した時点でキャッシュから取り除く)
+   *
+   * @param key     キャッシュのキー
+   * @param picture 画像
+   * @return 縮小・変換後の画像
+   */
+  private Future<ResizedPicture> submit(CacheKey key, byte[] picture) {
+    FutureTask<ResizedPicture> task;
+    synchronized (cache) {
+      var cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+
+      task = new FutureTask<>(() -> process(picture, key.width(), key.height())) {
+        @Override
+        protected void setException(Throwable t) {
+          synchronized (cache) {
+            cache.remove(key, this);
+          }
+          super.setException(t);
+        }
+      };
+      cache.put(key, task);
+
+      // 上限を超えた場合は最も長く参照されていない結果から破棄する
+      var iterator = cache.entrySet().iterator();
+      while (cache.size() > MAX_CACHE_ENTRIES && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * 画像を縮小・変換する
+   *
+   * @param picture   画像
+   * @param maxWidth  縮小後の最大の幅(ピクセル)
+   * @param maxHeight 縮小後の最大の高さ(ピクセル)
+   * @return 縮小・変換後の画像
+   * @throws IOException
+   */
+  private ResizedPicture process(byte[] picture, int maxWidth, int maxHeight) throws IOException {
+    var sourcePictureType = getPictureType(picture);
+    var image = ImageIO.read(new ByteArrayInputStream(picture));
+    if (image == null) {
+      throw new IOException("画像を読み込めません。");
+    }
+
+    var width = Math.min(image.getWidth(), maxWidth);
+    var height = Math.min(image.getHeight(), maxHeight);
+    var resizing = width != image.getWidth() || height != image.getHeight();
+    if (!resizing && options.format() == OutputFormat.ORIGINAL) {
+      return new ResizedPicture(picture, sourcePictureType, width, height);
+    }
+
+    var resizedImage = resizing ? scale(image, width, height) : image;
+    ResizedPicture resized;
+    switch (options.format()) {
+      case JPEG:
+        resized = new ResizedPicture(writeJpeg(resizedImage, options.jpegQuality()), Workbook.PICTURE_TYPE_JPEG,
+            width, height);
+        break;
+      case PALETTE_PNG:
+        resized = new ResizedPicture(writePng(toPaletteImage(resizedImage)), Workbook.PICTURE_TYPE_PNG, width, height);
+        break;
+      default:
+        var data = sourcePictureType == Workbook.PICTURE_TYPE_JPEG
+            ? writeJpeg(resizedImage, options.jpegQuality())
+            : writePng(resizedImage);
+        resized = new ResizedPicture(data, sourcePictureType, width, height);
+        break;
+    }
+
+    // 縮小せずに変換した結果が元の画像より大きい場合は、元の画像をそのまま使う
+    if (!resizing && resized.data().length >= picture.length) {
+      return new ResizedPicture(picture, sourcePictureType, width, height);
+    }
+    return resized;
+  }
+
+  /**
+   * 画像の内容から画像の種別を判定する
+   *
+   * @param picture 画像
+   * @return 画像の種別({@link Workbook#PICTURE_TYPE_PNG}または{@link Workbook#PICTURE_TYPE_JPEG})
+   * @throws IOException PNG・JPEG以外の場合
+   */
+  private static int getPictureType(byte[] picture) throws IOException {
+    switch (FileMagic.valueOf(picture)) {
+      case PNG:
+        return Workbook.PICTURE_TYPE_PNG;
+      case JPEG:
+        return Workbook.PICTURE_TYPE_JPEG;
+      default:
+        throw new IOException("対応していない画像形式です(PNGまたはJPEGを指定してください)。");
+    }
+  }
+
+  /**
+   * 画像を縮小する<br>
+   * <br>
+   * 一度に大きく縮小すると画素が間引かれて粗くなるため、縦横を半分ずつ縮小してから最後に指定の大きさにする。
+   *
+   * @param image  画像
+   * @param width  縮小後の幅
+   * @param height 縮小後の高さ
+   * @return 縮小後の画像
+   */
+  private static BufferedImage scale(BufferedImage image, int width, int height) {
+    var imageType = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    var current = image;
+    do {
+      var nextWidth = Math.max(width, current.getWidth() / 2);
+      var nextHeight = Math.max(height, current.getHeight() / 2);
+      var next = new BufferedImage(nextWidth, nextHeight, imageType);
+      var graphics = next.createGraphics();
+      try {
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+      } finally {
+        graphics.dispose();
+      }
+      current = next;
+    } while (current.getWidth() != width || current.getHeight() != height);
+    return current;
+  }
+
+  /**
+   * 画像をパレット形式(256色)に変換する<br>
+   * <br>
+   * 色を各色5ビットに分類して出現数の多い順にパレットの色とし(分類ごとの平均色)、各画素を最も近いパレットの色に置き換える。
+   * 不透明度が半分未満の画素は透明色とする。
+   *
+   * @param image 画像
+   * @return パレット形式の画像
+   */
+  private static BufferedImage toPaletteImage(BufferedImage image) {
+    var width = image.getWidth();
+    var height = image.getHeight();
+    var pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+    // 色を分類して出現数と色の合計を数える
+    var bucketCount = 1 << (BUCKET_BITS * 3);
+    var counts = new int[bucketCount];
+    var sums = new long[bucketCount * 3];
+    var hasTransparent = false;
+    for (var pixel : pixels) {
+      if ((pixel >>> 24) < 0x80) {
+        hasTransparent = true;
+        continue;
+      }
+      var bucket = toBucket(pixel);
+      counts[bucket]++;
+      sums[bucket * 3] += (pixel >> 16) & 0xff;
+      sums[bucket * 3 + 1] += (pixel >> 8) & 0xff;
+      sums[bucket * 3 + 2] += pixel & 0xff;
+    }
+
+    // 出現数の多い分類から順にパレットの色とする
+    // NOTE: 出現数を上位、分類を下位のビットに詰めてソートする
+    var sortKeys = new long[bucketCount];
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      sortKeys[bucket] = ((long) counts[bucket] << 32) | bucket;
+    }
+    Arrays.sort(sortKeys);
+    var firstColorIndex = hasTransparent ? 1 : 0;
+    var reds = new byte[PALETTE_SIZE];
+    var greens = new byte[PALETTE_SIZE];
+    var blues = new byte[PALETTE_SIZE];
+    var paletteSize = firstColorIndex;
+    for (int i = bucketCount - 1; i >= 0 && paletteSize < PALETTE_SIZE; i--) {
+      var bucket = (int) sortKeys[i];
+      var count = counts[bucket];
+      if (count == 0) {
+        break;
+      }
+      reds[paletteSize] = (byte) (sums[bucket * 3] / count);
+      greens[paletteSize] = (byte) (sums[bucket * 3 + 1] / count);
+      blues[paletteSize] = (byte) (sums[bucket * 3 + 2] / count);
+      paletteSize++;
+    }
+    paletteSize = Math.max(paletteSize, 1);
+    var colorModel = hasTransparent
+        ? new IndexColorModel(8, paletteSize, reds, greens, blues, 0)
+        : new IndexColorModel(8, paletteSize, reds, greens, blues);
+
+    // 各画素を最も近いパレットの色に置き換える(分類ごとに一度だけ探索する)
+    var paletteImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+    var indexes = ((DataBufferByte) paletteImage.getRaster().getDataBuffer()).getData();
+    var nearestIndexes = new int[bucketCount];
+    Arrays.fill(nearestIndexes, -1);
+    for (int i = 0; i < pixels.length; i++) {
+      var pixel = pixels[i];
+      if ((pixel >>> 24) < 0x80) {
+        indexes[i] = 0;
+        continue;
+      }
+      var bucket = toBucket(pixel);
+      if (nearestIndexes[bucket] < 0) {
+        nearestIndexes[bucket] = findNearestColor(pixel, reds, greens, blues, firstColorIndex, paletteSize);
+      }
+      indexes[i] = (byte) nearestIndexes[bucket];
+    }
+    return paletteImage;
+  }
+
+  /**
+   * 色の分類を取得する
+   *
+   * @param pixel 色(ARGB)
+   * @return 色の分類(各色の上位5ビットを連結した値)
+   */
+  private static int toBucket(int pixel) {
+    var shift = 8 - BUCKET_BITS;
+    return (((pixel >> 16) & 0xff) >> shift) << (BUCKET_BITS * 2)
+        | (((pixel >> 8) & 0xff) >> shift) << BUCKET_BITS
+        | ((pixel & 0xff) >> shift);
+  }
+
+  /**
+   * パレットから最も近い色を探す
+   *
+   * @param pixel           色(ARGB)
+   * @param reds            パレットの赤
+   * @param greens          パレットの緑
+   * @param blues           パレットの青
+   * @param firstColorIndex 探索を開始するパレットのインデックス(透明色を除く)
+   * @param paletteSize     パレットの色数
+   * @return パレットのインデックス
+   */
+  private static int findNearestColor(int pixel, byte[] reds, byte[] greens, byte[] blues, int firstColorIndex,
+      int paletteSize) {
+    var red = (pixel >> 16) & 0xff;
+    var green = (pixel >> 8) & 0xff;
+    var blue = pixel & 0xff;
+    var nearestIndex = firstColorIndex;
+    var nearestDistance = Integer.MAX_VALUE;
+    for (int i = firstColorIndex; i < paletteSize; i++) {
+      var dr = red - (reds[i] & 0xff);
+      var dg = green - (greens[i] & 0xff);
+      var db = blue - (blues[i] & 0xff);
+      var distance = dr * dr + dg * dg + db * db;
+      if (distance < nearestDistance) {
+        nearestIndex = i;
+        nearestDistance = distance;
+      }
+    }
+    return nearestIndex;
+  }
+
+  /**
+   * 画像をJPEGとして出力する(透過部分は白で塗りつぶす)
+   *
+   * @param image   画像
+   * @param quality 品質(0.0~1.0)
+   * @return 画像(byte配列)
+   * @throws IOException
+   */
+  private static byte[] writeJpeg(BufferedImage image, float quality) throws IOException {
+    var rgbImage = image;
+    if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+      rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+      var graphics = rgbImage.createGraphics();
+      try {
+        graphics.drawImage(image, 0, 0, Color.WHITE, null);
+      } finally {
+        graphics.dispose();
+      }
+    }
+
+    var writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    var os = new ByteArrayOutputStream();
+    try (var ios = ImageIO.createImageOutputStream(os)) {
+      var param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      writer.setOutput(ios);
+      writer.write(null, new IIOImage(rgbImage, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * 画像をPNGとして出力する
+   *
+   * @param image 画像
+   * @return 画像(byte配列)
+   * @throws IOException
+   */
+  private static byte[] writePng(BufferedImage image) throws IOException {
+    var os = new ByteArrayOutputStream();
+    if (!ImageIO.write(image, "png", os)) {
+      throw new IOException("PNGの出力に失敗しました。");
+    }
+    return os.toByteArray();
+  }
+
+}
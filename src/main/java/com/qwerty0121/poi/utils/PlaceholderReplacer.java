@@ -0,0 +1,319 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFShape;
+import org.apache.poi.xssf.usermodel.XSSFShapeGroup;
+import org.apache.poi.xssf.usermodel.XSSFSimpleShape;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+/**
+ * 複数のプレースホルダーを一度に置換するクラス<br>
+ * <br>
+ * 置換対象の文字列はAho-Corasick法のオートマトンにまとめておき、テキストを1回走査するだけで全てのプレースホルダーを検出する。
+ * 同じ位置から複数のプレースホルダーが始まる場合は最も長いものを、重なる場合は先に始まるものを優先する。<br>
+ * 図形のテキストやセルのリッチテキストのように書式ごとに分割されたテキスト(テキストラン)は連結してから検出するため、
+ * Excelによって複数のテキストランに分割されたプレースホルダーも置換できる。
+ * 置換後の文字列はプレースホルダーが始まるテキストランに設定し、後続のテキストランからはプレースホルダーの残りの部分を削除する。
+ */
+public class PlaceholderReplacer {
+
+  /** ノード → (文字 → 遷移先のノード) */
+  private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+
+  /** ノード → 失敗時の遷移先のノード */
+  private final int[] failures;
+
+  /** ノード → そのノードで終わる最も長いプレースホルダーの番号(存在しない場合は-1) */
+  private final int[] outputs;
+
+  /** ノード → 接尾辞をたどって最初に見つかるプレースホルダーで終わるノード(存在しない場合は-1) */
+  private final int[] outputLinks;
+
+  /** プレースホルダーの番号 → プレースホルダー */
+  private final String[] placeholders;
+
+  /** プレースホルダーの番号 → 置換後の文字列 */
+  private final String[] replacements;
+
+  /**
+   * コンストラクタ
+   *
+   * @param replacements プレースホルダー → 置換後の文字列
+   */
+  public PlaceholderReplacer(Map<String, String> replacements) {
+    this.placeholders = new String[replacements.size()];
+    this.replacements = new String[replacements.size()];
+
+    // プレースホルダーのトライ木を作成する
+    transitions.add(new HashMap<>());
+    var nodeOutputs = new ArrayList<Integer>(List.of(-1));
+    var index = 0;
+    for (var entry : replacements.entrySet()) {
+      if (entry.getKey().isEmpty()) {
+        throw new IllegalArgumentException("空文字列はプレースホルダーに指定できません。");
+      }
+      placeholders[index] = entry.getKey();
+      this.replacements[index] = entry.getValue() != null ? entry.getValue() : "";
+
+      var node = 0;
+      for (var c : entry.getKey().toCharArray()) {
+        var next = transitions.get(node).get(c);
+        if (next == null) {
+          next = transitions.size();
+          transitions.add(new HashMap<>());
+          nodeOutputs.add(-1);
+          transitions.get(node).put(c, next);
+        }
+        node = next;
+      }
+      nodeOutputs.set(node, index);
+      index++;
+    }
+
+    // 幅優先で失敗時の遷移先を設定する
+    failures = new int[transitions.size()];
+    outputs = nodeOutputs.stream().mapToInt(Integer::intValue).toArray();
+    outputLinks = new int[transitions.size()];
+    Arrays.fill(outputLinks, -1);
+    var queue = new ArrayDeque<Integer>(transitions.get(0).values());
+    while (!queue.isEmpty()) {
+      var node = queue.poll();
+      for (var transition : transitions.get(node).entrySet()) {
+        var child = transition.getValue();
+        var failure = failures[node];
+        while (failure != 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+          failure = failures[failure];
+        }
+        var failureChild = transitions.get(failure).get(transition.getKey());
+        failures[child] = failureChild != null && failureChild != child ? failureChild : 0;
+        outputLinks[child] = outputs[failures[child]] >= 0 ? failures[child] : outputLinks[failures[child]];
+        queue.add(child);
+      }
+    }
+  }
+
+  /**
+   * テキスト内のプレースホルダーを置換する
+   *
+   * @param text テキスト
+   * @return 置換後のテキスト
+   */
+  public String replace(String text) {
+    if (text == null || text.isEmpty()) {
+      return text;
+    }
+    return replaceRuns(List.of(text)).get(0);
+  }
+
+  /**
+   * テキストランに分割されたテキスト内のプレースホルダーを置換する<br>
+   * <br>
+   * テキストランの境界をまたぐプレースホルダーも置換する。
+   * 置換後の文字列はプレースホルダーが始まるテキストランに設定する。
+   *
+   * @param runTexts テキストランごとのテキスト
+   * @return 置換後のテキストランごとのテキスト(要素数は変わらない)
+   */
+  public List<String> replaceRuns(List<String> runTexts) {
+    // テキストランを連結してプレースホルダーを検出する
+    var offsets = new int[runTexts.size() + 1];
+    var text = new StringBuilder();
+    for (int i = 0; i < runTexts.size(); i++) {
+      offsets[i] = text.length();
+      if (runTexts.get(i) != null) {
+        text.append(runTexts.get(i));
+      }
+    }
+    offsets[runTexts.size()] = text.length();
+
+    var matches = findMatches(text);
+    if (matches.isEmpty()) {
+      return runTexts;
+    }
+
+    // テキストランごとにプレースホルダーを置換する
+    var replacedTexts = new ArrayList<String>(runTexts.size());
+    var matchIndex = 0;
+    for (int i = 0; i < runTexts.size(); i++) {
+      var runEnd = offsets[i + 1];
+      var replacedText = new StringBuilder();
+      var position = offsets[i];
+      while (position < runEnd) {
+        // 現在位置より前で終わるプレースホルダーを読み飛ばす
+        while (matchIndex < matches.size() && matches.get(matchIndex).end() <= position) {
+          matchIndex++;
+        }
+
+        var match = matchIndex < matches.size() ? matches.get(matchIndex) : null;
+        if (match != null && match.start() <= position) {
+          // プレースホルダーの先頭であれば置換後の文字列を設定し、プレースホルダーの残りの部分は削除する
+          if (match.start() == position) {
+            replacedText.append(replacements[match.placeholder()]);
+          }
+          position = Math.min(match.end(), runEnd);
+        } else {
+          var next = match != null ? Math.min(match.start(), runEnd) : runEnd;
+          replacedText.append(text, position, next);
+          position = next;
+        }
+      }
+      replacedTexts.add(replacedText.toString());
+    }
+    return replacedTexts;
+  }
+
+  /**
+   * シート内の全ての図形(図形グループ内の図形を含む)のテキストのプレースホルダーを置換する
+   *
+   * @param sheet シート
+   */
+  public void replaceInShapes(Sheet sheet) {
+    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
+      // XSSFDrawingでない場合は図形が存在しないので何もしない
+      return;
+    }
+    xssfDrawing.getShapes().forEach(this::replaceInShape);
+  }
+
+  /**
+   * 図形のテキストのプレースホルダーを置換する<br>
+   * <br>
+   * 図形グループの場合はグループ内の全ての図形を対象とする。
+   * プレースホルダーは段落ごとに検出する。
+   *
+   * @param shape 図形
+   */
+  public void replaceInShape(XSSFShape shape) {
+    if (shape instanceof XSSFShapeGroup shapeGroup) {
+      shapeGroup.getDrawing().getShapes(shapeGroup).forEach(this::replaceInShape);
+      return;
+    }
+    if (!(shape instanceof XSSFSimpleShape simpleShape)) {
+      // テキストを持たない図形は何もしない
+      return;
+    }
+
+    simpleShape.getTextParagraphs().forEach(textParagraph -> {
+      var textRuns = textParagraph.getTextRuns();
+      var replacedTexts = replaceRuns(textRuns.stream().map(textRun -> textRun.getText()).toList());
+      for (int i = 0; i < textRuns.size(); i++) {
+        // NOTE: 変更のないテキストランは設定し直さない
+        if (!Objects.equals(replacedTexts.get(i), textRuns.get(i).getText())) {
+          textRuns.get(i).setText(replacedTexts.get(i));
+        }
+      }
+    });
+  }
+
+  /**
+   * シート内の全ての文字列セルのプレースホルダーを置換する<br>
+   * <br>
+   * セルがリッチテキストの場合は書式ごとの部分を維持したまま置換する。
+   *
+   * @param sheet シート
+   */
+  public void replaceInCells(Sheet sheet) {
+    sheet.forEach(row -> row.forEach(cell -> {
+      if (cell.getCellType() == CellType.STRING && cell instanceof XSSFCell xssfCell) {
+        replaceInCell(xssfCell);
+      }
+    }));
+  }
+
+  /**
+   * セルのプレースホルダーを置換する
+   *
+   * @param cell セル(文字列セル)
+   */
+  public void replaceInCell(XSSFCell cell) {
+    var richText = cell.getRichStringCellValue();
+    var ctRst = richText.getCTRst();
+    if (ctRst.sizeOfRArray() == 0) {
+      // 書式の設定がない場合は文字列として置換する
+      var text = richText.getString();
+      var replacedText = replace(text);
+      if (!replacedText.equals(text)) {
+        cell.setCellValue(replacedText);
+      }
+      return;
+    }
+
+    var runTexts = Arrays.stream(ctRst.getRArray()).map(run -> run.getT()).toList();
+    var replacedTexts = replaceRuns(runTexts);
+    if (replacedTexts.equals(runTexts)) {
+      return;
+    }
+
+    // NOTE: 共有文字列の実体を変更しないよう、複製したリッチテキストを変更してセルに設定する
+    var newCtRst = (CTRst) ctRst.copy();
+    for (int i = 0; i < replacedTexts.size(); i++) {
+      newCtRst.getRArray(i).setT(replacedTexts.get(i));
+    }
+    cell.setCellValue(new XSSFRichTextString(newCtRst));
+  }
+
+  /**
+   * テキスト内のプレースホルダーを検出する
+   *
+   * @param text テキスト
+   * @return 検出したプレースホルダー(開始位置の昇順、互いに重ならない)
+   */
+  private List<Match> findMatches(CharSequence text) {
+    var matches = new ArrayList<Match>();
+    var node = 0;
+    for (int i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      Integer next;
+      while ((next = transitions.get(node).get(c)) == null && node != 0) {
+        node = failures[node];
+      }
+      node = next != null ? next : 0;
+
+      // 現在位置で終わる全てのプレースホルダーを記録する
+      for (var outputNode = outputs[node] >= 0 ? node : outputLinks[node]; outputNode >= 0;
+          outputNode = outputLinks[outputNode]) {
+        var placeholder = outputs[outputNode];
+        matches.add(new Match(i + 1 - placeholders[placeholder].length(), i + 1, placeholder));
+      }
+    }
+    if (matches.isEmpty()) {
+      return matches;
+    }
+
+    // 先に始まるもの、同じ位置から始まる場合は長いものを優先して、重ならないものだけを残す
+    matches.sort(Comparator.comparingInt(Match::start).thenComparing(Comparator.comparingInt(Match::end).reversed()));
+    var selectedMatches = new ArrayList<Match>();
+    var lastEnd = 0;
+    for (var match : matches) {
+      if (match.start() >= lastEnd) {
+        selectedMatches.add(match);
+        lastEnd = match.end();
+      }
+    }
+    return selectedMatches;
+  }
+
+  /**
+   * 検出したプレースホルダー
+   *
+   * @param start       開始位置
+   * @param end         終了位置(この位置の文字は含まない)
+   * @param placeholder プレースホルダーの番号
+   */
+  private record Match(int start, int end, int placeholder) {
+  }
+
+}
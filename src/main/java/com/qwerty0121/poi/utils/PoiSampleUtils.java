@@ -1,54 +1,209 @@
 package com.qwerty0121.poi.utils;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.xssf.usermodel.XSSFDrawing;
 import org.apache.poi.xssf.usermodel.XSSFShape;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTNonVisualDrawingProps;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTAbsoluteAnchor;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTConnector;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTGraphicalObjectFrame;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTGroupShape;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTOneCellAnchor;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTPicture;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTShape;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTTwoCellAnchor;
 
 public class PoiSampleUtils {
 
+  /** ファイルを直接参照して読み込むテンプレートファイルのサイズの下限(バイト) */
+  private static final long FILE_BACKED_TEMPLATE_MIN_BYTES = 16L * 1024 * 1024;
+
+  /** 出力先のディレクトリ(未作成の場合はnull) */
+  private static volatile Path outputDir;
+
   /**
-   * テンプレートファイルをWorkbookとして読み込む
+   * テンプレートファイルをWorkbookとして読み込む<br>
+   * <br>
+   * テンプレートファイルがファイルシステム上にあり、サイズが{@value #FILE_BACKED_TEMPLATE_MIN_BYTES}バイト以上の場合は、
+   * ファイルを直接参照して読み込む({@link #loadTemplateWorkbook(Path)})。
+   * それ以外の場合(jarに含まれる場合など)はテンプレートファイルの内容を{@link TemplateCache}にキャッシュし、キャッシュした内容から毎回新しいWorkbookを作成する。<br>
+   * NOTE: キャッシュで省けるのはファイルの読み込みのみで、XMLの解析は呼び出しごとに行われる
    * 
    * @param templateFileName テンプレートファイル名
    * @return Workbook
    * @throws IOException
    */
   public static Workbook loadTemplateWorkbook(String templateFileName) throws IOException {
-    try (
-        var templateFileIS = PoiSampleUtils.class.getClassLoader()
-            .getResourceAsStream(templateFileName);) {
-      if (templateFileIS == null) {
-        throw new FileNotFoundException("テンプレートファイルが見つかりません: " + templateFileName);
-      }
-      var workbook = WorkbookFactory.create(templateFileIS);
-      return workbook;
+    var templateFile = findLargeTemplateFile(templateFileName);
+    if (templateFile != null) {
+      return loadTemplateWorkbook(templateFile);
+    }
+
+    var template = TemplateCache.getTemplate(templateFileName);
+    return WorkbookFactory.create(new ByteArrayInputStream(template));
+  }
+
+  /**
+   * テンプレートファイルを直接参照してWorkbookとして読み込む<br>
+   * <br>
+   * ストリームから読み込む場合と異なり、ZIPのエントリをメモリ上に保持せずファイルから必要な時に読み込む。
+   * 読み込んだWorkbookを閉じてもテンプレートファイルは変更されない。<br>
+   * NOTE: Workbookを閉じるまでテンプレートファイルは開いたままとなる
+   * 
+   * @param templateFile テンプレートファイル
+   * @return Workbook
+   * @throws IOException
+   */
+  public static Workbook loadTemplateWorkbook(Path templateFile) throws IOException {
+    if (FileMagic.valueOf(templateFile.toFile()) == FileMagic.OOXML) {
+      return FileBackedXSSFWorkbook.open(templateFile);
+    }
+
+    // xls形式は読み取り専用で開く(閉じる際にテンプレートファイルへ書き戻されない)
+    return WorkbookFactory.create(templateFile.toFile(), null, true);
+  }
+
+  /**
+   * テンプレートファイルをOPCパッケージとして読み込む<br>
+   * <br>
+   * Workbookとして読み込む場合と異なり、シートのXMLは解析されない。
+   * テンプレートファイルがファイルシステム上にあり、サイズが{@value #FILE_BACKED_TEMPLATE_MIN_BYTES}バイト以上の場合は、
+   * ファイルを直接参照して読み込む({@link #openTemplatePackage(Path)})。
+   * それ以外の場合はテンプレートファイルの内容を{@link TemplateCache}にキャッシュし、キャッシュした内容から毎回新しいOPCパッケージを作成する。
+   * 
+   * @param templateFileName テンプレートファイル名
+   * @return OPCパッケージ
+   * @throws IOException
+   */
+  public static OPCPackage openTemplatePackage(String templateFileName) throws IOException {
+    var templateFile = findLargeTemplateFile(templateFileName);
+    if (templateFile != null) {
+      return openTemplatePackage(templateFile);
+    }
+
+    var template = TemplateCache.getTemplate(templateFileName);
+    try {
+      return OPCPackage.open(new ByteArrayInputStream(template));
+    } catch (InvalidFormatException e) {
+      throw new IOException("テンプレートファイルの読み込みに失敗しました: " + templateFileName, e);
     }
   }
 
   /**
-   * Workbookを指定したファイル名を出力する
+   * テンプレートファイルを直接参照してOPCパッケージとして読み込む<br>
+   * <br>
+   * 読み取り専用で開くため、OPCパッケージを閉じてもテンプレートファイルは変更されない。
+   * 
+   * @param templateFile テンプレートファイル
+   * @return OPCパッケージ(読み取り専用)
+   * @throws IOException
+   */
+  public static OPCPackage openTemplatePackage(Path templateFile) throws IOException {
+    try {
+      return OPCPackage.open(templateFile.toFile(), PackageAccess.READ);
+    } catch (InvalidFormatException e) {
+      throw new IOException("テンプレートファイルの読み込みに失敗しました: " + templateFile, e);
+    }
+  }
+
+  /**
+   * テンプレートファイル(xls形式)をPOIFSとして読み込む<br>
+   * <br>
+   * Workbookとして読み込む場合と異なり、シートのレコードは解析されない。
+   * テンプレートファイルがファイルシステム上にあり、サイズが{@value #FILE_BACKED_TEMPLATE_MIN_BYTES}バイト以上の場合は、
+   * ファイルを直接参照して読み込む({@link #openTemplateFileSystem(Path)})。
+   * それ以外の場合はテンプレートファイルの内容を{@link TemplateCache}にキャッシュし、キャッシュした内容から毎回新しいPOIFSを作成する。
+   * 
+   * @param templateFileName テンプレートファイル名
+   * @return POIFS
+   * @throws IOException
+   */
+  public static POIFSFileSystem openTemplateFileSystem(String templateFileName) throws IOException {
+    var templateFile = findLargeTemplateFile(templateFileName);
+    if (templateFile != null) {
+      return openTemplateFileSystem(templateFile);
+    }
+
+    var template = TemplateCache.getTemplate(templateFileName);
+    return new POIFSFileSystem(new ByteArrayInputStream(template));
+  }
+
+  /**
+   * テンプレートファイル(xls形式)を直接参照してPOIFSとして読み込む<br>
+   * <br>
+   * 読み取り専用で開くため、POIFSを閉じてもテンプレートファイルは変更されない。
+   * 
+   * @param templateFile テンプレートファイル
+   * @return POIFS(読み取り専用)
+   * @throws IOException
+   */
+  public static POIFSFileSystem openTemplateFileSystem(Path templateFile) throws IOException {
+    return new POIFSFileSystem(templateFile.toFile(), true);
+  }
+
+  /**
+   * ファイルを直接参照して読み込むテンプレートファイルを取得する
+   * 
+   * @param templateFileName テンプレートファイル名
+   * @return テンプレートファイル。ファイルシステム上にない場合、またはサイズが小さい場合はnull
+   * @throws IOException
+   */
+  private static Path findLargeTemplateFile(String templateFileName) throws IOException {
+    var resource = PoiSampleUtils.class.getClassLoader().getResource(templateFileName);
+    if (resource == null || !"file".equals(resource.getProtocol())) {
+      return null;
+    }
+
+    Path templateFile;
+    try {
+      templateFile = Path.of(resource.toURI());
+    } catch (URISyntaxException e) {
+      throw new IOException("テンプレートファイルのパスが不正です: " + resource, e);
+    }
+    return Files.size(templateFile) >= FILE_BACKED_TEMPLATE_MIN_BYTES ? templateFile : null;
+  }
+
+  /**
+   * Workbookを指定したファイル名を出力する<br>
+   * <br>
+   * 一時ファイルに出力してからファイル名を変更するため、出力に失敗しても書きかけのファイルは残らない。
    * 
    * @param workbook Workbook
    * @throws IOException
    * @throws FileNotFoundException
    */
   public static void writeWorkbook(Workbook workbook, String fileName) throws IOException, FileNotFoundException {
-    File outputFileDir = getOrCreateOutputDir();
+    writeWorkbook(workbook, fileName, new WorkbookWriter());
+  }
 
-    var outputFilePath = outputFileDir.toPath().resolve(fileName);
-    try (var os = new FileOutputStream(outputFilePath.toString());) {
-      workbook.write(os);
-    }
+  /**
+   * Workbookを指定したファイル名と出力方法(圧縮レベル・並列数)で出力する
+   * 
+   * @param workbook Workbook
+   * @param fileName ファイル名
+   * @param writer   出力方法
+   * @return 出力結果(出力のスループットなど)
+   * @throws IOException
+   */
+  public static WorkbookWriter.WriteResult writeWorkbook(Workbook workbook, String fileName, WorkbookWriter writer)
+      throws IOException {
+    return writer.write(workbook, getOrCreateOutputDir().resolve(fileName));
   }
 
   /**
@@ -66,28 +221,109 @@ public class PoiSampleUtils {
   }
 
   /**
-   * 図形名をもとにシート内の図形を取得
+   * 図形名をもとにシート内の図形を取得<br>
+   * <br>
+   * 図形グループ内の図形も対象とする。
+   * NOTE: 呼び出しごとに図形を走査する(見つかった時点で終える)ため、同じシートで繰り返し検索する場合は{@link ShapeIndex}を作成して使い回すこと
    * 
    * @param sheet     シート
    * @param shapeName 図形名
    * @return 図形
    */
   public static XSSFShape getShapeByName(Sheet sheet, String shapeName) {
-    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
-      // XSSFDrawingでない場合は取得できないのでnullを返す
-      return null;
+    // NOTE: XSSFDrawingでない場合はnullを返す
+    return ShapeIndex.find(sheet, shape -> StringUtils.equals(shape.getShapeName(), shapeName));
+  }
+
+  /**
+   * 図形IDをもとにシート内の図形を取得<br>
+   * <br>
+   * 図形グループ内の図形も対象とする。
+   * NOTE: 呼び出しごとに図形を走査する(見つかった時点で終える)ため、同じシートで繰り返し検索する場合は{@link ShapeIndex}を作成して使い回すこと
+   * 
+   * @param sheet   シート
+   * @param shapeId 図形ID
+   * @return 図形
+   */
+  public static XSSFShape getShapeById(Sheet sheet, long shapeId) {
+    // NOTE: XSSFDrawingでない場合はnullを返す
+    return ShapeIndex.find(sheet, shape -> {
+      var nonVisualProperties = ShapeIndex.getNonVisualProperties(shape);
+      return nonVisualProperties != null && nonVisualProperties.getId() == shapeId;
+    });
+  }
+
+  /**
+   * アンカー内の図形の非表示プロパティ(図形名・図形IDなど)を取得する
+   * 
+   * @param anchor アンカー(CTTwoCellAnchor、CTOneCellAnchor、CTAbsoluteAnchorのいずれか)
+   * @return 非表示プロパティ。取得できない場合はnull
+   */
+  public static CTNonVisualDrawingProps getAnchorNonVisualProperties(XmlObject anchor) {
+    if (anchor instanceof CTTwoCellAnchor twoCellAnchor) {
+      return getNonVisualProperties(twoCellAnchor.getSp(), twoCellAnchor.getGrpSp(), twoCellAnchor.getPic(),
+          twoCellAnchor.getCxnSp(), twoCellAnchor.getGraphicFrame());
     }
+    if (anchor instanceof CTOneCellAnchor oneCellAnchor) {
+      return getNonVisualProperties(oneCellAnchor.getSp(), oneCellAnchor.getGrpSp(), oneCellAnchor.getPic(),
+          oneCellAnchor.getCxnSp(), oneCellAnchor.getGraphicFrame());
+    }
+    if (anchor instanceof CTAbsoluteAnchor absoluteAnchor) {
+      return getNonVisualProperties(absoluteAnchor.getSp(), absoluteAnchor.getGrpSp(), absoluteAnchor.getPic(),
+          absoluteAnchor.getCxnSp(), absoluteAnchor.getGraphicFrame());
+    }
+    return null;
+  }
 
-    return xssfDrawing.getShapes().stream()
-        .filter(shape -> StringUtils.equals(shape.getShapeName(), shapeName))
-        .findFirst()
-        .orElse(null);
+  /**
+   * アンカー内の図形の非表示プロパティを取得する
+   * 
+   * @param shape        図形(存在しない場合はnull)
+   * @param groupShape   図形グループ(存在しない場合はnull)
+   * @param picture      画像(存在しない場合はnull)
+   * @param connector    コネクタ(存在しない場合はnull)
+   * @param graphicFrame グラフィックフレーム(存在しない場合はnull)
+   * @return 非表示プロパティ。いずれの図形も存在しない場合はnull
+   */
+  private static CTNonVisualDrawingProps getNonVisualProperties(CTShape shape, CTGroupShape groupShape,
+      CTPicture picture, CTConnector connector, CTGraphicalObjectFrame graphicFrame) {
+    if (shape != null) {
+      return shape.getNvSpPr().getCNvPr();
+    }
+    if (groupShape != null) {
+      return groupShape.getNvGrpSpPr().getCNvPr();
+    }
+    if (picture != null) {
+      return picture.getNvPicPr().getCNvPr();
+    }
+    if (connector != null) {
+      return connector.getNvCxnSpPr().getCNvPr();
+    }
+    if (graphicFrame != null) {
+      return graphicFrame.getNvGraphicFramePr().getCNvPr();
+    }
+    return null;
   }
 
-  private static File getOrCreateOutputDir() {
-    String outputFileDirPath = "./.output/";
-    File outputFileDir = new File(outputFileDirPath);
-    outputFileDir.mkdir();
+  /**
+   * 出力先のディレクトリを取得する<br>
+   * <br>
+   * ディレクトリは初回の呼び出し時にのみ作成する。
+   * 
+   * @return 出力先のディレクトリ
+   * @throws IOException
+   */
+  private static Path getOrCreateOutputDir() throws IOException {
+    var outputFileDir = outputDir;
+    if (outputFileDir == null) {
+      synchronized (PoiSampleUtils.class) {
+        outputFileDir = outputDir;
+        if (outputFileDir == null) {
+          outputFileDir = Files.createDirectories(Path.of("./.output/"));
+          outputDir = outputFileDir;
+        }
+      }
+    }
     return outputFileDir;
   }
 
@@ -0,0 +1,212 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFConnector;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFGraphicFrame;
+import org.apache.poi.xssf.usermodel.XSSFPicture;
+import org.apache.poi.xssf.usermodel.XSSFShape;
+import org.apache.poi.xssf.usermodel.XSSFShapeGroup;
+import org.apache.poi.xssf.usermodel.XSSFSimpleShape;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTNonVisualDrawingProps;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTAbsoluteAnchor;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTOneCellAnchor;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTTwoCellAnchor;
+
+/**
+ * シート内の図形を図形名・図形IDで検索するためのインデックス<br>
+ * <br>
+ * インデックスは作成時に一度だけ図形を走査し、図形グループ内の図形も含める。
+ * 同じシートで図形を繰り返し検索する場合は、インデックスを1つ作成して使い回すこと。<br>
+ * NOTE: インデックスは図形(とそのワークブック)を参照するため、キャッシュせずに呼び出し元で保持すること。
+ * また、図形の追加・削除・重なり順の変更を行った場合は{@link #invalidate()}を呼び出すこと(次回の検索時に作成し直す)
+ */
+public class ShapeIndex {
+
+  /** インデックスを作成するDrawing */
+  private final XSSFDrawing xssfDrawing;
+
+  /** 図形名 → 図形(同名の図形が複数ある場合は最上位の階層に近い図形、同じ階層では先に出現する図形) */
+  private final Map<String, XSSFShape> shapesByName = new HashMap<>();
+
+  /** 図形ID → 図形 */
+  private final Map<Long, XSSFShape> shapesById = new HashMap<>();
+
+  /** インデックスを作成し直す必要がある場合はtrue */
+  private boolean stale;
+
+  /**
+   * シートの図形インデックスを作成する
+   *
+   * @param sheet シート
+   * @return 図形インデックス。シートのDrawingがXSSFDrawingでない場合はnull
+   */
+  public static ShapeIndex of(Sheet sheet) {
+    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
+      // XSSFDrawingでない場合は作成できないのでnullを返す
+      return null;
+    }
+    return new ShapeIndex(xssfDrawing);
+  }
+
+  /**
+   * コンストラクタ
+   *
+   * @param xssfDrawing インデックスを作成するDrawing
+   */
+  private ShapeIndex(XSSFDrawing xssfDrawing) {
+    this.xssfDrawing = xssfDrawing;
+    build();
+  }
+
+  /**
+   * シート内の図形を走査し、条件を満たす最初の図形を取得する<br>
+   * <br>
+   * 図形の優先順位はインデックスと同じ(最上位の階層に近い図形、同じ階層では先に出現する図形)。
+   * インデックスを作成せず、見つかった時点で走査を終えるため、1回だけ検索する場合に使う。
+   *
+   * @param sheet     シート
+   * @param predicate 条件
+   * @return 図形。存在しない場合、またはシートのDrawingがXSSFDrawingでない場合はnull
+   */
+  static XSSFShape find(Sheet sheet, Predicate<XSSFShape> predicate) {
+    if (!(sheet.getDrawingPatriarch() instanceof XSSFDrawing xssfDrawing)) {
+      return null;
+    }
+
+    var queue = new ArrayDeque<XSSFShape>(xssfDrawing.getShapes());
+    while (!queue.isEmpty()) {
+      var shape = queue.poll();
+      if (predicate.test(shape)) {
+        return shape;
+      }
+      if (shape instanceof XSSFShapeGroup shapeGroup) {
+        queue.addAll(xssfDrawing.getShapes(shapeGroup));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * インデックスを破棄する<br>
+   * <br>
+   * 図形の追加・削除・重なり順の変更を行った後に呼び出す。次回の検索時にインデックスを作成し直す。
+   */
+  public void invalidate() {
+    stale = true;
+  }
+
+  /**
+   * 図形名をもとに図形を取得する
+   *
+   * @param shapeName 図形名
+   * @return 図形。存在しない場合はnull
+   */
+  public XSSFShape getByName(String shapeName) {
+    rebuildIfStale();
+    return shapesByName.get(shapeName);
+  }
+
+  /**
+   * 図形IDをもとに図形を取得する
+   *
+   * @param shapeId 図形ID
+   * @return 図形。存在しない場合はnull
+   */
+  public XSSFShape getById(long shapeId) {
+    rebuildIfStale();
+    return shapesById.get(shapeId);
+  }
+
+  /**
+   * 図形名をもとに最上位の階層の図形のアンカーを取得する
+   *
+   * @param shapeName 図形名
+   * @return アンカー(CTTwoCellAnchor、CTOneCellAnchor、CTAbsoluteAnchorのいずれか)。
+   *         存在しない場合、または図形グループ内の図形の場合はnull
+   */
+  public XmlObject getAnchorByName(String shapeName) {
+    var shape = getByName(shapeName);
+    var nonVisualProperties = shape != null ? getNonVisualProperties(shape) : null;
+    if (nonVisualProperties == null) {
+      return null;
+    }
+
+    // cNvPr → 非表示プロパティの親要素(nvSpPrなど) → 図形 → アンカーの順にたどる
+    try (var cursor = nonVisualProperties.newCursor()) {
+      for (int i = 0; i < 3; i++) {
+        if (!cursor.toParent()) {
+          return null;
+        }
+      }
+      var anchor = cursor.getObject();
+      return anchor instanceof CTTwoCellAnchor || anchor instanceof CTOneCellAnchor
+          || anchor instanceof CTAbsoluteAnchor ? anchor : null;
+    }
+  }
+
+  /**
+   * インデックスが破棄されている場合は作成し直す
+   */
+  private void rebuildIfStale() {
+    if (stale) {
+      shapesByName.clear();
+      shapesById.clear();
+      build();
+      stale = false;
+    }
+  }
+
+  /**
+   * Drawingの図形を走査してインデックスを作成する
+   */
+  private void build() {
+    // 図形グループ内の図形よりも上位の階層の図形を優先するため、幅優先で登録する
+    var queue = new ArrayDeque<XSSFShape>(xssfDrawing.getShapes());
+    while (!queue.isEmpty()) {
+      var shape = queue.poll();
+      if (shape.getShapeName() != null) {
+        shapesByName.putIfAbsent(shape.getShapeName(), shape);
+      }
+      var nonVisualProperties = getNonVisualProperties(shape);
+      if (nonVisualProperties != null) {
+        shapesById.putIfAbsent(nonVisualProperties.getId(), shape);
+      }
+      if (shape instanceof XSSFShapeGroup shapeGroup) {
+        queue.addAll(xssfDrawing.getShapes(shapeGroup));
+      }
+    }
+  }
+
+  /**
+   * 図形の非表示プロパティ(図形名・図形IDなど)を取得する
+   *
+   * @param shape 図形
+   * @return 非表示プロパティ。取得できない図形の場合はnull
+   */
+  static CTNonVisualDrawingProps getNonVisualProperties(XSSFShape shape) {
+    if (shape instanceof XSSFSimpleShape simpleShape) {
+      return simpleShape.getCTShape().getNvSpPr().getCNvPr();
+    }
+    if (shape instanceof XSSFShapeGroup shapeGroup) {
+      return shapeGroup.getCTGroupShape().getNvGrpSpPr().getCNvPr();
+    }
+    if (shape instanceof XSSFPicture picture) {
+      return picture.getCTPicture().getNvPicPr().getCNvPr();
+    }
+    if (shape instanceof XSSFConnector connector) {
+      return connector.getCTConnector().getNvCxnSpPr().getCNvPr();
+    }
+    if (shape instanceof XSSFGraphicFrame graphicFrame) {
+      return graphicFrame.getCTGraphicalObjectFrame().getNvGraphicFramePr().getCNvPr();
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.Arrays;
+
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+/**
+ * コピー元のワークブックの共有文字列のインデックスをコピー先のインデックスに変換するクラス<br>
+ * <br>
+ * 変換表はコピー中に使用された共有文字列のみ作成する。
+ * 共有文字列をコピー先に追加するのは文字列ごとに1回のみで、同じ文字列を参照するセルは変換表の参照だけでコピーできる。
+ * 文字列はリッチテキストの書式を含めてコピーする。<br>
+ * NOTE: ふりがなの設定(phoneticPr要素)はコピー元のフォントのインデックスを参照するためコピーしない<br>
+ * NOTE: コピー元とコピー先のワークブックの組み合わせごとにインスタンスを作成すること
+ */
+public class SharedStringRemapper {
+
+  /** コピー元の共有文字列 */
+  private final SharedStrings sourceSharedStrings;
+
+  /** コピー先の共有文字列テーブル */
+  private final SharedStringsTable destinationSharedStrings;
+
+  /** コピー元のインデックス → コピー先のインデックス(未変換の場合は-1) */
+  private int[] indexes;
+
+  /**
+   * コンストラクタ
+   *
+   * @param sourceSharedStrings      コピー元の共有文字列
+   * @param destinationSharedStrings コピー先の共有文字列テーブル
+   */
+  public SharedStringRemapper(SharedStrings sourceSharedStrings, SharedStringsTable destinationSharedStrings) {
+    this.sourceSharedStrings = sourceSharedStrings;
+    this.destinationSharedStrings = destinationSharedStrings;
+    this.indexes = new int[Math.max(sourceSharedStrings.getUniqueCount(), 16)];
+    Arrays.fill(indexes, -1);
+  }
+
+  /**
+   * コピー元の共有文字列のインデックスをコピー先のインデックスに変換する<br>
+   * <br>
+   * 初めて変換する文字列の場合は、コピー先の共有文字列テーブルに文字列を追加する。
+   *
+   * @param sourceIndex コピー元の共有文字列のインデックス
+   * @return コピー先の共有文字列のインデックス
+   */
+  public int remap(int sourceIndex) {
+    if (sourceIndex >= indexes.length) {
+      // コピー元の共有文字列が読み込み後に追加された場合に備えて拡張する
+      var oldLength = indexes.length;
+      indexes = Arrays.copyOf(indexes, Math.max(sourceIndex + 1, oldLength * 2));
+      Arrays.fill(indexes, oldLength, indexes.length, -1);
+    }
+
+    var destinationIndex = indexes[sourceIndex];
+    if (destinationIndex < 0) {
+      destinationIndex = destinationSharedStrings.addSharedStringItem(copyItem(sourceIndex));
+      indexes[sourceIndex] = destinationIndex;
+    }
+    return destinationIndex;
+  }
+
+  /**
+   * 共有文字列のセルの値をコピーする<br>
+   * <br>
+   * コピー先のセルにはコピー先の共有文字列のインデックスを直接設定する。
+   *
+   * @param sourceCell      コピー元のセル
+   * @param destinationCell コピー先のセル
+   * @return コピーした場合はtrue。コピー元が共有文字列のセルでない場合(インライン文字列、数式の結果など)はfalse
+   */
+  public boolean copyCellValue(XSSFCell sourceCell, XSSFCell destinationCell) {
+    var sourceCTCell = sourceCell.getCTCell();
+    if (sourceCTCell.getT() != STCellType.S || !sourceCTCell.isSetV()) {
+      return false;
+    }
+
+    var destinationIndex = remap(Integer.parseInt(sourceCTCell.getV()));
+    var destinationCTCell = destinationCell.getCTCell();
+    destinationCTCell.setT(STCellType.S);
+    destinationCTCell.setV(Integer.toString(destinationIndex));
+    return true;
+  }
+
+  /**
+   * コピー先に追加する共有文字列を作成する
+   *
+   * @param sourceIndex コピー元の共有文字列のインデックス
+   * @return コピー先に追加する共有文字列
+   */
+  private XSSFRichTextString copyItem(int sourceIndex) {
+    var sourceItem = (XSSFRichTextString) sourceSharedStrings.getItemAt(sourceIndex);
+    var ctRst = sourceItem.getCTRst();
+    if (!ctRst.isSetPhoneticPr()) {
+      return sourceItem;
+    }
+
+    // NOTE: コピー元の共有文字列を変更しないよう、複製してからふりがなの設定を取り除く
+    var newCtRst = (CTRst) ctRst.copy();
+    newCtRst.unsetPhoneticPr();
+    return new XSSFRichTextString(newCtRst);
+  }
+
+}
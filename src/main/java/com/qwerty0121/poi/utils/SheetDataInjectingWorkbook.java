@@ -0,0 +1,147 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.openxml4j.util.ZipEntrySource;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * 作成済みのsheetData要素の内容(行・セルのXML)をシートに埋め込んで出力するワークブック<br>
+ * <br>
+ * ストリーミング方式(SXSSF)のワークブックは、出力時にシートのXMLのsheetData要素へ一時ファイルに書き出した行を埋め込む。
+ * このクラスでは、埋め込む内容をシートごとに別途作成したXMLのファイルに差し替える。
+ * セル結合、条件付き書式などの行以外の設定、セルスタイル、共有文字列は通常のワークブックと同様に設定できる。
+ * 共有文字列のパートも、別途作成したXMLのファイルに差し替えることができる。<br>
+ * NOTE: sheetData要素の内容を設定したシートに{@link Sheet#createRow(int)}で作成した行は出力されないので注意<br>
+ * NOTE: 共有文字列のパートを差し替えた場合、ワークブックの共有文字列テーブルに追加した文字列は出力されないので注意<br>
+ * NOTE: 共有文字列を参照するセルを埋め込めるよう、共有文字列テーブルを利用する設定で作成する<br>
+ * NOTE: 使用後は{@link #close()}を呼び出して一時ファイルを削除すること
+ */
+public class SheetDataInjectingWorkbook extends SXSSFWorkbook {
+
+  /** シート → sheetData要素の内容のファイル */
+  private final Map<SXSSFSheet, Path> sheetDataFiles = new HashMap<>();
+
+  /** 共有文字列のパートのファイル(差し替えない場合はnull) */
+  private Path sharedStringsFile;
+
+  /**
+   * コンストラクタ
+   */
+  public SheetDataInjectingWorkbook() {
+    super(null, DEFAULT_WINDOW_SIZE, false, true);
+  }
+
+  /**
+   * シートのsheetData要素の内容を出力するファイルを作成する<br>
+   * <br>
+   * ファイルにはsheetData要素の子要素(row要素)のみをUTF-8で出力すること。
+   *
+   * @param sheet シート
+   * @return sheetData要素の内容を出力するファイル
+   * @throws IOException
+   */
+  public Path createSheetDataFile(Sheet sheet) throws IOException {
+    var file = TempFile.createTempFile("poi-sheetdata-", ".xml").toPath();
+    var oldFile = sheetDataFiles.put((SXSSFSheet) sheet, file);
+    if (oldFile != null) {
+      Files.deleteIfExists(oldFile);
+    }
+    return file;
+  }
+
+  /**
+   * 共有文字列のパート(sst要素のXML)を出力するファイルを作成する<br>
+   * <br>
+   * 出力時は、ワークブックの共有文字列テーブルの代わりにファイルの内容を共有文字列のパートとして出力する。
+   *
+   * @return 共有文字列のパートを出力するファイル
+   * @throws IOException
+   */
+  public Path createSharedStringsFile() throws IOException {
+    if (sharedStringsFile == null) {
+      sharedStringsFile = TempFile.createTempFile("poi-sst-", ".xml").toPath();
+    }
+    return sharedStringsFile;
+  }
+
+  @Override
+  protected void injectData(ZipEntrySource zipEntrySource, OutputStream out) throws IOException {
+    if (sharedStringsFile == null) {
+      super.injectData(zipEntrySource, out);
+      return;
+    }
+
+    // 共有文字列のパートのエントリのみ、内容をファイルに差し替える
+    var sharedStringsEntryName = getXSSFWorkbook().getSharedStringSource().getPackagePart().getPartName().getName()
+        .substring(1);
+    super.injectData(new ZipEntrySource() {
+
+      @Override
+      public Enumeration<? extends ZipArchiveEntry> getEntries() {
+        return zipEntrySource.getEntries();
+      }
+
+      @Override
+      public ZipArchiveEntry getEntry(String path) {
+        return zipEntrySource.getEntry(path);
+      }
+
+      @Override
+      public InputStream getInputStream(ZipArchiveEntry entry) throws IOException {
+        if (sharedStringsEntryName.equals(entry.getName())) {
+          return Files.newInputStream(sharedStringsFile);
+        }
+        return zipEntrySource.getInputStream(entry);
+      }
+
+      @Override
+      public void close() throws IOException {
+        zipEntrySource.close();
+      }
+
+      @Override
+      public boolean isClosed() {
+        return zipEntrySource.isClosed();
+      }
+
+    }, out);
+  }
+
+  @Override
+  protected ISheetInjector createSheetInjector(SXSSFSheet sheet) throws IOException {
+    var file = sheetDataFiles.get(sheet);
+    if (file == null) {
+      return super.createSheetInjector(sheet);
+    }
+    return output -> Files.copy(file, output);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      for (var file : sheetDataFiles.values()) {
+        Files.deleteIfExists(file);
+      }
+      sheetDataFiles.clear();
+      if (sharedStringsFile != null) {
+        Files.deleteIfExists(sharedStringsFile);
+        sharedStringsFile = null;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,376 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * xlsxのシートパートのsheetData要素の内容(行・セルのXML)をそのままコピーするクラス<br>
+ * <br>
+ * シートのXMLをSAXで読み込み、sheetData要素の子要素をXMLのまま出力する。
+ * セルごとにCellやRowのオブジェクトを作成せず、数式も解析せずにそのまま出力するため、
+ * {@link XlsxSheetEventReader}と{@link SheetEventWriter}を組み合わせてコピーするよりも高速に動作する。
+ * XMLの出力もSXSSFと同様に文字列を直接書き込み、エスケープのみを行う。
+ * コピー元のワークブックを参照するインデックスのうち、以下のものはコピー先のインデックスに変換して出力する。
+ * <ul>
+ * <li>行・セルのセルスタイル(s属性)</li>
+ * <li>共有文字列のセルの値(t="s"のセルのv要素)</li>
+ * </ul>
+ * セル結合とハイパーリンクは{@link SheetEventHandler}に通知する(行・セルは通知しない)。
+ * 共有文字列のパートも同様に、XMLのまま出力できる。<br>
+ * NOTE: コピー元の名前空間の拡張属性(x14ac:dyDescentなど)とセルのメタデータ(cm属性、vm属性)は出力されないので注意
+ */
+public class SheetDataXmlCopier {
+
+  /** 出力先に書き込むXMLの長さの目安 */
+  private static final int XML_BUFFER_SIZE = 64 * 1024;
+
+  /** コピー元のセルスタイルのインデックス → コピー先のセルスタイルのインデックス */
+  private final IntUnaryOperator styleIndexMapper;
+
+  /** コピー元の共有文字列のインデックス → コピー先の共有文字列のインデックス */
+  private final IntUnaryOperator sharedStringIndexMapper;
+
+  /**
+   * コンストラクタ
+   *
+   * @param styleIndexMapper        コピー元のセルスタイルのインデックスからコピー先のインデックスを取得する関数
+   * @param sharedStringIndexMapper コピー元の共有文字列のインデックスからコピー先のインデックスを取得する関数
+   */
+  public SheetDataXmlCopier(IntUnaryOperator styleIndexMapper, IntUnaryOperator sharedStringIndexMapper) {
+    this.styleIndexMapper = styleIndexMapper;
+    this.sharedStringIndexMapper = sharedStringIndexMapper;
+  }
+
+  /**
+   * シートパートのsheetData要素の内容を出力する<br>
+   * <br>
+   * 出力するのはsheetData要素の子要素のみで、sheetData要素自体は出力しない。
+   *
+   * @param sheetInputStream シートパートの入力ストリーム
+   * @param sheetPart        シートパート(ハイパーリンクのリンク先の解決に利用する)
+   * @param sheetDataOutput  sheetData要素の内容の出力先(UTF-8で出力する)
+   * @param handler          セル結合とハイパーリンクを受け取るハンドラ
+   * @throws IOException
+   */
+  public void copy(InputStream sheetInputStream, PackagePart sheetPart, OutputStream sheetDataOutput,
+      SheetEventHandler handler) throws IOException {
+    // NOTE: 出力先はクローズせずにフラッシュのみ行う
+    var writer = new OutputStreamWriter(sheetDataOutput, StandardCharsets.UTF_8);
+    var sheetDataXmlHandler = new SheetDataXmlHandler("sheetData", Set.of(), sheetPart, writer, handler);
+    try {
+      var xmlReader = XMLHelper.newXMLReader();
+      xmlReader.setContentHandler(sheetDataXmlHandler);
+      xmlReader.parse(new InputSource(sheetInputStream));
+    } catch (SAXException | ParserConfigurationException e) {
+      throw new IOException("シートのコピーに失敗しました。", e);
+    }
+    sheetDataXmlHandler.flushXml();
+    writer.flush();
+    handler.endSheet();
+  }
+
+  /**
+   * 共有文字列のパートを出力する<br>
+   * <br>
+   * 文字列(リッチテキストの書式、ふりがなを含む)はそのまま出力する。
+   * ふりがなの設定(phoneticPr要素)はコピー元のフォントのインデックスを参照するため出力しない。
+   *
+   * @param sharedStringsInputStream 共有文字列のパートの入力ストリーム
+   * @param sharedStringsOutput      共有文字列のパートの出力先(UTF-8で出力する)
+   * @throws IOException
+   */
+  public void copySharedStrings(InputStream sharedStringsInputStream, OutputStream sharedStringsOutput)
+      throws IOException {
+    // NOTE: 出力先はクローズせずにフラッシュのみ行う
+    var writer = new OutputStreamWriter(sharedStringsOutput, StandardCharsets.UTF_8);
+    writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<sst xmlns=\""
+        + XSSFRelation.NS_SPREADSHEETML + "\">");
+    var sharedStringsXmlHandler = new SheetDataXmlHandler("sst", Set.of("phoneticPr"), null, writer, null);
+    try {
+      var xmlReader = XMLHelper.newXMLReader();
+      xmlReader.setContentHandler(sharedStringsXmlHandler);
+      xmlReader.parse(new InputSource(sharedStringsInputStream));
+    } catch (SAXException | ParserConfigurationException e) {
+      throw new IOException("共有文字列のコピーに失敗しました。", e);
+    }
+    sharedStringsXmlHandler.flushXml();
+    writer.write("</sst>");
+    writer.flush();
+  }
+
+  /**
+   * シートのXMLを解析し、sheetData要素(共有文字列のパートの場合はsst要素)の内容を出力するSAXハンドラ
+   */
+  private class SheetDataXmlHandler extends DefaultHandler {
+
+    /** 内容を出力する要素の名前 */
+    private final String containerName;
+
+    /** 出力しない要素の名前 */
+    private final Set<String> omittedElementNames;
+
+    private final PackagePart sheetPart;
+
+    private final Writer writer;
+
+    /** 出力するXMLのバッファ(一定の長さを超えた行・文字列の終わりで出力先に書き込む) */
+    private final StringBuilder xml = new StringBuilder(XML_BUFFER_SIZE * 2);
+
+    private final SheetEventHandler handler;
+
+    /** XMLの名前空間(ルート要素の名前空間) */
+    private String documentNamespace;
+
+    /** 内容を出力する要素の名前空間(内容を出力する要素の外ではnull) */
+    private String containerNamespace;
+
+    /** 出力しない要素の深さ(出力しない要素の外では0) */
+    private int skippedDepth;
+
+    /** 開始タグの「>」を出力していないかどうか(子要素がない場合は空要素タグとして閉じる) */
+    private boolean isStartTagOpen;
+
+    /** 現在のセルが共有文字列のセルかどうか */
+    private boolean isSharedStringCell;
+
+    /** 共有文字列のセルのv要素内かどうか */
+    private boolean isSharedStringValue;
+
+    /** 共有文字列のインデックスを蓄積するバッファ */
+    private final StringBuilder sharedStringIndex = new StringBuilder();
+
+    SheetDataXmlHandler(String containerName, Set<String> omittedElementNames, PackagePart sheetPart, Writer writer,
+        SheetEventHandler handler) {
+      this.containerName = containerName;
+      this.omittedElementNames = omittedElementNames;
+      this.sheetPart = sheetPart;
+      this.writer = writer;
+      this.handler = handler;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+      if (documentNamespace == null) {
+        documentNamespace = uri;
+      }
+      if (containerNamespace == null) {
+        // NOTE: 拡張要素(x14:*など)は同名でも対象としない
+        if (!documentNamespace.equals(uri)) {
+          return;
+        }
+        if (containerName.equals(localName)) {
+          containerNamespace = uri;
+          return;
+        }
+        if (handler == null) {
+          return;
+        }
+        switch (localName) {
+          case "mergeCell":
+            handler.mergedRegion(CellRangeAddress.valueOf(attributes.getValue("ref")));
+            break;
+          case "hyperlink":
+            var hyperlink = XlsxSheetEventReader.toHyperlinkData(attributes, sheetPart);
+            if (hyperlink != null) {
+              handler.hyperlink(hyperlink);
+            }
+            break;
+          default:
+            break;
+        }
+        return;
+      }
+
+      // 他の名前空間の要素(拡張要素)と出力しない要素は、子要素も含めて出力しない
+      if (skippedDepth > 0 || !containerNamespace.equals(uri) || omittedElementNames.contains(localName)) {
+        skippedDepth++;
+        return;
+      }
+
+      closeStartTag();
+      xml.append('<').append(localName);
+      for (int i = 0; i < attributes.getLength(); i++) {
+        writeAttribute(localName, attributes, i);
+      }
+      isStartTagOpen = true;
+
+      switch (localName) {
+        case "c":
+          isSharedStringCell = "s".equals(attributes.getValue("t"));
+          break;
+        case "v":
+          isSharedStringValue = isSharedStringCell;
+          sharedStringIndex.setLength(0);
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (containerNamespace == null) {
+        return;
+      }
+      if (skippedDepth > 0) {
+        skippedDepth--;
+        return;
+      }
+      if (containerName.equals(localName) && containerNamespace.equals(uri)) {
+        containerNamespace = null;
+        return;
+      }
+
+      if (isSharedStringValue) {
+        // 共有文字列のインデックスをコピー先のインデックスに変換する
+        var index = Integer.parseInt(sharedStringIndex.toString().trim());
+        closeStartTag();
+        xml.append(sharedStringIndexMapper.applyAsInt(index));
+        isSharedStringValue = false;
+      }
+      if (isStartTagOpen) {
+        xml.append("/>");
+        isStartTagOpen = false;
+      } else {
+        xml.append("</").append(localName).append('>');
+      }
+
+      // 一定の長さを超えたら行(共有文字列の場合は文字列)の終わりで出力先に書き込む
+      if (("row".equals(localName) || "si".equals(localName)) && xml.length() >= XML_BUFFER_SIZE) {
+        try {
+          flushXml();
+        } catch (IOException e) {
+          throw new SAXException(e);
+        }
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+      if (containerNamespace == null || skippedDepth > 0) {
+        return;
+      }
+      if (isSharedStringValue) {
+        sharedStringIndex.append(ch, start, length);
+        return;
+      }
+
+      closeStartTag();
+      writeEscaped(CharBuffer.wrap(ch), start, start + length, false);
+    }
+
+    /**
+     * バッファのXMLを出力先に書き込む
+     *
+     * @throws IOException
+     */
+    void flushXml() throws IOException {
+      writer.append(xml);
+      xml.setLength(0);
+    }
+
+    /**
+     * 開始タグの「>」を出力していない場合は出力する
+     */
+    private void closeStartTag() {
+      if (isStartTagOpen) {
+        xml.append('>');
+        isStartTagOpen = false;
+      }
+    }
+
+    /**
+     * 属性を出力する<br>
+     * <br>
+     * セルスタイルの属性はコピー先のインデックスに変換し、コピー先で宣言されていない名前空間の属性は出力しない。
+     *
+     * @param localName  要素名
+     * @param attributes 要素の属性
+     * @param index      出力する属性のインデックス
+     */
+    private void writeAttribute(String localName, Attributes attributes, int index) {
+      var attributeUri = attributes.getURI(index);
+      var attributeName = attributes.getLocalName(index);
+      var value = attributes.getValue(index);
+
+      var prefix = "";
+      if (XMLConstants.XML_NS_URI.equals(attributeUri)) {
+        // xml:spaceなどのXMLの属性はそのまま出力する
+        prefix = "xml:";
+      } else if (!attributeUri.isEmpty()) {
+        return;
+      }
+
+      switch (attributeName) {
+        case "s":
+          if ("row".equals(localName) || "c".equals(localName)) {
+            value = Integer.toString(styleIndexMapper.applyAsInt(Integer.parseInt(value)));
+          }
+          break;
+        case "cm":
+        case "vm":
+          // メタデータのパートはコピーされないため、参照も出力しない
+          if ("c".equals(localName)) {
+            return;
+          }
+          break;
+        default:
+          break;
+      }
+      xml.append(' ').append(prefix).append(attributeName).append("=\"");
+      writeEscaped(CharBuffer.wrap(value), 0, value.length(), true);
+      xml.append('"');
+    }
+
+    /**
+     * 文字列をエスケープして出力する
+     *
+     * @param text        文字列
+     * @param start       開始位置
+     * @param end         終了位置(この位置の文字は含まない)
+     * @param isAttribute 属性値かどうか(属性値の場合は引用符と空白文字もエスケープする)
+     */
+    private void writeEscaped(CharSequence text, int start, int end, boolean isAttribute) {
+      var last = start;
+      for (int i = start; i < end; i++) {
+        String escaped;
+        switch (text.charAt(i)) {
+          case '<' -> escaped = "&lt;";
+          case '>' -> escaped = "&gt;";
+          case '&' -> escaped = "&amp;";
+          case '\r' -> escaped = "&#xD;";
+          case '"' -> escaped = isAttribute ? "&quot;" : null;
+          case '\n' -> escaped = isAttribute ? "&#xA;" : null;
+          case '\t' -> escaped = isAttribute ? "&#x9;" : null;
+          default -> escaped = null;
+        }
+        if (escaped != null) {
+          xml.append(text, last, i).append(escaped);
+          last = i + 1;
+        }
+      }
+      xml.append(text, last, end);
+    }
+
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.qwerty0121.poi.utils;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
+
+/**
+ * シートの内容をイベントとして受け取るハンドラ<br>
+ * <br>
+ * 行・セルは行番号の昇順に通知される。セル結合、条件付き書式とハイパーリンクは全ての行の通知が終わった後に通知される。
+ */
+public interface SheetEventHandler {
+
+  /**
+   * 行の開始を通知する
+   *
+   * @param rowIndex 行番号(0始まり)
+   */
+  default void startRow(int rowIndex) {
+  }
+
+  /**
+   * セルを通知する
+   *
+   * @param cell セルの内容
+   */
+  void cell(CellData cell);
+
+  /**
+   * 行の終了を通知する
+   *
+   * @param rowIndex 行番号(0始まり)
+   */
+  default void endRow(int rowIndex) {
+  }
+
+  /**
+   * セル結合を通知する
+   *
+   * @param region 結合範囲
+   */
+  default void mergedRegion(CellRangeAddress region) {
+  }
+
+  /**
+   * 条件付き書式を通知する<br>
+   * <br>
+   * NOTE: 条件付き書式はコピー元のシートのXML(conditionalFormatting要素)のまま通知される。
+   * 書式設定(dxfId)はコピー元のワークブックのスタイルを参照しているので注意
+   *
+   * @param conditionalFormatting 条件付き書式
+   */
+  default void conditionalFormatting(CTConditionalFormatting conditionalFormatting) {
+  }
+
+  /**
+   * ハイパーリンクを通知する
+   *
+   * @param hyperlink ハイパーリンクの内容
+   */
+  default void hyperlink(HyperlinkData hyperlink) {
+  }
+
+  /**
+   * シートの終了を通知する
+   */
+  default void endSheet() {
+  }
+
+  /**
+   * セルの内容
+   *
+   * @param rowIndex    行番号(0始まり)
+   * @param columnIndex 列番号(0始まり)
+   * @param cellType    セル種別
+   * @param value       セルの値(文字列:文字列、数値:数値文字列、真偽値:"1"または"0"、エラー:エラーコード文字列、数式:null)
+   * @param formula     数式(数式セルでない場合はnull)
+   * @param styleIndex  コピー元のセルスタイルのインデックス
+   */
+  record CellData(int rowIndex, int columnIndex, CellType cellType, String value, String formula, int styleIndex) {
+  }
+
+  /**
+   * ハイパーリンクの内容
+   *
+   * @param region   ハイパーリンクの範囲
+   * @param type     ハイパーリンク種別
+   * @param address  リンク先(シート内リンクの場合は参照先のセル範囲)
+   * @param location リンク先内の位置(シート内リンク以外で指定されている場合のみ。指定がない場合はnull)
+   * @param label    表示文字列
+   */
+  record HyperlinkData(CellRangeAddress region, HyperlinkType type, String address, String location, String label) {
+  }
+
+}
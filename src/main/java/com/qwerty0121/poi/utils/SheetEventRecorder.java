@@ -0,0 +1,63 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
+
+/**
+ * {@link SheetEventHandler}に通知されたシートの内容を記録し、後から別のハンドラに再通知するクラス<br>
+ * <br>
+ * シートの読み込みとコピー先への書き込みを別スレッドで行う場合に利用する。
+ * 記録した内容は全てメモリ上に保持されるので注意。
+ */
+public class SheetEventRecorder implements SheetEventHandler {
+
+  /** 記録したイベント */
+  private final List<Consumer<SheetEventHandler>> events = new ArrayList<>();
+
+  @Override
+  public void startRow(int rowIndex) {
+    events.add(handler -> handler.startRow(rowIndex));
+  }
+
+  @Override
+  public void cell(CellData cell) {
+    events.add(handler -> handler.cell(cell));
+  }
+
+  @Override
+  public void endRow(int rowIndex) {
+    events.add(handler -> handler.endRow(rowIndex));
+  }
+
+  @Override
+  public void mergedRegion(CellRangeAddress region) {
+    events.add(handler -> handler.mergedRegion(region));
+  }
+
+  @Override
+  public void conditionalFormatting(CTConditionalFormatting conditionalFormatting) {
+    events.add(handler -> handler.conditionalFormatting(conditionalFormatting));
+  }
+
+  @Override
+  public void hyperlink(HyperlinkData hyperlink) {
+    events.add(handler -> handler.hyperlink(hyperlink));
+  }
+
+  /**
+   * 記録したイベントを指定したハンドラに記録した順で再通知する<br>
+   * <br>
+   * NOTE: シートの終了は記録せず、再通知の最後に通知する
+   *
+   * @param handler 再通知先のハンドラ
+   */
+  public void replay(SheetEventHandler handler) {
+    events.forEach(event -> event.accept(handler));
+    handler.endSheet();
+  }
+
+}
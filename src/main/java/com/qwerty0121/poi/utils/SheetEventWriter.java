@@ -0,0 +1,178 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFHyperlink;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
+
+/**
+ * {@link SheetEventHandler}に通知されたシートの内容をコピー先のシートに書き込むクラス<br>
+ * <br>
+ * 行は通知された順に作成するため、コピー先がストリーミング方式(SXSSF)のシートでも利用できる。<br>
+ * NOTE: 条件付き書式は、条件付き書式のコピー処理を指定した場合のみコピーする
+ */
+public class SheetEventWriter implements SheetEventHandler {
+
+  /** コピー先のシート */
+  private final Sheet destinationSheet;
+
+  /** コピー元のセルスタイルのインデックスからコピー先のセルスタイルを取得する関数 */
+  private final IntFunction<CellStyle> styleMapper;
+
+  /** 条件付き書式のコピー処理(条件付き書式をコピーしない場合はnull) */
+  private final ConditionalFormattingCopier conditionalFormattingCopier;
+
+  /** 書き込み中の行 */
+  private Row currentRow;
+
+  /** シートの終了時にまとめて追加するセル結合 */
+  private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+
+  /** シートの終了時にまとめて追加する条件付き書式 */
+  private final List<CTConditionalFormatting> conditionalFormattings = new ArrayList<>();
+
+  /**
+   * コンストラクタ<br>
+   * <br>
+   * 条件付き書式はコピーしない。
+   *
+   * @param destinationSheet コピー先のシート
+   * @param styleMapper      コピー元のセルスタイルのインデックスからコピー先のセルスタイルを取得する関数
+   */
+  public SheetEventWriter(Sheet destinationSheet, IntFunction<CellStyle> styleMapper) {
+    this(destinationSheet, styleMapper, null);
+  }
+
+  /**
+   * コンストラクタ
+   *
+   * @param destinationSheet            コピー先のシート
+   * @param styleMapper                 コピー元のセルスタイルのインデックスからコピー先のセルスタイルを取得する関数
+   * @param conditionalFormattingCopier 条件付き書式のコピー処理(条件付き書式をコピーしない場合はnull)
+   */
+  public SheetEventWriter(Sheet destinationSheet, IntFunction<CellStyle> styleMapper,
+      ConditionalFormattingCopier conditionalFormattingCopier) {
+    this.destinationSheet = destinationSheet;
+    this.styleMapper = styleMapper;
+    this.conditionalFormattingCopier = conditionalFormattingCopier;
+  }
+
+  @Override
+  public void startRow(int rowIndex) {
+    currentRow = destinationSheet.createRow(rowIndex);
+  }
+
+  @Override
+  public void cell(CellData cellData) {
+    var newCell = currentRow.createCell(cellData.columnIndex());
+
+    // セルスタイルをコピー
+    var destinationCellStyle = styleMapper.apply(cellData.styleIndex());
+    if (destinationCellStyle != null) {
+      newCell.setCellStyle(destinationCellStyle);
+    }
+
+    // セルの値をコピー
+    switch (cellData.cellType()) {
+      case STRING:
+        newCell.setCellValue(cellData.value());
+        break;
+      case NUMERIC:
+        newCell.setCellValue(Double.parseDouble(cellData.value()));
+        break;
+      case BOOLEAN:
+        newCell.setCellValue("1".equals(cellData.value()) || "true".equalsIgnoreCase(cellData.value()));
+        break;
+      case FORMULA:
+        newCell.setCellFormula(cellData.formula());
+        break;
+      case BLANK:
+        // ブランクセルは何もしない
+        break;
+      case ERROR:
+        newCell.setCellErrorValue(FormulaError.forString(cellData.value()).getCode());
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void endRow(int rowIndex) {
+    currentRow = null;
+  }
+
+  @Override
+  public void mergedRegion(CellRangeAddress region) {
+    // NOTE: 1件ずつ追加すると追加のたびに重なりを検証するため、シートの終了時にまとめて追加する
+    mergedRegions.add(region);
+  }
+
+  @Override
+  public void conditionalFormatting(CTConditionalFormatting conditionalFormatting) {
+    // NOTE: 対象セル範囲が同じ条件付き書式を1つにまとめるため、シートの終了時にまとめて追加する
+    if (conditionalFormattingCopier != null) {
+      conditionalFormattings.add(conditionalFormatting);
+    }
+  }
+
+  @Override
+  public void hyperlink(HyperlinkData hyperlinkData) {
+    // NOTE: ハイパーリンクは全ての行の書き込み後に通知されるため、SXSSFの場合は既に一時ファイルに書き出された行にも設定できるよう、
+    // セルではなく内部のXSSFSheetに直接追加する
+    var xssfSheet = getXSSFSheet();
+    if (xssfSheet == null) {
+      return;
+    }
+
+    var newLink = (XSSFHyperlink) destinationSheet.getWorkbook().getCreationHelper()
+        .createHyperlink(hyperlinkData.type());
+    newLink.setAddress(hyperlinkData.address());
+    if (hyperlinkData.location() != null) {
+      newLink.setLocation(hyperlinkData.location());
+    }
+    newLink.setLabel(hyperlinkData.label());
+    newLink.setFirstRow(hyperlinkData.region().getFirstRow());
+    newLink.setLastRow(hyperlinkData.region().getLastRow());
+    newLink.setFirstColumn(hyperlinkData.region().getFirstColumn());
+    newLink.setLastColumn(hyperlinkData.region().getLastColumn());
+    xssfSheet.addHyperlink(newLink);
+  }
+
+  @Override
+  public void endSheet() {
+    MergedRegionWriter.addAll(destinationSheet, mergedRegions);
+    mergedRegions.clear();
+
+    var xssfSheet = getXSSFSheet();
+    if (!conditionalFormattings.isEmpty() && xssfSheet != null) {
+      conditionalFormattingCopier.copy(conditionalFormattings, xssfSheet);
+    }
+    conditionalFormattings.clear();
+  }
+
+  /**
+   * コピー先のシートに対応するXSSFSheetを取得する
+   *
+   * @return XSSFSheet。取得できない場合はnull
+   */
+  private XSSFSheet getXSSFSheet() {
+    if (destinationSheet instanceof XSSFSheet xssfSheet) {
+      return xssfSheet;
+    }
+    if (destinationSheet.getWorkbook() instanceof SXSSFWorkbook sxssfWorkbook) {
+      return sxssfWorkbook.getXSSFWorkbook().getSheet(destinationSheet.getSheetName());
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,121 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * テンプレートファイルの内容をメモリ上に保持するキャッシュ<br>
+ * <br>
+ * テンプレートファイルは初回の取得時にクラスパスから読み込み、以降はメモリ上の内容を返す。
+ * 保持する内容の合計サイズが上限を超えた場合は最も長く参照されていないものから破棄する(LRU)。
+ * また、ファイルシステム上のテンプレートファイルの更新日時が変わった場合は読み込み直す。<br>
+ * NOTE: POIには読み込み済みのWorkbookを複製する手段がないため、作業用のWorkbookはキャッシュした内容から都度作成すること。
+ * キャッシュで省けるのはテンプレートファイルの読み込みのみで、Workbookの作成時のZIPの展開とXMLの解析は毎回行われる
+ */
+public class TemplateCache {
+
+  /** キャッシュの合計サイズの上限(バイト) */
+  private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+  /** テンプレートファイル名 → テンプレートファイルの内容。参照順に並ぶ */
+  private static final LinkedHashMap<String, Snapshot> SNAPSHOTS = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** キャッシュしているテンプレートファイルの合計サイズ(バイト) */
+  private static long cachedBytes;
+
+  private TemplateCache() {
+  }
+
+  /**
+   * テンプレートファイルの内容を取得する<br>
+   * <br>
+   * NOTE: 返却した配列はキャッシュと共有しているため、変更しないこと
+   *
+   * @param templateFileName テンプレートファイル名
+   * @return テンプレートファイルの内容
+   * @throws IOException
+   */
+  public static byte[] getTemplate(String templateFileName) throws IOException {
+    var resource = TemplateCache.class.getClassLoader().getResource(templateFileName);
+    if (resource == null) {
+      throw new FileNotFoundException("テンプレートファイルが見つかりません: " + templateFileName);
+    }
+    var lastModified = getLastModified(resource);
+
+    synchronized (SNAPSHOTS) {
+      var snapshot = SNAPSHOTS.get(templateFileName);
+      if (snapshot != null && snapshot.lastModified() == lastModified) {
+        return snapshot.content();
+      }
+    }
+
+    byte[] content;
+    try (var is = resource.openStream()) {
+      content = IOUtils.toByteArray(is);
+    }
+
+    synchronized (SNAPSHOTS) {
+      var oldSnapshot = SNAPSHOTS.remove(templateFileName);
+      if (oldSnapshot != null) {
+        cachedBytes -= oldSnapshot.content().length;
+      }
+      if (content.length <= MAX_CACHE_BYTES) {
+        SNAPSHOTS.put(templateFileName, new Snapshot(content, lastModified));
+        cachedBytes += content.length;
+
+        // 上限を超えた場合は最も長く参照されていないテンプレートファイルから破棄する
+        var iterator = SNAPSHOTS.entrySet().iterator();
+        while (cachedBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+          cachedBytes -= iterator.next().getValue().content().length;
+          iterator.remove();
+        }
+      }
+    }
+    return content;
+  }
+
+  /**
+   * キャッシュを全て破棄する
+   */
+  public static void clear() {
+    synchronized (SNAPSHOTS) {
+      SNAPSHOTS.clear();
+      cachedBytes = 0;
+    }
+  }
+
+  /**
+   * テンプレートファイルの更新日時を取得する<br>
+   * <br>
+   * ファイルシステム上のテンプレートファイルのみ更新日時を確認する。<br>
+   * NOTE: jarに含まれる場合は実行中に変わらないため、URLConnectionを開かずに常に0を返す
+   *
+   * @param resource テンプレートファイルのURL
+   * @return 更新日時(ミリ秒)。ファイルシステム上にない場合は0
+   * @throws IOException
+   */
+  private static long getLastModified(URL resource) throws IOException {
+    if (!"file".equals(resource.getProtocol())) {
+      return 0;
+    }
+    try {
+      return Files.getLastModifiedTime(Path.of(resource.toURI())).toMillis();
+    } catch (URISyntaxException e) {
+      throw new IOException("テンプレートファイルのパスが不正です: " + resource, e);
+    }
+  }
+
+  /**
+   * テンプレートファイルの内容と読み込み時点の更新日時
+   */
+  private record Snapshot(byte[] content, long lastModified) {
+  }
+
+}
@@ -0,0 +1,545 @@
+package com.qwerty0121.poi.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaShifter;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+import com.qwerty0121.poi.utils.CellPlaceholderIndex.Segment;
+
+/**
+ * テンプレートの行(テンプレート行)をデータの件数分だけ繰り返して出力するクラス<br>
+ * <br>
+ * {@link #prepare(XSSFSheet, int)}でテンプレート行とそれより下の行の内容を読み取ってシートから取り除き、
+ * {@link #bind(Sheet, Iterator, Function)}でデータごとにテンプレート行を出力した後、下の行をデータの件数分ずらして出力し直す。
+ * そのため、行のシフトはデータの件数によらず一度だけとなる。
+ * また、行は上から順に作成するため、出力先にストリーミング方式(SXSSF)のシートを指定すれば、
+ * データの件数が多い場合でも全ての行をメモリ上に保持しない。<br>
+ * <br>
+ * テンプレート行の文字列セルのプレースホルダー(${名前})はデータの値に置き換え、数式は出力する行に合わせて参照先をずらす。
+ * テンプレート行より下の行と上の行の数式は、ずらした行への参照を修正し、テンプレート行で終わる範囲(SUM(E4:E4)など)は
+ * 出力したデータの最終行まで広げる。
+ * 結合セルも同様に、テンプレート行をまたぐもの(テンプレート行から下の行まで、上の行からテンプレート行までなど)は出力したデータの分だけ広げる。<br>
+ * NOTE: テンプレート行の数式がテンプレート行より下の行を参照する場合は、参照先をずらす行数がデータの件数で決まるため、
+ * 出力前にデータを全て読み込んでメモリ上に保持する<br>
+ * NOTE: 以下はテンプレート行より下の行に設定されていても出力し直されないので注意
+ * <ul>
+ * <li>条件付き書式</li>
+ * <li>入力規則</li>
+ * <li>ハイパーリンク</li>
+ * </ul>
+ */
+public class TemplateRowBinder {
+
+  /** テンプレート行のシート */
+  private final XSSFSheet templateSheet;
+
+  /** テンプレート行のインデックス */
+  private final int templateRowIndex;
+
+  /** シートのインデックス */
+  private final int sheetIndex;
+
+  /** 数式の解析・出力に利用するワークブック */
+  private final XSSFEvaluationWorkbook formulaWorkbook;
+
+  /** テンプレート行 */
+  private final RowSnapshot templateRow;
+
+  /** テンプレート行より下の行 */
+  private final List<RowSnapshot> tailRows = new ArrayList<>();
+
+  /** テンプレート行の結合セル */
+  private final List<CellRangeAddress> templateMergedRegions = new ArrayList<>();
+
+  /** テンプレート行より下の行の結合セル */
+  private final List<CellRangeAddress> tailMergedRegions = new ArrayList<>();
+
+  /** テンプレート行をまたぐ結合セル */
+  private final List<CellRangeAddress> spanningMergedRegions = new ArrayList<>();
+
+  /** テンプレート行の数式がテンプレート行より下の行を参照するかどうか */
+  private final boolean templateRowReferencesTailRows;
+
+  /** テンプレート行より上の行の数式セル */
+  private final List<FormulaCell> aboveFormulaCells = new ArrayList<>();
+
+  /** 出力済みかどうか */
+  private boolean bound;
+
+  /**
+   * コンストラクタ
+   *
+   * @param sheet             シート
+   * @param templateRowIndex  テンプレート行のインデックス
+   * @param placeholderPrefix テンプレート行のプレースホルダーの名前から取り除く接頭辞(取り除かない場合はnull)
+   */
+  private TemplateRowBinder(XSSFSheet sheet, int templateRowIndex, String placeholderPrefix) {
+    this.templateSheet = sheet;
+    this.templateRowIndex = templateRowIndex;
+    this.sheetIndex = sheet.getWorkbook().getSheetIndex(sheet);
+    this.formulaWorkbook = XSSFEvaluationWorkbook.create(sheet.getWorkbook());
+
+    var sourceTemplateRow = sheet.getRow(templateRowIndex);
+    if (sourceTemplateRow == null) {
+      throw new IllegalArgumentException("テンプレート行が存在しません: " + (templateRowIndex + 1) + "行目");
+    }
+    this.templateRow = createRowSnapshot(sourceTemplateRow, placeholderPrefix);
+    this.templateRowReferencesTailRows = templateRow.cells().stream()
+        .filter(cell -> cell.formula() != null)
+        .anyMatch(cell -> referencesRowsBelow(cell.formula(), templateRowIndex));
+
+    // テンプレート行より上の数式セルを保持する
+    for (var row : sheet) {
+      if (row.getRowNum() >= templateRowIndex) {
+        break;
+      }
+      for (var cell : row) {
+        if (cell.getCellType() == CellType.FORMULA) {
+          aboveFormulaCells.add(new FormulaCell((XSSFCell) cell, parseFormula(cell)));
+        }
+      }
+    }
+
+    // テンプレート行とそれより下の行を保持してシートから取り除く
+    var removedRows = new ArrayList<Row>();
+    for (var row : sheet) {
+      if (row.getRowNum() > templateRowIndex) {
+        tailRows.add(createRowSnapshot(row, null));
+      }
+      if (row.getRowNum() >= templateRowIndex) {
+        removedRows.add(row);
+      }
+    }
+    removedRows.forEach(sheet::removeRow);
+
+    // テンプレート行とそれより下の行の結合セルを保持してシートから取り除く
+    var removedMergedRegionIndexes = new ArrayList<Integer>();
+    for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
+      var mergedRegion = sheet.getMergedRegion(i);
+      if (mergedRegion.getFirstRow() == templateRowIndex && mergedRegion.getLastRow() == templateRowIndex) {
+        templateMergedRegions.add(mergedRegion);
+        removedMergedRegionIndexes.add(i);
+      } else if (mergedRegion.getFirstRow() > templateRowIndex) {
+        tailMergedRegions.add(mergedRegion);
+        removedMergedRegionIndexes.add(i);
+      } else if (mergedRegion.getLastRow() >= templateRowIndex) {
+        spanningMergedRegions.add(mergedRegion);
+        removedMergedRegionIndexes.add(i);
+      }
+    }
+    sheet.removeMergedRegions(removedMergedRegionIndexes);
+  }
+
+  /**
+   * テンプレート行を読み取り、出力の準備をする<br>
+   * <br>
+   * テンプレート行とそれより下の行はシートから取り除かれる。
+   * ストリーミング方式で出力する場合は、この後にシートのワークブックから{@link SXSSFWorkbook}を作成すること。
+   *
+   * @param sheet            シート
+   * @param templateRowIndex テンプレート行のインデックス
+   * @return 出力の準備をしたTemplateRowBinder
+   */
+  public static TemplateRowBinder prepare(XSSFSheet sheet, int templateRowIndex) {
+    return new TemplateRowBinder(sheet, templateRowIndex, null);
+  }
+
+  /**
+   * 指定した接頭辞で始まるプレースホルダーを含む最初の行をテンプレート行として読み取り、出力の準備をする<br>
+   * <br>
+   * テンプレート行のプレースホルダーの名前からは接頭辞を取り除く。
+   * 例えば、接頭辞が"item."の場合、"${item.name}"はデータの"name"の値に置き換える。
+   *
+   * @param sheet             シート
+   * @param placeholderPrefix プレースホルダーの名前の接頭辞
+   * @return 出力の準備をしたTemplateRowBinder
+   * @see #prepare(XSSFSheet, int)
+   */
+  public static TemplateRowBinder prepare(XSSFSheet sheet, String placeholderPrefix) {
+    var marker = "${" + placeholderPrefix;
+    for (var row : sheet) {
+      for (var cell : row) {
+        if (cell.getCellType() == CellType.STRING && cell.getStringCellValue().contains(marker)) {
+          return new TemplateRowBinder(sheet, row.getRowNum(), placeholderPrefix);
+        }
+      }
+    }
+    throw new IllegalArgumentException("テンプレート行が存在しません: " + marker);
+  }
+
+  /**
+   * データごとにテンプレート行を出力する<br>
+   * <br>
+   * データは先頭から順に一度だけ参照する。
+   *
+   * @param <T>              データの型
+   * @param destinationSheet 出力先のシート(準備をしたシート、またはそれをストリーミング方式で扱うシート)
+   * @param records          データ
+   * @param mapper           データからプレースホルダーの名前 → 値を取得する関数
+   * @return 出力したデータの件数
+   */
+  public <T> int bind(Sheet destinationSheet, Iterator<? extends T> records,
+      Function<? super T, ? extends Map<String, ?>> mapper) {
+    if (bound) {
+      throw new IllegalStateException("既に出力済みです。");
+    }
+    if (getXSSFSheet(destinationSheet) != templateSheet) {
+      throw new IllegalArgumentException("出力先のシートがテンプレート行のシートと異なります。");
+    }
+    bound = true;
+
+    // テンプレート行の数式がテンプレート行より下の行を参照する場合は、データの件数分ずらした行を参照させる
+    if (templateRowReferencesTailRows) {
+      var bufferedRecords = new ArrayList<T>();
+      records.forEachRemaining(bufferedRecords::add);
+      records = bufferedRecords.iterator();
+      if (bufferedRecords.size() > 1) {
+        var tailRowShifter = createTailRowShifter(bufferedRecords.size() - 1);
+        templateRow.cells().stream()
+            .filter(cell -> cell.formula() != null)
+            .forEach(cell -> tailRowShifter.adjustFormula(cell.formula(), sheetIndex));
+      }
+    }
+
+    // テンプレート行を出力する
+    // NOTE: 数式は1行出力するごとに参照先を1行ずらす
+    var rowCopyShifter = FormulaShifter.createForRowCopy(sheetIndex, templateSheet.getSheetName(),
+        templateRowIndex, templateRowIndex, 1, SpreadsheetVersion.EXCEL2007);
+    var count = 0;
+    while (records.hasNext()) {
+      var data = mapper.apply(records.next());
+      var rowIndex = templateRowIndex + count;
+      if (count > 0) {
+        templateRow.cells().stream()
+            .filter(cell -> cell.formula() != null)
+            .forEach(cell -> rowCopyShifter.adjustFormula(cell.formula(), sheetIndex));
+      }
+      writeRow(destinationSheet, rowIndex, templateRow, data);
+      for (var mergedRegion : templateMergedRegions) {
+        // NOTE: 出力する行は互いに重ならないため、結合セルの重なりの検証は行わない
+        destinationSheet.addMergedRegionUnsafe(new CellRangeAddress(rowIndex, rowIndex,
+            mergedRegion.getFirstColumn(), mergedRegion.getLastColumn()));
+      }
+      count++;
+    }
+
+    // テンプレート行より下の行を出力データの件数分ずらして出力する
+    var shift = count - 1;
+    var rowShifter = createTailRowShifter(shift);
+    for (var tailRow : tailRows) {
+      for (var cell : tailRow.cells()) {
+        if (cell.formula() != null) {
+          adjustFormula(cell.formula(), rowShifter, count);
+        }
+      }
+      writeRow(destinationSheet, tailRow.rowIndex() + shift, tailRow, Map.of());
+    }
+    for (var mergedRegion : tailMergedRegions) {
+      destinationSheet.addMergedRegionUnsafe(new CellRangeAddress(mergedRegion.getFirstRow() + shift,
+          mergedRegion.getLastRow() + shift, mergedRegion.getFirstColumn(), mergedRegion.getLastColumn()));
+    }
+    for (var mergedRegion : spanningMergedRegions) {
+      // テンプレート行をまたぐ結合セルは、出力したデータの分だけ終了行を広げる(データが0件の場合は狭める)
+      var newMergedRegion = new CellRangeAddress(mergedRegion.getFirstRow(), mergedRegion.getLastRow() + shift,
+          mergedRegion.getFirstColumn(), mergedRegion.getLastColumn());
+      if (newMergedRegion.getNumberOfCells() >= 2) {
+        destinationSheet.addMergedRegionUnsafe(newMergedRegion);
+      }
+    }
+
+    // テンプレート行より上の数式の参照先を修正する
+    for (var formulaCell : aboveFormulaCells) {
+      if (adjustFormula(formulaCell.formula(), rowShifter, count)) {
+        formulaCell.cell().setCellFormula(FormulaRenderer.toFormulaString(formulaWorkbook, formulaCell.formula()));
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * データごとにテンプレート行を出力する<br>
+   * <br>
+   * 出力後にデータのストリームを閉じる。
+   *
+   * @param <T>              データの型
+   * @param destinationSheet 出力先のシート(準備をしたシート、またはそれをストリーミング方式で扱うシート)
+   * @param records          データ
+   * @param mapper           データからプレースホルダーの名前 → 値を取得する関数
+   * @return 出力したデータの件数
+   * @see #bind(Sheet, Iterator, Function)
+   */
+  public <T> int bind(Sheet destinationSheet, Stream<? extends T> records,
+      Function<? super T, ? extends Map<String, ?>> mapper) {
+    try (records) {
+      return bind(destinationSheet, records.iterator(), mapper);
+    }
+  }
+
+  /**
+   * 行の内容を保持する
+   *
+   * @param row               行
+   * @param placeholderPrefix プレースホルダーの名前から取り除く接頭辞(取り除かない場合、またはプレースホルダーを置き換えない場合はnull)
+   * @return 行の内容
+   */
+  private RowSnapshot createRowSnapshot(Row row, String placeholderPrefix) {
+    var cells = new ArrayList<CellSnapshot>();
+    for (var cell : row) {
+      Object value = null;
+      List<Segment> segments = null;
+      Ptg[] formula = null;
+      switch (cell.getCellType()) {
+        case STRING:
+          var richText = cell.getRichStringCellValue();
+          value = richText.numFormattingRuns() > 0 ? richText : richText.getString();
+          if (row.getRowNum() == templateRowIndex) {
+            segments = parseSegments(richText.getString(), placeholderPrefix);
+          }
+          break;
+        case NUMERIC:
+          value = cell.getNumericCellValue();
+          break;
+        case BOOLEAN:
+          value = cell.getBooleanCellValue();
+          break;
+        case ERROR:
+          value = cell.getErrorCellValue();
+          break;
+        case FORMULA:
+          formula = parseFormula(cell);
+          break;
+        default:
+          break;
+      }
+      cells.add(new CellSnapshot(cell.getColumnIndex(), cell.getCellStyle(), cell.getCellType(), value, segments,
+          formula));
+    }
+    return new RowSnapshot(row.getRowNum(), row.getHeight(), row.getZeroHeight(),
+        row.isFormatted() ? row.getRowStyle() : null, cells);
+  }
+
+  /**
+   * 保持した行の内容を出力する
+   *
+   * @param sheet    出力先のシート
+   * @param rowIndex 出力先の行のインデックス
+   * @param snapshot 行の内容
+   * @param data     プレースホルダーの名前 → 値
+   */
+  private void writeRow(Sheet sheet, int rowIndex, RowSnapshot snapshot, Map<String, ?> data) {
+    var row = sheet.createRow(rowIndex);
+    if (snapshot.height() != sheet.getDefaultRowHeight()) {
+      row.setHeight(snapshot.height());
+    }
+    row.setZeroHeight(snapshot.zeroHeight());
+    if (snapshot.rowStyle() != null) {
+      row.setRowStyle(snapshot.rowStyle());
+    }
+
+    for (var cellSnapshot : snapshot.cells()) {
+      var cell = row.createCell(cellSnapshot.columnIndex());
+      cell.setCellStyle(cellSnapshot.style());
+      writeCellValue(cell, cellSnapshot, data);
+    }
+  }
+
+  /**
+   * 保持したセルの値を出力する
+   *
+   * @param cell         出力先のセル
+   * @param cellSnapshot セルの内容
+   * @param data         プレースホルダーの名前 → 値
+   */
+  private void writeCellValue(Cell cell, CellSnapshot cellSnapshot, Map<String, ?> data) {
+    switch (cellSnapshot.cellType()) {
+      case STRING:
+        if (cellSnapshot.segments() != null) {
+          CellPlaceholderIndex.writeSegments(cell, cellSnapshot.segments(), data);
+        } else if (cellSnapshot.value() instanceof RichTextString richText) {
+          cell.setCellValue(richText);
+        } else {
+          cell.setCellValue((String) cellSnapshot.value());
+        }
+        break;
+      case NUMERIC:
+        cell.setCellValue((Double) cellSnapshot.value());
+        break;
+      case BOOLEAN:
+        cell.setCellValue((Boolean) cellSnapshot.value());
+        break;
+      case ERROR:
+        cell.setCellErrorValue((Byte) cellSnapshot.value());
+        break;
+      case FORMULA:
+        cell.setCellFormula(FormulaRenderer.toFormulaString(formulaWorkbook, cellSnapshot.formula()));
+        break;
+      default:
+        // ブランクセルは何もしない
+        break;
+    }
+  }
+
+  /**
+   * テンプレート行より下の行をずらすFormulaShifterを作成する
+   *
+   * @param shift ずらす行数
+   * @return FormulaShifter
+   */
+  private FormulaShifter createTailRowShifter(int shift) {
+    var lastTailRowIndex = tailRows.isEmpty() ? templateRowIndex : tailRows.get(tailRows.size() - 1).rowIndex();
+    return FormulaShifter.createForRowShift(sheetIndex, templateSheet.getSheetName(), templateRowIndex + 1,
+        lastTailRowIndex, shift, SpreadsheetVersion.EXCEL2007);
+  }
+
+  /**
+   * 数式が指定した行より下の行を参照するかどうかを判定する<br>
+   * <br>
+   * NOTE: 他のシートへの参照も対象とする(判定が広い分にはデータを読み込む時期が変わるだけのため)
+   *
+   * @param formula  数式
+   * @param rowIndex 行のインデックス
+   * @return 下の行を参照する場合はtrue
+   */
+  private static boolean referencesRowsBelow(Ptg[] formula, int rowIndex) {
+    for (var ptg : formula) {
+      if (ptg instanceof RefPtgBase ref && ref.getRow() > rowIndex) {
+        return true;
+      }
+      if (ptg instanceof AreaPtgBase area && area.getLastRow() > rowIndex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 数式の参照先をずらした行に合わせて修正する<br>
+   * <br>
+   * テンプレート行で終わる範囲は出力したデータの最終行まで広げる。
+   *
+   * @param formula    数式
+   * @param rowShifter テンプレート行より下の行をずらすFormulaShifter
+   * @param count      出力したデータの件数
+   * @return 数式を修正した場合はtrue
+   */
+  private boolean adjustFormula(Ptg[] formula, FormulaShifter rowShifter, int count) {
+    var adjusted = rowShifter.adjustFormula(formula, sheetIndex);
+    if (count > 1) {
+      for (var ptg : formula) {
+        if (ptg instanceof AreaPtgBase area && area.getFirstRow() <= templateRowIndex
+            && area.getLastRow() == templateRowIndex) {
+          area.setLastRow(templateRowIndex + count - 1);
+          adjusted = true;
+        }
+      }
+    }
+    return adjusted;
+  }
+
+  /**
+   * セルの数式を解析する
+   *
+   * @param cell 数式セル
+   * @return 解析した数式
+   */
+  private Ptg[] parseFormula(Cell cell) {
+    return FormulaParser.parse(cell.getCellFormula(), formulaWorkbook, FormulaType.CELL, sheetIndex,
+        cell.getRowIndex());
+  }
+
+  /**
+   * 文字列を固定の文字列とプレースホルダーに分割し、プレースホルダーの名前から接頭辞を取り除く
+   *
+   * @param text              文字列
+   * @param placeholderPrefix プレースホルダーの名前から取り除く接頭辞(取り除かない場合はnull)
+   * @return 分割結果。プレースホルダーを含まない場合はnull
+   */
+  private static List<Segment> parseSegments(String text, String placeholderPrefix) {
+    var segments = CellPlaceholderIndex.parseSegments(text);
+    if (segments == null || placeholderPrefix == null) {
+      return segments;
+    }
+    return segments.stream()
+        .map(segment -> segment.isPlaceholder() && segment.text().startsWith(placeholderPrefix)
+            ? new Segment(segment.text().substring(placeholderPrefix.length()), true)
+            : segment)
+        .toList();
+  }
+
+  /**
+   * 出力先のシートに対応するXSSFSheetを取得する
+   *
+   * @param sheet 出力先のシート
+   * @return XSSFSheet。取得できない場合はnull
+   */
+  private static XSSFSheet getXSSFSheet(Sheet sheet) {
+    if (sheet instanceof XSSFSheet xssfSheet) {
+      return xssfSheet;
+    }
+    if (sheet.getWorkbook() instanceof SXSSFWorkbook sxssfWorkbook) {
+      return sxssfWorkbook.getXSSFWorkbook().getSheet(sheet.getSheetName());
+    }
+    return null;
+  }
+
+  /**
+   * 行の内容
+   *
+   * @param rowIndex   行のインデックス
+   * @param height     行の高さ
+   * @param zeroHeight 行が非表示かどうか
+   * @param rowStyle   行のスタイル(設定されていない場合はnull)
+   * @param cells      セルの内容
+   */
+  private record RowSnapshot(int rowIndex, short height, boolean zeroHeight, CellStyle rowStyle,
+      List<CellSnapshot> cells) {
+  }
+
+  /**
+   * セルの内容
+   *
+   * @param columnIndex 列のインデックス
+   * @param style       セルスタイル
+   * @param cellType    セルの種類
+   * @param value       セルの値(文字列、リッチテキスト、数値、真偽値、エラーコードのいずれか)
+   * @param segments    文字列を固定の文字列とプレースホルダーに分割した結果(テンプレート行の文字列セル以外はnull)
+   * @param formula     解析した数式(数式セル以外はnull)
+   */
+  private record CellSnapshot(int columnIndex, CellStyle style, CellType cellType, Object value,
+      List<Segment> segments, Ptg[] formula) {
+  }
+
+  /**
+   * テンプレート行より上の数式セル
+   *
+   * @param cell    セル
+   * @param formula 解析した数式
+   */
+  private record FormulaCell(XSSFCell cell, Ptg[] formula) {
+  }
+
+}
@@ -0,0 +1,351 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+/**
+ * 複数のワークブックのファイルに同じ処理を並列に実行するクラス<br>
+ * <br>
+ * ファイルごとにワークブックを読み込み、処理を実行して出力先のディレクトリに出力する。
+ * 並列数は固定のスレッドプールで制限し、待ち行列が一杯になった場合は呼び出し元のスレッドでファイルを処理する。
+ * そのため、ファイルの数に関わらず同時に読み込まれるワークブックの数は「並列数 + 1」までとなる。
+ * ファイルごとの処理で発生した例外(エラーを含む)は他のファイルの処理に影響せず、処理結果に記録する。
+ * ただし、メモリ不足などの仮想マシンのエラーは処理結果に記録した上で投げ直す。<br>
+ * NOTE: 処理は複数のスレッドから同時に呼び出されるため、ワークブック以外の状態を変更しないこと
+ */
+public class WorkbookBatchProcessor {
+
+  /** ワークブック1つあたりの使用メモリの見積もり(ファイルサイズに対する倍率) */
+  private static final long MEMORY_PER_FILE_SIZE_RATIO = 100;
+
+  /** ワークブック1つあたりの使用メモリの見積もりの最小値(バイト) */
+  private static final long MIN_MEMORY_PER_WORKBOOK = 64L * 1024 * 1024;
+
+  /** 既定の入力ファイルのパターン(ディレクトリを指定した場合) */
+  private static final String DEFAULT_FILE_PATTERN = "*.{xlsx,xlsm}";
+
+  /** ワークブックに実行する処理 */
+  private final WorkbookOperation operation;
+
+  /** 並列数 */
+  private final int parallelism;
+
+  /** ワークブックの出力方法 */
+  private final WorkbookWriter writer;
+
+  /**
+   * コンストラクタ<br>
+   * <br>
+   * ワークブックは既定の出力方法({@link WorkbookWriter#WorkbookWriter()})で出力する。
+   *
+   * @param operation   ワークブックに実行する処理
+   * @param parallelism 並列数
+   */
+  public WorkbookBatchProcessor(WorkbookOperation operation, int parallelism) {
+    this(operation, parallelism, new WorkbookWriter());
+  }
+
+  /**
+   * コンストラクタ
+   *
+   * @param operation   ワークブックに実行する処理
+   * @param parallelism 並列数
+   * @param writer      ワークブックの出力方法
+   */
+  public WorkbookBatchProcessor(WorkbookOperation operation, int parallelism, WorkbookWriter writer) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("並列数は1以上を指定してください: " + parallelism);
+    }
+    this.operation = operation;
+    this.parallelism = parallelism;
+    this.writer = writer;
+  }
+
+  /**
+   * 入力ファイルに応じた既定の並列数を取得する<br>
+   * <br>
+   * CPUのコア数と、最大ヒープサイズを最も大きい入力ファイルの使用メモリの見積もりで割った数の小さい方とする。<br>
+   * NOTE: 使用メモリの見積もりはファイルサイズの{@value #MEMORY_PER_FILE_SIZE_RATIO}倍(最小64MB)の概算値
+   *
+   * @param inputFiles 入力ファイル
+   * @return 並列数(1以上)
+   * @throws IOException
+   */
+  public static int defaultParallelism(List<Path> inputFiles) throws IOException {
+    long maxFileSize = 0;
+    for (var inputFile : inputFiles) {
+      maxFileSize = Math.max(maxFileSize, Files.size(inputFile));
+    }
+    var memoryPerWorkbook = Math.max(MIN_MEMORY_PER_WORKBOOK, maxFileSize * MEMORY_PER_FILE_SIZE_RATIO);
+
+    // NOTE: 呼び出し元のスレッドでも1ファイル処理する場合があるため、その分を差し引く
+    var parallelismByHeap = Runtime.getRuntime().maxMemory() / memoryPerWorkbook - 1;
+    var cores = Runtime.getRuntime().availableProcessors();
+    return (int) Math.max(1, Math.min(cores, parallelismByHeap));
+  }
+
+  /**
+   * 入力ファイルを検索する<br>
+   * <br>
+   * 以下のいずれかを指定できる。
+   * <ul>
+   * <li>ファイル: 指定したファイルのみ</li>
+   * <li>ディレクトリ: ディレクトリ直下のxlsx、xlsmファイル</li>
+   * <li>globパターン(例: {@code data/**}{@code /*.xlsx}): パターンに一致するファイル。ワイルドカードを含まない部分をディレクトリとする</li>
+   * </ul>
+   *
+   * @param inputPattern 入力ファイル、ディレクトリまたはglobパターン
+   * @return 入力ファイル
+   * @throws IOException
+   */
+  public static InputFiles findInputFiles(String inputPattern) throws IOException {
+    var path = Path.of(inputPattern);
+    var globIndex = indexOfGlobSegment(path);
+    if (globIndex < 0) {
+      if (Files.isRegularFile(path)) {
+        var parent = path.toAbsolutePath().getParent();
+        return new InputFiles(parent, List.of(path.toAbsolutePath()));
+      }
+      if (!Files.isDirectory(path)) {
+        throw new IOException("入力ファイルが見つかりません: " + inputPattern);
+      }
+      return findInputFiles(path, DEFAULT_FILE_PATTERN);
+    }
+
+    // ワイルドカードを含まない部分をディレクトリ、残りをディレクトリからの相対パスのパターンとする
+    var baseDirectory = globIndex == 0 ? Path.of("") : path.subpath(0, globIndex);
+    if (path.isAbsolute()) {
+      baseDirectory = path.getRoot().resolve(baseDirectory);
+    }
+    var pattern = path.subpath(globIndex, path.getNameCount()).toString();
+    return findInputFiles(baseDirectory, pattern);
+  }
+
+  /**
+   * ディレクトリからパターンに一致するファイルを検索する
+   *
+   * @param baseDirectory ディレクトリ
+   * @param pattern       ディレクトリからの相対パスのglobパターン
+   * @return 入力ファイル
+   * @throws IOException
+   */
+  private static InputFiles findInputFiles(Path baseDirectory, String pattern) throws IOException {
+    var absoluteBaseDirectory = baseDirectory.toAbsolutePath().normalize();
+    var matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    try (var paths = Files.walk(absoluteBaseDirectory)) {
+      var files = paths
+          .filter(Files::isRegularFile)
+          .filter(file -> matcher.matches(absoluteBaseDirectory.relativize(file)))
+          .sorted()
+          .collect(Collectors.toList());
+      return new InputFiles(absoluteBaseDirectory, files);
+    }
+  }
+
+  /**
+   * パスの中で最初にワイルドカードを含む要素の位置を取得する
+   *
+   * @param path パス
+   * @return 要素の位置。ワイルドカードを含まない場合は-1
+   */
+  private static int indexOfGlobSegment(Path path) {
+    for (int i = 0; i < path.getNameCount(); i++) {
+      var name = path.getName(i).toString();
+      if (name.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{')) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 入力ファイルを処理して出力先のディレクトリに出力する<br>
+   * <br>
+   * 出力先のファイルは、入力ファイルのディレクトリからの相対パスを出力先のディレクトリに解決したパスとする。
+   * 処理に失敗したファイルは出力しない。
+   *
+   * @param inputFiles      入力ファイル
+   * @param outputDirectory 出力先のディレクトリ
+   * @return 処理結果
+   * @throws InterruptedException
+   */
+  public BatchSummary process(InputFiles inputFiles, Path outputDirectory) throws InterruptedException {
+    var results = Collections.synchronizedList(new ArrayList<FileResult>());
+    var threadNumber = new AtomicInteger();
+    var executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(parallelism),
+        runnable -> {
+          var thread = new Thread(runnable, "workbook-batch-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        // NOTE: 待ち行列が一杯の場合は呼び出し元のスレッドで処理し、ファイルの投入を待たせる(バックプレッシャー)
+        new ThreadPoolExecutor.CallerRunsPolicy());
+
+    var startNanos = System.nanoTime();
+    try {
+      for (var inputFile : inputFiles.files()) {
+        var outputFile = outputDirectory.resolve(inputFiles.baseDirectory().relativize(inputFile).toString());
+        executor.execute(() -> processFile(inputFile, outputFile, results));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    var elapsedNanos = System.nanoTime() - startNanos;
+
+    var sortedResults = new ArrayList<>(results);
+    sortedResults.sort(Comparator.comparing(FileResult::inputFile));
+    return new BatchSummary(sortedResults, parallelism, elapsedNanos);
+  }
+
+  /**
+   * 1つのファイルを処理して処理結果に追加する<br>
+   * <br>
+   * NOTE: 発生した例外は処理結果に記録し、呼び出し元には投げない。
+   * ただし、仮想マシンのエラー(メモリ不足など)は処理を続けられないため、処理結果に記録した上で投げ直す
+   *
+   * @param inputFile  入力ファイル
+   * @param outputFile 出力先のファイル
+   * @param results    処理結果の追加先
+   */
+  private void processFile(Path inputFile, Path outputFile, List<FileResult> results) {
+    var startNanos = System.nanoTime();
+    long inputBytes = 0;
+    try {
+      inputBytes = Files.size(inputFile);
+
+      // NOTE: ファイルを指定して開くと、ワークブックを閉じる際に入力ファイルへ書き戻されるため、ストリームから読み込む
+      try (var is = Files.newInputStream(inputFile); var workbook = WorkbookFactory.create(is)) {
+        operation.apply(workbook);
+
+        // NOTE: 一時ファイルに出力してからファイル名を変更するため、出力に失敗しても書きかけのファイルは残らない
+        Files.createDirectories(outputFile.toAbsolutePath().getParent());
+        writer.write(workbook, outputFile);
+      }
+      results.add(new FileResult(inputFile, outputFile, inputBytes, System.nanoTime() - startNanos, null));
+    } catch (Throwable e) {
+      results.add(new FileResult(inputFile, null, inputBytes, System.nanoTime() - startNanos, e));
+      if (e instanceof VirtualMachineError vmError) {
+        throw vmError;
+      }
+    }
+  }
+
+  /**
+   * ワークブックに実行する処理
+   */
+  @FunctionalInterface
+  public interface WorkbookOperation {
+
+    /**
+     * ワークブックに処理を実行する
+     *
+     * @param workbook ワークブック
+     * @throws IOException
+     */
+    void apply(Workbook workbook) throws IOException;
+
+    /**
+     * この処理の後に指定した処理を実行する処理を作成する
+     *
+     * @param after この処理の後に実行する処理
+     * @return 処理
+     */
+    default WorkbookOperation andThen(WorkbookOperation after) {
+      return workbook -> {
+        apply(workbook);
+        after.apply(workbook);
+      };
+    }
+
+  }
+
+  /**
+   * 入力ファイル
+   *
+   * @param baseDirectory 入力ファイルのディレクトリ(出力先の相対パスの基準)
+   * @param files         入力ファイル(絶対パス)
+   */
+  public record InputFiles(Path baseDirectory, List<Path> files) {
+  }
+
+  /**
+   * ファイルごとの処理結果
+   *
+   * @param inputFile    入力ファイル
+   * @param outputFile   出力先のファイル(処理に失敗した場合はnull)
+   * @param inputBytes   入力ファイルのサイズ(バイト)
+   * @param elapsedNanos 処理時間(ナノ秒)
+   * @param error        発生した例外またはエラー(処理に成功した場合はnull)
+   */
+  public record FileResult(Path inputFile, Path outputFile, long inputBytes, long elapsedNanos, Throwable error) {
+
+    /**
+     * 処理に成功したかを判定する
+     *
+     * @return 処理に成功した場合はtrue
+     */
+    public boolean succeeded() {
+      return error == null;
+    }
+
+  }
+
+  /**
+   * 全てのファイルの処理結果
+   *
+   * @param results      ファイルごとの処理結果(入力ファイルのパス順)
+   * @param parallelism  並列数
+   * @param elapsedNanos 全体の処理時間(ナノ秒)
+   */
+  public record BatchSummary(List<FileResult> results, int parallelism, long elapsedNanos) {
+
+    /**
+     * 処理に失敗したファイルの処理結果を取得する
+     *
+     * @return 処理に失敗したファイルの処理結果
+     */
+    public List<FileResult> failures() {
+      return results.stream().filter(result -> !result.succeeded()).collect(Collectors.toList());
+    }
+
+    /**
+     * 処理結果の概要(件数・スループット・失敗したファイル)を出力する
+     *
+     * @param out 出力先
+     */
+    public void print(PrintStream out) {
+      var failures = failures();
+      var succeededCount = results.size() - failures.size();
+      var totalBytes = results.stream().mapToLong(FileResult::inputBytes).sum();
+      var elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+      out.printf("処理件数: %d (成功: %d, 失敗: %d), 並列数: %d%n", results.size(), succeededCount, failures.size(),
+          parallelism);
+      out.printf("処理時間: %.2f秒, スループット: %.2f件/秒, %.2fMB/秒%n", elapsedSeconds,
+          elapsedSeconds > 0 ? results.size() / elapsedSeconds : 0.0,
+          elapsedSeconds > 0 ? totalBytes / 1024.0 / 1024.0 / elapsedSeconds : 0.0);
+      for (var failure : failures) {
+        out.printf("失敗: %s (%s)%n", failure.inputFile(), failure.error());
+      }
+    }
+
+  }
+
+}
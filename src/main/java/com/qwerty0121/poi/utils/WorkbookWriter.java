@@ -0,0 +1,329 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * ワークブックをファイルに出力するクラス<br>
+ * <br>
+ * 出力先と同じディレクトリの一時ファイルに出力し、出力が完了してから出力先のファイル名に変更する(可能な場合はアトミックに変更する)。
+ * そのため、出力の途中で異常終了しても書きかけのファイルが出力先に残らない。
+ * xlsx形式のワークブックはZIPの圧縮レベル(無圧縮を含む)を指定でき、パートの圧縮を複数のスレッドで並列に実行できる。<br>
+ * NOTE: ストリーミング方式(SXSSF)のワークブックはPOIが圧縮したファイルを指定した圧縮レベルで圧縮し直すため、既定の設定以外では出力に時間がかかる<br>
+ * NOTE: xls形式のワークブックは圧縮の設定によらずそのまま出力する
+ */
+public class WorkbookWriter {
+
+  /** 圧縮レベル(無圧縮) */
+  public static final int STORED = Deflater.NO_COMPRESSION;
+
+  /** 圧縮レベル */
+  private final int compressionLevel;
+
+  /** 圧縮の並列数 */
+  private final int parallelism;
+
+  /**
+   * コンストラクタ<br>
+   * <br>
+   * POIの既定の圧縮レベルで、圧縮を並列に実行せずに出力する。
+   */
+  public WorkbookWriter() {
+    this(Deflater.DEFAULT_COMPRESSION, 1);
+  }
+
+  /**
+   * コンストラクタ
+   *
+   * @param compressionLevel 圧縮レベル({@link #STORED}(無圧縮)、1~9、または{@link Deflater#DEFAULT_COMPRESSION})
+   * @param parallelism      圧縮の並列数(1の場合は並列に実行しない)
+   */
+  public WorkbookWriter(int compressionLevel, int parallelism) {
+    if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+        && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("圧縮レベルが不正です: " + compressionLevel);
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("並列数は1以上を指定してください: " + parallelism);
+    }
+    this.compressionLevel = compressionLevel;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * ワークブックをファイルに出力する<br>
+   * <br>
+   * 出力先のディレクトリは存在している必要がある。出力先のファイルが既に存在する場合は置き換える。
+   *
+   * @param workbook   ワークブック
+   * @param outputFile 出力先のファイル
+   * @return 出力結果
+   * @throws IOException
+   */
+  public WriteResult write(Workbook workbook, Path outputFile) throws IOException {
+    var startNanos = System.nanoTime();
+    var tempFile = createTempFile(outputFile, ".tmp");
+    try {
+      if (workbook instanceof XSSFWorkbook && !isParallel()) {
+        // xlsx形式は、POIが作成するZIPの出力ストリームの代わりに圧縮レベルを設定した出力ストリームを渡す
+        writeZip(workbook, tempFile, compressionLevel);
+      } else if (workbook instanceof XSSFWorkbook) {
+        // 無圧縮で出力してから、パートごとに並列に圧縮する
+        var storedFile = createTempFile(outputFile, ".stored.tmp");
+        try {
+          writeZip(workbook, storedFile, STORED);
+          recompress(storedFile, tempFile);
+        } finally {
+          Files.deleteIfExists(storedFile);
+        }
+      } else if (workbook instanceof SXSSFWorkbook
+          && (isParallel() || compressionLevel != Deflater.DEFAULT_COMPRESSION)) {
+        // NOTE: SXSSFはZIPの出力ストリームを自前で作成するため、出力したファイルを圧縮し直す
+        var defaultFile = createTempFile(outputFile, ".default.tmp");
+        try {
+          writeStream(workbook, defaultFile);
+          recompress(defaultFile, tempFile);
+        } finally {
+          Files.deleteIfExists(defaultFile);
+        }
+      } else {
+        writeStream(workbook, tempFile);
+      }
+
+      moveAtomically(tempFile, outputFile);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+    return new WriteResult(outputFile, Files.size(outputFile), System.nanoTime() - startNanos);
+  }
+
+  /**
+   * 出力先と同じディレクトリに一時ファイルを作成する<br>
+   * <br>
+   * NOTE: {@link Files#createTempFile}は所有者のみ読み書きできる権限でファイルを作成するため、
+   * 出力先のファイルが通常のファイルと同じ権限となるよう{@link Files#createFile}で作成する
+   *
+   * @param outputFile 出力先のファイル
+   * @param suffix     一時ファイル名の接尾辞
+   * @return 一時ファイル
+   * @throws IOException
+   */
+  private static Path createTempFile(Path outputFile, String suffix) throws IOException {
+    var directory = outputFile.toAbsolutePath().getParent();
+    while (true) {
+      var tempFile = directory.resolve("." + outputFile.getFileName() + "." + UUID.randomUUID() + suffix);
+      try {
+        return Files.createFile(tempFile);
+      } catch (FileAlreadyExistsException e) {
+        // ファイル名が重複した場合は作成し直す
+      }
+    }
+  }
+
+  /**
+   * 圧縮を並列に実行するかを判定する
+   *
+   * @return 並列に実行する場合はtrue
+   */
+  private boolean isParallel() {
+    // NOTE: 無圧縮の場合は圧縮処理がないため並列に実行しない
+    return parallelism > 1 && compressionLevel != STORED;
+  }
+
+  /**
+   * ワークブック(xlsx形式)を指定した圧縮レベルのZIPとして出力する
+   *
+   * @param workbook         ワークブック
+   * @param file             出力先のファイル
+   * @param compressionLevel 圧縮レベル
+   * @throws IOException
+   */
+  private static void writeZip(Workbook workbook, Path file, int compressionLevel) throws IOException {
+    // NOTE: POIは出力ストリームがZipArchiveOutputStreamの場合はそのまま使用してパートを書き込む
+    // NOTE: ファイルに直接出力するZipArchiveOutputStreamは、サイズが未確定の無圧縮のエントリも出力できる
+    try (var zos = new ZipArchiveOutputStream(file)) {
+      configure(zos, compressionLevel);
+      workbook.write(zos);
+    }
+  }
+
+  /**
+   * ワークブックをバッファ付きの出力ストリームで出力する
+   *
+   * @param workbook ワークブック
+   * @param file     出力先のファイル
+   * @throws IOException
+   */
+  private static void writeStream(Workbook workbook, Path file) throws IOException {
+    try (var os = new BufferedOutputStream(Files.newOutputStream(file))) {
+      workbook.write(os);
+    }
+  }
+
+  /**
+   * ZIPファイルの各エントリを指定した圧縮レベルで圧縮し直す<br>
+   * <br>
+   * エントリごとに圧縮を並列に実行し、圧縮済みのエントリをコピー元と同じ順に出力先のファイルに書き込む。
+   * そのため、出力するファイルの内容は並列数やスレッドの処理順によらず同じとなる。
+   *
+   * @param sourceFile 圧縮し直すZIPファイル
+   * @param file       出力先のファイル
+   * @throws IOException
+   */
+  private void recompress(Path sourceFile, Path file) throws IOException {
+    var executor = Executors.newFixedThreadPool(isParallel() ? parallelism : 1);
+    // NOTE: 圧縮済みのエントリはエントリごとにシステムの一時ディレクトリのファイルに保持される
+    var scatterStreams = Collections.synchronizedList(new ArrayList<ScatterZipOutputStream>());
+    try (var zipFile = ZipFile.builder().setPath(sourceFile).get()) {
+      // エントリの読み込みと圧縮は各スレッドで行う
+      // NOTE: ZipFileはエントリごとに独立した位置から読み込むため、複数のスレッドから読み込める
+      var compressedEntries = new ArrayList<Future<ScatterZipOutputStream>>();
+      for (var entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+        compressedEntries.add(executor.submit(() -> compressEntry(zipFile, entry, scatterStreams)));
+      }
+
+      // NOTE: 圧縮が完了した順ではなく、コピー元のエントリの順に書き込む
+      try (var zos = new ZipArchiveOutputStream(file)) {
+        for (var compressedEntry : compressedEntries) {
+          compressedEntry.get().writeTo(zos);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("ZIPの圧縮中に割り込まれました。");
+    } catch (ExecutionException e) {
+      throw new IOException("ZIPの圧縮に失敗しました。", e.getCause());
+    } finally {
+      executor.shutdownNow();
+      closeScatterStreams(executor, scatterStreams);
+    }
+  }
+
+  /**
+   * ZIPファイルのエントリを指定した圧縮レベルで圧縮する
+   *
+   * @param zipFile        ZIPファイル
+   * @param entry          圧縮するエントリ
+   * @param scatterStreams 圧縮済みのエントリの追加先(出力後に閉じるため)
+   * @return 圧縮済みのエントリ
+   * @throws IOException
+   */
+  private ScatterZipOutputStream compressEntry(ZipFile zipFile, ZipArchiveEntry entry,
+      List<ScatterZipOutputStream> scatterStreams) throws IOException {
+    var scatterStream = ScatterZipOutputStream.pathBased(Files.createTempFile("parallelscatter", "n"),
+        compressionLevel);
+    scatterStreams.add(scatterStream);
+
+    var newEntry = new ZipArchiveEntry(entry.getName());
+    newEntry.setMethod(compressionLevel == STORED ? ZipEntry.STORED : ZipEntry.DEFLATED);
+    newEntry.setTime(entry.getTime());
+    scatterStream.addArchiveEntry(ZipArchiveEntryRequest.createZipArchiveEntryRequest(newEntry, () -> {
+      try {
+        return zipFile.getInputStream(entry);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }));
+    return scatterStream;
+  }
+
+  /**
+   * 圧縮の完了を待ってから、圧縮済みのエントリを閉じて一時ファイルを削除する<br>
+   * <br>
+   * NOTE: 一時ファイルの削除に失敗しても出力結果には影響しないため、閉じる際の例外は無視する
+   *
+   * @param executor       圧縮を実行するスレッドプール(停止済み)
+   * @param scatterStreams 圧縮済みのエントリ
+   */
+  private static void closeScatterStreams(ExecutorService executor, List<ScatterZipOutputStream> scatterStreams) {
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (scatterStreams) {
+      scatterStreams.forEach(IOUtils::closeQuietly);
+    }
+  }
+
+  /**
+   * ZIPの出力ストリームに圧縮レベルを設定する
+   *
+   * @param zos              ZIPの出力ストリーム
+   * @param compressionLevel 圧縮レベル
+   */
+  private static void configure(ZipArchiveOutputStream zos, int compressionLevel) {
+    if (compressionLevel == STORED) {
+      zos.setMethod(ZipEntry.STORED);
+    } else {
+      zos.setLevel(compressionLevel);
+    }
+  }
+
+  /**
+   * 出力したファイルを出力先のファイル名に変更する<br>
+   * <br>
+   * アトミックに変更できないファイルシステムの場合は、通常のファイル名の変更を行う。
+   *
+   * @param source 出力したファイル
+   * @param target 出力先のファイル
+   * @throws IOException
+   */
+  private static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * 出力結果
+   *
+   * @param file         出力先のファイル
+   * @param bytes        出力したファイルのサイズ(バイト)
+   * @param elapsedNanos 出力時間(ナノ秒)
+   */
+  public record WriteResult(Path file, long bytes, long elapsedNanos) {
+
+    /**
+     * 出力のスループットを取得する
+     *
+     * @return スループット(MB/秒)
+     */
+    public double megabytesPerSecond() {
+      return elapsedNanos > 0 ? bytes / 1024.0 / 1024.0 / (elapsedNanos / 1_000_000_000.0) : 0.0;
+    }
+
+  }
+
+}
@@ -0,0 +1,505 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.ContinueRecord;
+import org.apache.poi.hssf.record.DrawingGroupRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.HyperlinkRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MergeCellsRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.TableRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.SheetVisibility;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import com.qwerty0121.poi.utils.SheetEventHandler.CellData;
+import com.qwerty0121.poi.utils.SheetEventHandler.HyperlinkData;
+
+/**
+ * xls形式のワークブックをイベント方式(HSSFEventFactory)で読み込み、シートの内容を{@link SheetEventHandler}に通知するクラス<br>
+ * <br>
+ * シートのレコードはHSSFWorkbookのようにメモリ上に保持せず、読み込んだ順にセル単位で通知するため、
+ * メモリ使用量はシートのサイズに依存しない。
+ * ワークブック全体のレコード(シート名、共有文字列、フォント、セルスタイル、表示形式、パレット、名前など)のみを保持し、
+ * セルスタイルの参照と数式の文字列化に利用するワークブックとして通知する。<br>
+ * NOTE: {@link org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder}が数式の文字列化のために作成するワークブックと同様の方法で、
+ * セルスタイルのレコードも含めたワークブックを作成している<br>
+ * NOTE: 図形・画像のレコードは保持しないため、画像のデータがメモリ上に読み込まれたままにならない<br>
+ * NOTE: 条件付き書式、列幅などのセル以外の設定は通知されないので注意<br>
+ * NOTE: 配列数式とデータテーブルの数式は、数式ではなく計算結果の値として通知する
+ */
+public class XlsWorkbookEventReader {
+
+  /**
+   * ワークブックを読み込む
+   *
+   * @param root    ワークブックを含むPOIFSのルートディレクトリ
+   * @param handler ワークブックの内容を受け取るハンドラ
+   * @throws IOException
+   */
+  public void read(DirectoryNode root, WorkbookHandler handler) throws IOException {
+    var listener = new RecordListener(handler);
+    var request = new HSSFRequest();
+    request.addListenerForAllRecords(listener);
+    try {
+      new HSSFEventFactory().processWorkbookEvents(request, root);
+    } catch (RecordProcessingException e) {
+      throw e.getCause();
+    }
+    if (listener.globalsWorkbook == null) {
+      throw new IOException("ワークブックのレコードが見つかりません。");
+    }
+  }
+
+  /**
+   * ワークブックの内容を受け取るハンドラ
+   */
+  public interface WorkbookHandler {
+
+    /**
+     * ワークブック全体の設定を通知する<br>
+     * <br>
+     * シートの内容より前に1度だけ通知される。
+     *
+     * @param globalsWorkbook ワークブック全体のレコードのみを含むワークブック(セルスタイルの参照に利用できる)
+     * @param sheets          シートの情報(シート順)
+     * @throws IOException
+     */
+    void startWorkbook(HSSFWorkbook globalsWorkbook, List<SheetData> sheets) throws IOException;
+
+    /**
+     * シートの開始を通知する
+     *
+     * @param sheetIndex シートのインデックス
+     * @return シートの内容を受け取るハンドラ
+     * @throws IOException
+     */
+    SheetEventHandler startSheet(int sheetIndex) throws IOException;
+
+  }
+
+  /**
+   * シートの情報
+   *
+   * @param name       シート名
+   * @param visibility シートの表示状態
+   */
+  public record SheetData(String name, SheetVisibility visibility) {
+  }
+
+  /**
+   * レコードを受け取り、ワークブック・シートの内容に変換して通知するリスナー
+   */
+  private static class RecordListener implements HSSFListener {
+
+    private final WorkbookHandler handler;
+
+    /** ワークブック全体のレコード */
+    private final List<Record> globalsRecords = new ArrayList<>();
+
+    /** シートのレコード(シート順) */
+    private final List<BoundSheetRecord> boundSheetRecords = new ArrayList<>();
+
+    /** ワークブック全体のレコードのみを含むワークブック */
+    private HSSFWorkbook globalsWorkbook;
+
+    /** 共有文字列 */
+    private SSTRecord sstRecord;
+
+    /** シートのインデックス(ファイル内の出現順) */
+    private int[] sheetIndexesInStreamOrder;
+
+    /** 読み込んだシート数 */
+    private int sheetCount;
+
+    /** BOFレコードの入れ子の深さ(シート内のグラフなどは入れ子のBOFレコードで始まる) */
+    private int depth;
+
+    /** 読み込み中のシートの内容を受け取るハンドラ(シート以外の読み込み中はnull) */
+    private SheetEventHandler sheetHandler;
+
+    /** 図形のレコード(ワークブック全体)を読み飛ばしているか */
+    private boolean isSkippingDrawingGroup;
+
+    /** 通知中の行番号 */
+    private int currentRowIndex = -1;
+
+    /** 共有数式(基準セルの行番号・列番号 → 共有数式) */
+    private final Map<Long, SharedFormulaRecord> sharedFormulas = new HashMap<>();
+
+    /** 共有数式のレコードを待っている数式のレコード */
+    private FormulaRecord pendingSharedFormula;
+
+    /** 計算結果の文字列のレコードを待っている数式のレコード */
+    private FormulaRecord pendingStringResult;
+
+    /** セル結合(全ての行の通知後に通知する) */
+    private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+
+    /** ハイパーリンク(全ての行の通知後に通知する) */
+    private final List<HyperlinkData> hyperlinks = new ArrayList<>();
+
+    RecordListener(WorkbookHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void processRecord(Record record) {
+      try {
+        if (record instanceof BOFRecord bofRecord) {
+          depth++;
+          if (depth == 1 && bofRecord.getType() == BOFRecord.TYPE_WORKBOOK) {
+            globalsRecords.add(bofRecord);
+          } else if (depth == 1) {
+            startSheet(bofRecord);
+          }
+        } else if (record instanceof EOFRecord) {
+          depth--;
+          if (depth == 0 && globalsWorkbook == null) {
+            endGlobals();
+          } else if (depth == 0) {
+            endSheet();
+          }
+        } else if (depth == 1 && globalsWorkbook == null) {
+          processGlobalsRecord(record);
+        } else if (depth == 1 && sheetHandler != null) {
+          processSheetRecord(record);
+        }
+      } catch (IOException e) {
+        throw new RecordProcessingException(e);
+      }
+    }
+
+    /**
+     * ワークブック全体のレコードを処理する
+     *
+     * @param record レコード
+     */
+    private void processGlobalsRecord(Record record) {
+      // NOTE: 図形のレコードには画像のデータが含まれるため保持しない(後続のContinueレコードも含む)
+      if (record instanceof DrawingGroupRecord) {
+        isSkippingDrawingGroup = true;
+        return;
+      }
+      if (isSkippingDrawingGroup && record instanceof ContinueRecord) {
+        return;
+      }
+      isSkippingDrawingGroup = false;
+
+      if (record instanceof BoundSheetRecord boundSheetRecord) {
+        // NOTE: シートはワークブックの作成後に追加する
+        boundSheetRecords.add(boundSheetRecord);
+        return;
+      }
+      if (record instanceof SSTRecord sst) {
+        sstRecord = sst;
+      }
+      globalsRecords.add(record);
+    }
+
+    /**
+     * ワークブック全体のレコードの読み込みを終了し、ワークブックとシートの情報を通知する
+     *
+     * @throws IOException
+     */
+    private void endGlobals() throws IOException {
+      globalsRecords.add(EOFRecord.instance);
+      globalsWorkbook = HSSFWorkbook.create(InternalWorkbook.createWorkbook(globalsRecords));
+      globalsRecords.clear();
+      // NOTE: 数式の文字列化ではシート名をHSSFWorkbookのシートから取得するため、内容が空のシートを作成しておく
+      for (var boundSheetRecord : boundSheetRecords) {
+        globalsWorkbook.createSheet(boundSheetRecord.getSheetname());
+      }
+
+      var sheets = new ArrayList<SheetData>(boundSheetRecords.size());
+      for (var boundSheetRecord : boundSheetRecords) {
+        var visibility = boundSheetRecord.isVeryHidden() ? SheetVisibility.VERY_HIDDEN
+            : boundSheetRecord.isHidden() ? SheetVisibility.HIDDEN : SheetVisibility.VISIBLE;
+        sheets.add(new SheetData(boundSheetRecord.getSheetname(), visibility));
+      }
+
+      // シートのレコードはシート順ではなくファイル内の位置の順に出現する
+      var recordsInStreamOrder = Arrays.asList(BoundSheetRecord.orderByBofPosition(boundSheetRecords));
+      sheetIndexesInStreamOrder = recordsInStreamOrder.stream().mapToInt(boundSheetRecords::indexOf).toArray();
+
+      handler.startWorkbook(globalsWorkbook, sheets);
+    }
+
+    /**
+     * シートの読み込みを開始する
+     *
+     * @param bofRecord シートのBOFレコード
+     * @throws IOException
+     */
+    private void startSheet(BOFRecord bofRecord) throws IOException {
+      var sheetIndex = sheetCount < sheetIndexesInStreamOrder.length ? sheetIndexesInStreamOrder[sheetCount] : -1;
+      sheetCount++;
+      // NOTE: グラフシートなどのワークシート以外のシートは内容を通知しない
+      if (sheetIndex < 0 || bofRecord.getType() != BOFRecord.TYPE_WORKSHEET) {
+        return;
+      }
+
+      sheetHandler = handler.startSheet(sheetIndex);
+      currentRowIndex = -1;
+      sharedFormulas.clear();
+      mergedRegions.clear();
+      hyperlinks.clear();
+    }
+
+    /**
+     * シートの読み込みを終了し、セル結合とハイパーリンクを通知する
+     */
+    private void endSheet() {
+      if (sheetHandler == null) {
+        return;
+      }
+
+      flushPendingFormulas();
+      if (currentRowIndex >= 0) {
+        sheetHandler.endRow(currentRowIndex);
+      }
+      mergedRegions.forEach(sheetHandler::mergedRegion);
+      hyperlinks.forEach(sheetHandler::hyperlink);
+      sheetHandler.endSheet();
+      sheetHandler = null;
+    }
+
+    /**
+     * シートのレコードを処理する
+     *
+     * @param record レコード
+     */
+    private void processSheetRecord(Record record) {
+      // 数式の後続のレコードを待っている場合
+      if (pendingSharedFormula != null) {
+        var formulaRecord = pendingSharedFormula;
+        pendingSharedFormula = null;
+        if (record instanceof SharedFormulaRecord sharedFormulaRecord) {
+          sharedFormulas.put(toKey(sharedFormulaRecord.getFirstRow(), sharedFormulaRecord.getFirstColumn()),
+              sharedFormulaRecord);
+          formula(formulaRecord);
+          return;
+        }
+        formulaResult(formulaRecord);
+      }
+      if (pendingStringResult != null) {
+        if (record instanceof StringRecord stringRecord) {
+          cell(pendingStringResult, CellType.STRING, stringRecord.getString());
+          pendingStringResult = null;
+          return;
+        }
+        // NOTE: 配列数式とデータテーブルの場合は、数式と計算結果の文字列の間にレコードが存在する
+        if (record instanceof ArrayRecord || record instanceof TableRecord) {
+          return;
+        }
+        cell(pendingStringResult, CellType.STRING, "");
+        pendingStringResult = null;
+      }
+
+      if (record instanceof LabelSSTRecord labelSSTRecord) {
+        cell(labelSSTRecord, CellType.STRING, sstRecord.getString(labelSSTRecord.getSSTIndex()).getString());
+      } else if (record instanceof LabelRecord labelRecord) {
+        cell(labelRecord.getRow(), labelRecord.getColumn(), labelRecord.getXFIndex(), CellType.STRING,
+            labelRecord.getValue(), null);
+      } else if (record instanceof NumberRecord numberRecord) {
+        // NOTE: RKレコード・MulRKレコードはNumberRecordに変換されて通知される
+        cell(numberRecord, CellType.NUMERIC, Double.toString(numberRecord.getValue()));
+      } else if (record instanceof BoolErrRecord boolErrRecord) {
+        if (boolErrRecord.isBoolean()) {
+          cell(boolErrRecord, CellType.BOOLEAN, boolErrRecord.getBooleanValue() ? "1" : "0");
+        } else {
+          cell(boolErrRecord, CellType.ERROR, FormulaError.forInt(boolErrRecord.getErrorValue()).getString());
+        }
+      } else if (record instanceof BlankRecord blankRecord) {
+        // NOTE: MulBlankレコードはBlankRecordに変換されて通知される
+        cell(blankRecord, CellType.BLANK, null);
+      } else if (record instanceof FormulaRecord formulaRecord) {
+        formula(formulaRecord);
+      } else if (record instanceof SharedFormulaRecord sharedFormulaRecord) {
+        sharedFormulas.put(toKey(sharedFormulaRecord.getFirstRow(), sharedFormulaRecord.getFirstColumn()),
+            sharedFormulaRecord);
+      } else if (record instanceof MergeCellsRecord mergeCellsRecord) {
+        for (int i = 0; i < mergeCellsRecord.getNumAreas(); i++) {
+          mergedRegions.add(mergeCellsRecord.getAreaAt(i));
+        }
+      } else if (record instanceof HyperlinkRecord hyperlinkRecord) {
+        hyperlinks.add(toHyperlinkData(hyperlinkRecord));
+      }
+    }
+
+    /**
+     * 数式のセルを通知する<br>
+     * <br>
+     * 共有数式の場合は共有数式のレコードから現在のセルの数式を作成する。
+     * 共有数式のレコードがまだ読み込まれていない場合(共有数式の基準セル)は、後続のレコードを待つ。
+     *
+     * @param formulaRecord 数式のレコード
+     */
+    private void formula(FormulaRecord formulaRecord) {
+      var ptgs = formulaRecord.getParsedExpression();
+      if (ptgs.length == 1 && ptgs[0] instanceof ExpPtg expPtg) {
+        var sharedFormulaRecord = sharedFormulas.get(toKey(expPtg.getRow(), expPtg.getColumn()));
+        if (sharedFormulaRecord != null) {
+          ptgs = sharedFormulaRecord.getFormulaTokens(formulaRecord);
+        } else if (formulaRecord.isSharedFormula()) {
+          pendingSharedFormula = formulaRecord;
+          return;
+        } else {
+          // 配列数式・データテーブルは計算結果の値として通知する
+          formulaResult(formulaRecord);
+          return;
+        }
+      }
+
+      cell(formulaRecord.getRow(), formulaRecord.getColumn(), formulaRecord.getXFIndex(), CellType.FORMULA, null,
+          toFormulaString(ptgs));
+    }
+
+    /**
+     * 数式のセルを計算結果の値のセルとして通知する<br>
+     * <br>
+     * 計算結果が文字列の場合は、後続の文字列のレコードを待つ。
+     *
+     * @param formulaRecord 数式のレコード
+     */
+    private void formulaResult(FormulaRecord formulaRecord) {
+      switch (formulaRecord.getCachedResultTypeEnum()) {
+        case STRING:
+          pendingStringResult = formulaRecord;
+          break;
+        case BOOLEAN:
+          cell(formulaRecord, CellType.BOOLEAN, formulaRecord.getCachedBooleanValue() ? "1" : "0");
+          break;
+        case ERROR:
+          cell(formulaRecord, CellType.ERROR, FormulaError.forInt(formulaRecord.getCachedErrorValue()).getString());
+          break;
+        default:
+          cell(formulaRecord, CellType.NUMERIC, Double.toString(formulaRecord.getValue()));
+          break;
+      }
+    }
+
+    /**
+     * 後続のレコードを待っている数式のセルを通知する
+     */
+    private void flushPendingFormulas() {
+      if (pendingSharedFormula != null) {
+        formulaResult(pendingSharedFormula);
+        pendingSharedFormula = null;
+      }
+      if (pendingStringResult != null) {
+        cell(pendingStringResult, CellType.STRING, "");
+        pendingStringResult = null;
+      }
+    }
+
+    /**
+     * 数式のトークンを数式の文字列に変換する
+     *
+     * @param ptgs 数式のトークン
+     * @return 数式の文字列
+     */
+    private String toFormulaString(Ptg[] ptgs) {
+      return HSSFFormulaParser.toFormulaString(globalsWorkbook, ptgs);
+    }
+
+    private void cell(CellValueRecordInterface cellRecord, CellType cellType, String value) {
+      cell(cellRecord.getRow(), cellRecord.getColumn(), cellRecord.getXFIndex(), cellType, value, null);
+    }
+
+    /**
+     * セルを通知する<br>
+     * <br>
+     * 行が変わった場合は、前の行の終了と次の行の開始を通知する。
+     * NOTE: セルのレコードは行番号・列番号の昇順に出現する
+     */
+    private void cell(int rowIndex, int columnIndex, int styleIndex, CellType cellType, String value,
+        String formula) {
+      if (rowIndex != currentRowIndex) {
+        if (currentRowIndex >= 0) {
+          sheetHandler.endRow(currentRowIndex);
+        }
+        currentRowIndex = rowIndex;
+        sheetHandler.startRow(rowIndex);
+      }
+      sheetHandler.cell(new CellData(rowIndex, columnIndex, cellType, value, formula, styleIndex));
+    }
+
+    private static long toKey(int rowIndex, int columnIndex) {
+      return ((long) rowIndex << 16) | columnIndex;
+    }
+
+  }
+
+  /**
+   * ハイパーリンクのレコードをHyperlinkDataに変換する
+   *
+   * @param hyperlinkRecord ハイパーリンクのレコード
+   * @return ハイパーリンクの内容
+   */
+  static HyperlinkData toHyperlinkData(HyperlinkRecord hyperlinkRecord) {
+    var region = new CellRangeAddress(hyperlinkRecord.getFirstRow(), hyperlinkRecord.getLastRow(),
+        hyperlinkRecord.getFirstColumn(), hyperlinkRecord.getLastColumn());
+    var label = hyperlinkRecord.getLabel();
+
+    if (hyperlinkRecord.isDocumentLink()) {
+      // シート内リンク
+      return new HyperlinkData(region, HyperlinkType.DOCUMENT, hyperlinkRecord.getTextMark(), null, label);
+    }
+
+    var address = hyperlinkRecord.getAddress();
+    var type = hyperlinkRecord.isFileLink() ? HyperlinkType.FILE
+        : address != null && address.startsWith("mailto:") ? HyperlinkType.EMAIL
+            : HyperlinkType.URL;
+    return new HyperlinkData(region, type, address, hyperlinkRecord.getTextMark(), label);
+  }
+
+  /**
+   * レコードの処理中に発生した例外をリスナーの外に伝えるための例外
+   */
+  private static class RecordProcessingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    RecordProcessingException(IOException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+
+  }
+
+}
@@ -0,0 +1,442 @@
+package com.qwerty0121.poi.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.qwerty0121.poi.utils.SheetEventHandler.CellData;
+import com.qwerty0121.poi.utils.SheetEventHandler.HyperlinkData;
+
+/**
+ * xlsxのシートパートをSAXで読み込み、内容を{@link SheetEventHandler}に通知するクラス<br>
+ * <br>
+ * シートのXMLをDOMとして保持しないため、メモリ使用量はシートのサイズに依存しない。<br>
+ * 条件付き書式はconditionalFormatting要素ごとにXMLのまま通知する。<br>
+ * NOTE: 列幅などの、セル・セル結合・条件付き書式・ハイパーリンク以外の設定は通知されないので注意
+ */
+public class XlsxSheetEventReader {
+
+  private static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+  /** 共有文字列 */
+  private final SharedStrings sharedStrings;
+
+  /** 共有数式の展開に利用するワークブック */
+  private final XSSFEvaluationWorkbook formulaWorkbook;
+
+  /** 共有数式の展開に利用するシートのインデックス */
+  private final int sheetIndex;
+
+  /**
+   * コンストラクタ
+   *
+   * @param sharedStrings   共有文字列
+   * @param formulaWorkbook 共有数式の展開に利用するワークブック(シート名の解決に利用する)
+   * @param sheetIndex      共有数式の展開に利用するシートのインデックス
+   */
+  public XlsxSheetEventReader(SharedStrings sharedStrings, XSSFEvaluationWorkbook formulaWorkbook, int sheetIndex) {
+    this.sharedStrings = sharedStrings;
+    this.formulaWorkbook = formulaWorkbook;
+    this.sheetIndex = sheetIndex;
+  }
+
+  /**
+   * シートパートを読み込む
+   *
+   * @param sheetInputStream シートパートの入力ストリーム
+   * @param sheetPart        シートパート(ハイパーリンクのリンク先の解決に利用する)
+   * @param handler          シートの内容を受け取るハンドラ
+   * @throws IOException
+   */
+  public void read(InputStream sheetInputStream, PackagePart sheetPart, SheetEventHandler handler)
+      throws IOException {
+    try {
+      var xmlReader = XMLHelper.newXMLReader();
+      xmlReader.setContentHandler(new SheetXmlHandler(sheetPart, handler));
+      xmlReader.parse(new InputSource(sheetInputStream));
+    } catch (SAXException | ParserConfigurationException e) {
+      throw new IOException("シートの読み込みに失敗しました。", e);
+    }
+    handler.endSheet();
+  }
+
+  /**
+   * シートのXMLを解析するSAXハンドラ
+   */
+  private class SheetXmlHandler extends DefaultHandler {
+
+    private final PackagePart sheetPart;
+
+    private final SheetEventHandler handler;
+
+    /** 共有数式(si属性の値 → 基準セルの数式と位置) */
+    private final Map<String, SharedFormulaBase> sharedFormulas = new HashMap<>();
+
+    /** シートのXMLの名前空間(worksheet要素の名前空間) */
+    private String sheetNamespace;
+
+    /** 読み飛ばしている要素(他の名前空間の要素とその子要素)の深さ */
+    private int skippedDepth;
+
+    /** 読み込み中の条件付き書式(conditionalFormatting要素の外ではnull) */
+    private CTConditionalFormatting conditionalFormatting;
+
+    /** 読み込み中の条件付き書式のXMLの書き込み位置(conditionalFormatting要素の外ではnull) */
+    private XmlCursor conditionalFormattingCursor;
+
+    /** 読み込み中の条件付き書式の子要素の深さ */
+    private int conditionalFormattingDepth;
+
+    /** 要素のテキストを蓄積するバッファ */
+    private final StringBuilder text = new StringBuilder();
+
+    private int currentRowIndex = -1;
+
+    private int currentColumnIndex = -1;
+
+    private String cellTypeAttribute;
+
+    private int cellStyleIndex;
+
+    private String cellValue;
+
+    private String cellFormula;
+
+    private String sharedFormulaIndex;
+
+    private String sharedFormulaRef;
+
+    private boolean isCellValue;
+
+    private boolean isCellFormula;
+
+    private boolean isInlineString;
+
+    private boolean isInlineStringText;
+
+    private boolean isPhoneticRun;
+
+    SheetXmlHandler(PackagePart sheetPart, SheetEventHandler handler) {
+      this.sheetPart = sheetPart;
+      this.handler = handler;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+      if (sheetNamespace == null) {
+        // ルート要素(worksheet)
+        sheetNamespace = uri;
+        return;
+      }
+      // NOTE: 拡張要素(x14:*、mc:AlternateContentなど)は子要素も含めて読み飛ばす(同名の要素をセルなどと誤認しないため)
+      if (skippedDepth > 0 || !sheetNamespace.equals(uri)) {
+        skippedDepth++;
+        return;
+      }
+      if (conditionalFormattingCursor != null) {
+        // 条件付き書式の子要素(ルール、数式など)はXMLのまま複製する
+        conditionalFormattingCursor.beginElement(new QName(XSSFRelation.NS_SPREADSHEETML, localName));
+        copyAttributes(attributes);
+        conditionalFormattingDepth++;
+        return;
+      }
+
+      switch (localName) {
+        case "row":
+          var rowRef = attributes.getValue("r");
+          currentRowIndex = rowRef != null ? Integer.parseInt(rowRef) - 1 : currentRowIndex + 1;
+          currentColumnIndex = -1;
+          handler.startRow(currentRowIndex);
+          break;
+        case "c":
+          var cellRef = attributes.getValue("r");
+          currentColumnIndex = cellRef != null ? new CellReference(cellRef).getCol() : currentColumnIndex + 1;
+          cellTypeAttribute = attributes.getValue("t");
+          var styleRef = attributes.getValue("s");
+          cellStyleIndex = styleRef != null ? Integer.parseInt(styleRef) : 0;
+          cellValue = null;
+          cellFormula = null;
+          sharedFormulaIndex = null;
+          sharedFormulaRef = null;
+          break;
+        case "v":
+          isCellValue = true;
+          text.setLength(0);
+          break;
+        case "f":
+          isCellFormula = true;
+          text.setLength(0);
+          if ("shared".equals(attributes.getValue("t"))) {
+            sharedFormulaIndex = attributes.getValue("si");
+            sharedFormulaRef = attributes.getValue("ref");
+          }
+          break;
+        case "is":
+          isInlineString = true;
+          text.setLength(0);
+          break;
+        case "t":
+          isInlineStringText = isInlineString;
+          break;
+        case "rPh":
+          isPhoneticRun = true;
+          break;
+        case "mergeCell":
+          handler.mergedRegion(CellRangeAddress.valueOf(attributes.getValue("ref")));
+          break;
+        case "conditionalFormatting":
+          conditionalFormatting = CTConditionalFormatting.Factory.newInstance();
+          conditionalFormattingCursor = conditionalFormatting.newCursor();
+          conditionalFormattingCursor.toEndToken();
+          copyAttributes(attributes);
+          break;
+        case "hyperlink":
+          var hyperlink = toHyperlinkData(attributes, sheetPart);
+          if (hyperlink != null) {
+            handler.hyperlink(hyperlink);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (skippedDepth > 0) {
+        skippedDepth--;
+        return;
+      }
+      if (conditionalFormattingCursor != null) {
+        if (conditionalFormattingDepth > 0) {
+          // 複製した子要素の終了位置の後ろに移動する
+          conditionalFormattingCursor.toNextToken();
+          conditionalFormattingDepth--;
+          return;
+        }
+        conditionalFormattingCursor.close();
+        conditionalFormattingCursor = null;
+        handler.conditionalFormatting(conditionalFormatting);
+        conditionalFormatting = null;
+        return;
+      }
+
+      switch (localName) {
+        case "v":
+          isCellValue = false;
+          cellValue = text.toString();
+          break;
+        case "f":
+          isCellFormula = false;
+          cellFormula = resolveFormula(text.toString());
+          break;
+        case "is":
+          isInlineString = false;
+          cellValue = text.toString();
+          break;
+        case "t":
+          isInlineStringText = false;
+          break;
+        case "rPh":
+          isPhoneticRun = false;
+          break;
+        case "c":
+          handler.cell(toCellData());
+          break;
+        case "row":
+          handler.endRow(currentRowIndex);
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+      if (conditionalFormattingCursor != null && skippedDepth == 0) {
+        conditionalFormattingCursor.insertChars(new String(ch, start, length));
+        return;
+      }
+      if (isCellValue || isCellFormula || (isInlineStringText && !isPhoneticRun)) {
+        // NOTE: インライン文字列はリッチテキストの場合に複数のt要素に分割されるため、ふりがな以外は全て連結する
+        text.append(ch, start, length);
+      }
+    }
+
+    /**
+     * 要素の属性を条件付き書式のXMLの書き込み位置に複製する<br>
+     * <br>
+     * NOTE: 条件付き書式の属性は名前空間のない属性のみのため、他の名前空間の属性(拡張設定など)は複製しない
+     *
+     * @param attributes 要素の属性
+     */
+    private void copyAttributes(Attributes attributes) {
+      for (int i = 0; i < attributes.getLength(); i++) {
+        if (attributes.getURI(i).isEmpty()) {
+          conditionalFormattingCursor.insertAttributeWithValue(attributes.getLocalName(i), attributes.getValue(i));
+        }
+      }
+    }
+
+    /**
+     * 読み込んだセルの内容をCellDataに変換する
+     *
+     * @return セルの内容
+     */
+    private CellData toCellData() {
+      if (cellFormula != null) {
+        return new CellData(currentRowIndex, currentColumnIndex, CellType.FORMULA, null, cellFormula,
+            cellStyleIndex);
+      }
+
+      if (cellValue == null) {
+        // NOTE: 値(v要素)のないセルは種別によらずブランクセルとする
+        return new CellData(currentRowIndex, currentColumnIndex, CellType.BLANK, null, null, cellStyleIndex);
+      }
+
+      var type = cellTypeAttribute != null ? cellTypeAttribute : "n";
+      switch (type) {
+        case "s":
+          var sharedString = sharedStrings.getItemAt(Integer.parseInt(cellValue)).getString();
+          return new CellData(currentRowIndex, currentColumnIndex, CellType.STRING, sharedString, null,
+              cellStyleIndex);
+        case "inlineStr":
+        case "str":
+          return new CellData(currentRowIndex, currentColumnIndex, CellType.STRING, cellValue, null, cellStyleIndex);
+        case "b":
+          return new CellData(currentRowIndex, currentColumnIndex, CellType.BOOLEAN, cellValue, null, cellStyleIndex);
+        case "e":
+          return new CellData(currentRowIndex, currentColumnIndex, CellType.ERROR, cellValue, null, cellStyleIndex);
+        case "d":
+          return toDateCellData();
+        default:
+          var cellType = cellValue == null || cellValue.isEmpty() ? CellType.BLANK : CellType.NUMERIC;
+          return new CellData(currentRowIndex, currentColumnIndex, cellType, cellValue, null, cellStyleIndex);
+      }
+    }
+
+    /**
+     * 日付(ISO 8601形式)のセルをシリアル値の数値セルに変換する<br>
+     * <br>
+     * NOTE: 日付として解釈できない場合は文字列セルとする
+     *
+     * @return セルの内容
+     */
+    private CellData toDateCellData() {
+      LocalDateTime dateTime;
+      try {
+        dateTime = cellValue.indexOf('T') < 0
+            ? LocalDate.parse(cellValue, DateTimeFormatter.ISO_DATE).atStartOfDay()
+            : LocalDateTime.parse(cellValue, DateTimeFormatter.ISO_DATE_TIME);
+      } catch (DateTimeParseException e) {
+        return new CellData(currentRowIndex, currentColumnIndex, CellType.STRING, cellValue, null, cellStyleIndex);
+      }
+      return new CellData(currentRowIndex, currentColumnIndex, CellType.NUMERIC,
+          String.valueOf(DateUtil.getExcelDate(dateTime)), null, cellStyleIndex);
+    }
+
+    /**
+     * 数式を解決する<br>
+     * <br>
+     * 共有数式の場合、基準セルの数式を現在のセル位置に合わせてずらした数式を返す。
+     *
+     * @param formulaText f要素のテキスト
+     * @return 数式(数式でない場合はnull)
+     */
+    private String resolveFormula(String formulaText) {
+      if (sharedFormulaIndex == null) {
+        return formulaText.isEmpty() ? null : formulaText;
+      }
+
+      if (sharedFormulaRef != null) {
+        // 共有数式の基準セル
+        sharedFormulas.put(sharedFormulaIndex,
+            new SharedFormulaBase(formulaText, CellRangeAddress.valueOf(sharedFormulaRef)));
+        return formulaText;
+      }
+
+      var base = sharedFormulas.get(sharedFormulaIndex);
+      if (base == null) {
+        return null;
+      }
+      var ptgs = FormulaParser.parse(base.formula(), formulaWorkbook, FormulaType.CELL, sheetIndex,
+          currentRowIndex);
+      var shiftedPtgs = new SharedFormula(SpreadsheetVersion.EXCEL2007).convertSharedFormulas(ptgs,
+          currentRowIndex - base.range().getFirstRow(), currentColumnIndex - base.range().getFirstColumn());
+      return FormulaRenderer.toFormulaString(formulaWorkbook, shiftedPtgs);
+    }
+
+  }
+
+  /**
+   * hyperlink要素の属性をHyperlinkDataに変換する
+   *
+   * @param attributes hyperlink要素の属性
+   * @param sheetPart  シートパート(リンク先の解決に利用する)
+   * @return ハイパーリンクの内容。リンク先を解決できない場合はnull
+   */
+  static HyperlinkData toHyperlinkData(Attributes attributes, PackagePart sheetPart) {
+    var region = CellRangeAddress.valueOf(attributes.getValue("ref"));
+    var label = attributes.getValue("display");
+    var relationId = attributes.getValue(RELATIONSHIPS_NAMESPACE, "id");
+
+    if (relationId == null) {
+      // シート内リンク
+      return new HyperlinkData(region, HyperlinkType.DOCUMENT, attributes.getValue("location"), null, label);
+    }
+
+    var relationship = sheetPart.getRelationship(relationId);
+    if (relationship == null) {
+      // NOTE: リレーションが存在しない(r:idが不正な)場合、リンク先内の位置があればシート内リンクとし、なければコピーしない
+      var location = attributes.getValue("location");
+      return location != null ? new HyperlinkData(region, HyperlinkType.DOCUMENT, location, null, label) : null;
+    }
+
+    var address = relationship.getTargetURI().toString();
+    var type = address.startsWith("mailto:") ? HyperlinkType.EMAIL
+        : address.matches("^[a-zA-Z][a-zA-Z0-9+.-]*://.*") ? HyperlinkType.URL
+            : HyperlinkType.FILE;
+    // NOTE: 外部リンクでもリンク先内の位置(location属性)が指定されている場合があるため、あわせて保持する
+    return new HyperlinkData(region, type, address, attributes.getValue("location"), label);
+  }
+
+  /**
+   * 共有数式の基準セルの数式と適用範囲
+   *
+   * @param formula 基準セルの数式
+   * @param range   共有数式の適用範囲
+   */
+  private record SharedFormulaBase(String formula, CellRangeAddress range) {
+  }
+
+}